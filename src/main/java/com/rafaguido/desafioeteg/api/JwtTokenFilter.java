@@ -1,6 +1,11 @@
 package com.rafaguido.desafioeteg.api;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -8,27 +13,36 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.web.authentication.WebAuthenticationDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-import com.rafaguido.desafioeteg.model.entity.Usuario;
 import com.rafaguido.desafioeteg.service.JwtService;
+import com.rafaguido.desafioeteg.service.impl.JwtServiceImpl;
 import com.rafaguido.desafioeteg.service.impl.SecurityUserDetailsService;
 
+import io.jsonwebtoken.Claims;
+
 public class JwtTokenFilter extends OncePerRequestFilter {
 	
+	private static final List<GrantedAuthority> AUTHORITIES_PADRAO = 
+			Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"));
+	
 	private JwtService jwtService;
 	private SecurityUserDetailsService userDetailsService;
+	private boolean stateless;
 
 	public JwtTokenFilter(
 			JwtService jwtService,
-			SecurityUserDetailsService userDetailsService
+			SecurityUserDetailsService userDetailsService,
+			boolean stateless
 			) {
 		this.jwtService = jwtService;
 		this.userDetailsService = userDetailsService;
+		this.stateless = stateless;
 	}
 
 	@Override
@@ -42,18 +56,15 @@ public class JwtTokenFilter extends OncePerRequestFilter {
 		
 		//"Bearer","eyJhbGciOiJIUzUxMiJ9.eyJ..."
 		
-		if(authorization != null && authorization.startsWith("Bearer")) {
+		if(authorization != null && authorization.startsWith("Bearer ")) {
 			
-			String token = authorization.split(" ")[1];
-			boolean isTokenValid = jwtService.isTokenValido(token);
+			String token = authorization.substring("Bearer ".length()).trim();
+			Optional<Claims> claims = jwtService.obterClaimsValidas(token);
 			
-			if(isTokenValid) {
-				String login = jwtService.obterLoginUsuario(token);
-				UserDetails usuarioAutenticado = userDetailsService.loadUserByUsername(login);
-				
-				UsernamePasswordAuthenticationToken user = 
-						new UsernamePasswordAuthenticationToken(
-								usuarioAutenticado, null, usuarioAutenticado.getAuthorities());
+			if(claims.isPresent()) {
+				UsernamePasswordAuthenticationToken user = stateless 
+						? autenticarPelasClaims(claims.get()) 
+						: autenticarPelaBase(claims.get().getSubject());
 				
 				user.setDetails( new WebAuthenticationDetailsSource().buildDetails(request) );
 				
@@ -64,5 +75,33 @@ public class JwtTokenFilter extends OncePerRequestFilter {
 		
 		filterChain.doFilter(request, response);
 	}
+	
+	private UsernamePasswordAuthenticationToken autenticarPelasClaims(Claims claims) {
+		Object userid = claims.get(JwtServiceImpl.CLAIM_USERID);
+		Long id = userid instanceof Number ? ((Number) userid).longValue() : null;
+		Collection<? extends GrantedAuthority> authorities = obterAuthorities(claims);
+		
+		UsuarioAutenticado usuarioAutenticado = new UsuarioAutenticado(id, claims.getSubject(), authorities);
+		return new UsernamePasswordAuthenticationToken(usuarioAutenticado, null, authorities);
+	}
+	
+	private UsernamePasswordAuthenticationToken autenticarPelaBase(String login) {
+		UserDetails usuarioAutenticado = userDetailsService.loadUserByUsername(login);
+		return new UsernamePasswordAuthenticationToken(
+				usuarioAutenticado, null, usuarioAutenticado.getAuthorities());
+	}
+	
+	private Collection<? extends GrantedAuthority> obterAuthorities(Claims claims) {
+		Object roles = claims.get(JwtServiceImpl.CLAIM_ROLES);
+		
+		if(!(roles instanceof Collection) || ((Collection<?>) roles).isEmpty()) {
+			return AUTHORITIES_PADRAO;
+		}
+		
+		return ((Collection<?>) roles)
+					.stream()
+					.map( role -> new SimpleGrantedAuthority("ROLE_" + role) )
+					.collect(Collectors.toList());
+	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,28 @@
+package com.rafaguido.desafioeteg.api;
+
+import java.security.Principal;
+import java.util.Collection;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Principal montado diretamente a partir das claims de um token JWT já verificado,
+ * sem consulta à base de dados.
+ */
+@Getter
+@AllArgsConstructor
+public class UsuarioAutenticado implements Principal {
+
+	private final Long id;
+	private final String email;
+	private final Collection<? extends GrantedAuthority> authorities;
+
+	@Override
+	public String getName() {
+		return email;
+	}
+
+}
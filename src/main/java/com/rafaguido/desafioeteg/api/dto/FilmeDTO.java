@@ -0,0 +1,20 @@
+package com.rafaguido.desafioeteg.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FilmeDTO {
+
+	private String nome;
+	private String genero;
+	private String diretor;
+	private Integer quantidade;
+}
@@ -1,6 +1,7 @@
 package com.rafaguido.desafioeteg.api.dto;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -21,4 +22,8 @@ public class LocacaoDTO {
 	private Long usuario;
 	private String tipo;
 	private String status;
+	private Long versao;
+	private LocalDate dataPrevistaDevolucao;
+	private Integer renovacoes;
+	private Boolean atrasada;
 }
\ No newline at end of file
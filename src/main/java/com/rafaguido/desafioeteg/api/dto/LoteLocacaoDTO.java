@@ -0,0 +1,27 @@
+package com.rafaguido.desafioeteg.api.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Seleção das locações de uma operação em lote: a lista de ids ou, sem ids, o filtro
+ * (usuário obrigatório, mês, ano e status atual).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoteLocacaoDTO {
+
+	private List<Long> ids;
+	private Long usuario;
+	private Integer mes;
+	private Integer ano;
+	private String statusAtual;
+	private String status;
+	
+}
@@ -0,0 +1,31 @@
+package com.rafaguido.desafioeteg.api.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.data.domain.Slice;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaDTO<T> {
+
+	private List<T> conteudo;
+	private int pagina;
+	private int tamanho;
+	private boolean temProxima;
+	private Long proximoCursor;
+	
+	public static <T> PaginaDTO<T> de( Slice<T> slice, Function<T, Long> id ) {
+		List<T> conteudo = slice.getContent();
+		Long proximoCursor = slice.hasNext() && !conteudo.isEmpty() 
+				? id.apply(conteudo.get(conteudo.size() - 1)) 
+				: null;
+		
+		return new PaginaDTO<>(conteudo, slice.getNumber(), slice.getSize(), slice.hasNext(), proximoCursor);
+	}
+}
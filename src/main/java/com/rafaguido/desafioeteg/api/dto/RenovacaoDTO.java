@@ -0,0 +1,13 @@
+package com.rafaguido.desafioeteg.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RenovacaoDTO {
+
+	private Integer dias;
+}
@@ -0,0 +1,33 @@
+package com.rafaguido.desafioeteg.api.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resumo de uma importação em lote. Só as primeiras rejeições são detalhadas em {@code erros};
+ * o total fica em {@code rejeitadas}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoImportacaoDTO {
+
+	private long lidas;
+	private long importadas;
+	private long rejeitadas;
+	private boolean interrompida;
+	private List<ErroImportacaoDTO> erros = new ArrayList<>();
+	
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class ErroImportacaoDTO {
+		private long linha;
+		private String mensagem;
+	}
+	
+}
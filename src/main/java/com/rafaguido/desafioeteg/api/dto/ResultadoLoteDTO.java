@@ -0,0 +1,38 @@
+package com.rafaguido.desafioeteg.api.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.rafaguido.desafioeteg.model.enums.ResultadoOperacaoLote;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoLoteDTO {
+
+	private long sucesso;
+	private long falhas;
+	private List<ItemLoteDTO> itens = new ArrayList<>();
+	
+	public void adicionar(Long id, ResultadoOperacaoLote resultado) {
+		itens.add(new ItemLoteDTO(id, resultado));
+		if(resultado.isSucesso()) {
+			sucesso++;
+		}else {
+			falhas++;
+		}
+	}
+	
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class ItemLoteDTO {
+		private Long id;
+		private ResultadoOperacaoLote resultado;
+	}
+	
+}
@@ -0,0 +1,22 @@
+package com.rafaguido.desafioeteg.api.dto;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumoMensalDTO {
+
+	private Integer ano;
+	private Integer mes;
+	private String tipo;
+	private String status;
+	private BigDecimal total;
+	private Long quantidade;
+}
@@ -11,5 +11,6 @@ public class TokenDTO {
 
 	private String nome;
 	private String token;
+	private String tokenRenovacao;
 	
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.rafaguido.desafioeteg.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransicaoStatusDTO {
+
+	private String statusAtual;
+	private String status;
+}
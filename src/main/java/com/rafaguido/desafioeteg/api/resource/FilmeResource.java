@@ -0,0 +1,53 @@
+package com.rafaguido.desafioeteg.api.resource;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.rafaguido.desafioeteg.api.dto.FilmeDTO;
+import com.rafaguido.desafioeteg.exception.RegraNegocioException;
+import com.rafaguido.desafioeteg.model.entity.Filme;
+import com.rafaguido.desafioeteg.service.FilmeService;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/api/filmes")
+@RequiredArgsConstructor
+public class FilmeResource {
+
+	private final FilmeService service;
+	
+	@GetMapping("{id}")
+	public ResponseEntity obterFilme( @PathVariable("id") Long id ) {
+		return service.obterPorId(id)
+					.map( filme -> new ResponseEntity(filme, HttpStatus.OK) )
+					.orElseGet( () -> new ResponseEntity(HttpStatus.NOT_FOUND) );
+	}
+	
+	@PostMapping
+	public ResponseEntity salvar( @RequestBody FilmeDTO dto ) {
+		
+		Filme filme = Filme.builder()
+					.nome(dto.getNome())
+					.genero(dto.getGenero())
+					.diretor(dto.getDiretor())
+					.quantidade(dto.getQuantidade()).build();
+		
+		try {
+			Filme filmeSalvo = service.salvar(filme);
+			return new ResponseEntity(filmeSalvo, HttpStatus.CREATED);
+		}catch (RegraNegocioException e) {
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}catch (DataIntegrityViolationException e) {
+			return ResponseEntity.badRequest().body("Já existe um filme cadastrado com este nome.");
+		}
+	}
+	
+}
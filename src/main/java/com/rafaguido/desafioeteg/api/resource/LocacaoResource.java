@@ -1,9 +1,30 @@
 package com.rafaguido.desafioeteg.api.resource;
 
-import java.util.List;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
 
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.data.domain.Slice;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -11,19 +32,36 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.rafaguido.desafioeteg.api.dto.AtualizaStatusDTO;
 import com.rafaguido.desafioeteg.api.dto.LocacaoDTO;
+import com.rafaguido.desafioeteg.api.dto.LoteLocacaoDTO;
+import com.rafaguido.desafioeteg.api.dto.PaginaDTO;
+import com.rafaguido.desafioeteg.api.dto.RenovacaoDTO;
+import com.rafaguido.desafioeteg.api.dto.ResultadoImportacaoDTO;
+import com.rafaguido.desafioeteg.api.dto.ResultadoLoteDTO;
+import com.rafaguido.desafioeteg.api.dto.ResultadoLoteDTO.ItemLoteDTO;
+import com.rafaguido.desafioeteg.api.dto.TransicaoStatusDTO;
+import com.rafaguido.desafioeteg.exception.ConflitoIdempotenciaException;
 import com.rafaguido.desafioeteg.exception.RegraNegocioException;
+import com.rafaguido.desafioeteg.model.entity.HistoricoLocacao;
 import com.rafaguido.desafioeteg.model.entity.Locacao;
 import com.rafaguido.desafioeteg.model.entity.Usuario;
+import com.rafaguido.desafioeteg.model.enums.ResultadoOperacaoLote;
 import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
 import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+import com.rafaguido.desafioeteg.service.HistoricoLocacaoService;
+import com.rafaguido.desafioeteg.service.IdempotenciaService;
 import com.rafaguido.desafioeteg.service.LocacaoService;
 import com.rafaguido.desafioeteg.service.UsuarioService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.RequiredArgsConstructor;
 
@@ -31,16 +69,27 @@ import lombok.RequiredArgsConstructor;
 @RequestMapping("/api/locacoes")
 @RequiredArgsConstructor
 public class LocacaoResource {
-
+	
+	/**
+	 * Colunas da exportação, em ordem; o cabeçalho e as linhas do CSV e os campos do NDJSON saem desta lista.
+	 */
+	private static final Map<String, Function<LocacaoDTO, Object>> COLUNAS_EXPORTACAO = colunasExportacao();
+	
 	private final LocacaoService service;
 	private final UsuarioService usuarioService;
+	private final ObjectMapper objectMapper;
+	private final IdempotenciaService idempotenciaService;
+	private final HistoricoLocacaoService historicoLocacaoService;
 	
 	@GetMapping
 	public ResponseEntity buscar(
 			@RequestParam(value ="filme" , required = false) String filme,
 			@RequestParam(value = "mes", required = false) Integer mes,
 			@RequestParam(value = "ano", required = false) Integer ano,
-			@RequestParam("usuario") Long idUsuario
+			@RequestParam("usuario") Long idUsuario,
+			@RequestParam(value = "pagina", required = false) Integer pagina,
+			@RequestParam(value = "tamanho", required = false) Integer tamanho,
+			@RequestParam(value = "cursor", required = false) Long cursor
 			) {
 		
 		Locacao locacaoFiltro = new Locacao();
@@ -55,8 +104,140 @@ public class LocacaoResource {
 			locacaoFiltro.setUsuario(usuario.get());
 		}
 		
-		List<Locacao> locacaos = service.buscar(locacaoFiltro);
-		return ResponseEntity.ok(locacaos);
+		try {
+			Slice<LocacaoDTO> locacoes = service.buscar(locacaoFiltro, cursor, pagina, tamanho);
+			return ResponseEntity.ok(PaginaDTO.de(locacoes, LocacaoDTO::getId));
+		}catch (RegraNegocioException e) {
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}
+	}
+	
+	/**
+	 * O tipo do corpo precisa aparecer na assinatura para o Spring tratar a resposta como streaming; 
+	 * por isso os erros também saem como {@link StreamingResponseBody}.
+	 */
+	@GetMapping("exportar")
+	public ResponseEntity<StreamingResponseBody> exportar(
+			@RequestParam("usuario") Long idUsuario,
+			@RequestParam(value = "formato", defaultValue = "ndjson") String formato,
+			@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+			) {
+		
+		boolean csv = "csv".equalsIgnoreCase(formato);
+		if(!csv && !"ndjson".equalsIgnoreCase(formato)) {
+			return erroExportacao("Formato de exportação inválido. Use ndjson ou csv.");
+		}
+		
+		if(!usuarioService.obterPorId(idUsuario).isPresent()) {
+			return erroExportacao("Não foi possível realizar a exportação. Usuário não encontrado para o Id informado.");
+		}
+		
+		boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+		
+		StreamingResponseBody corpo = saida -> {
+			OutputStream destino = gzip ? new GZIPOutputStream(saida, 8192) : saida;
+			Writer writer = new BufferedWriter(new OutputStreamWriter(destino, StandardCharsets.UTF_8));
+			
+			if(csv) {
+				writer.write(String.join(",", COLUNAS_EXPORTACAO.keySet()));
+				writer.write('\n');
+			}
+			
+			try {
+				service.exportar(idUsuario, locacao -> escreverLinha(writer, locacao, csv));
+			}catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			
+			writer.flush();
+			if(gzip) {
+				((GZIPOutputStream) destino).finish();
+			}
+		};
+		
+		String extensao = csv ? "csv" : "ndjson";
+		ResponseEntity.BodyBuilder resposta = ResponseEntity.ok()
+				.contentType(csv ? MediaType.parseMediaType("text/csv;charset=UTF-8") : MediaType.parseMediaType("application/x-ndjson"))
+				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"locacoes-" + idUsuario + "." + extensao + "\"")
+				.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		
+		if(gzip) {
+			resposta.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+		}
+		
+		return resposta.body(corpo);
+	}
+	
+	private static ResponseEntity<StreamingResponseBody> erroExportacao( String mensagem ) {
+		return ResponseEntity.badRequest()
+				.contentType(MediaType.parseMediaType("text/plain;charset=UTF-8"))
+				.body( saida -> saida.write(mensagem.getBytes(StandardCharsets.UTF_8)) );
+	}
+	
+	private static Map<String, Function<LocacaoDTO, Object>> colunasExportacao() {
+		Map<String, Function<LocacaoDTO, Object>> colunas = new LinkedHashMap<>();
+		colunas.put("id", LocacaoDTO::getId);
+		colunas.put("filme", LocacaoDTO::getFilme);
+		colunas.put("mes", LocacaoDTO::getMes);
+		colunas.put("ano", LocacaoDTO::getAno);
+		colunas.put("valor", LocacaoDTO::getValor);
+		colunas.put("usuario", LocacaoDTO::getUsuario);
+		colunas.put("tipo", LocacaoDTO::getTipo);
+		colunas.put("status", LocacaoDTO::getStatus);
+		colunas.put("versao", LocacaoDTO::getVersao);
+		colunas.put("dataPrevistaDevolucao", LocacaoDTO::getDataPrevistaDevolucao);
+		colunas.put("renovacoes", LocacaoDTO::getRenovacoes);
+		colunas.put("atrasada", LocacaoDTO::getAtrasada);
+		return Collections.unmodifiableMap(colunas);
+	}
+	
+	private void escreverLinha( Writer writer, LocacaoDTO dto, boolean csv ) {
+		try {
+			if(csv) {
+				StringJoiner linha = new StringJoiner(",");
+				COLUNAS_EXPORTACAO.values().forEach( coluna -> linha.add(campoCsv(coluna.apply(dto))) );
+				writer.write(linha.toString());
+			}else {
+				Map<String, Object> registro = new LinkedHashMap<>();
+				COLUNAS_EXPORTACAO.forEach( (nome, coluna) -> registro.put(nome, coluna.apply(dto)) );
+				writer.write(objectMapper.writeValueAsString(registro));
+			}
+			writer.write('\n');
+		}catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private static String campoCsv( Object campo ) {
+		if(campo == null) {
+			return "";
+		}
+		String valor = campo instanceof BigDecimal ? ((BigDecimal) campo).toPlainString() : campo.toString();
+		if(valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+			return valor;
+		}
+		return "\"" + valor.replace("\"", "\"\"") + "\"";
+	}
+	
+	/**
+	 * Histórico de mudanças de status do usuário, do mais recente para o mais antigo.
+	 */
+	@GetMapping("historico")
+	public ResponseEntity obterHistorico(
+			@RequestParam("usuario") Long idUsuario,
+			@RequestParam(value = "tamanho", required = false) Integer tamanho,
+			@RequestParam(value = "cursor", required = false) Long cursor ) {
+		Slice<HistoricoLocacao> historico = historicoLocacaoService.obterPorUsuario(idUsuario, cursor, tamanho);
+		return ResponseEntity.ok(PaginaDTO.de(historico, HistoricoLocacao::getId));
+	}
+	
+	@GetMapping("{id}/historico")
+	public ResponseEntity obterHistoricoDaLocacao(
+			@PathVariable("id") Long id,
+			@RequestParam(value = "tamanho", required = false) Integer tamanho,
+			@RequestParam(value = "cursor", required = false) Long cursor ) {
+		Slice<HistoricoLocacao> historico = historicoLocacaoService.obterPorLocacao(id, cursor, tamanho);
+		return ResponseEntity.ok(PaginaDTO.de(historico, HistoricoLocacao::getId));
 	}
 	
 	@GetMapping("{id}")
@@ -66,27 +247,79 @@ public class LocacaoResource {
 					.orElseGet( () -> new ResponseEntity(HttpStatus.NOT_FOUND) );
 	}
 
+	/**
+	 * Com o cabeçalho Idempotency-Key, repetições da mesma requisição (mesmo usuário, chave e corpo) 
+	 * devolvem a resposta da primeira em vez de criar outra locação.
+	 */
 	@PostMapping
-	public ResponseEntity salvar( @RequestBody LocacaoDTO dto ) {
+	public ResponseEntity salvar( 
+			@RequestBody LocacaoDTO dto,
+			@RequestHeader(value = "Idempotency-Key", required = false) String chaveIdempotencia,
+			Principal principal ) {
+		
+		if(chaveIdempotencia == null || chaveIdempotencia.isEmpty()) {
+			return criar(dto);
+		}
+		
+		if(chaveIdempotencia.length() > 255) {
+			return ResponseEntity.badRequest().body("Chave de idempotência inválida.");
+		}
+		
+		try {
+			String escopo = (principal == null ? "" : principal.getName()) + ":" + chaveIdempotencia;
+			return idempotenciaService.executar(escopo, objectMapper.writeValueAsString(dto), () -> criar(dto), 
+					resposta -> resposta.getStatusCode().is2xxSuccessful());
+		}catch (ConflitoIdempotenciaException e) {
+			return new ResponseEntity(e.getMessage(), HttpStatus.CONFLICT);
+		}catch (JsonProcessingException e) {
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Devolve o DTO, não a entidade: a resposta pode ficar guardada pela idempotência depois que a sessão fecha.
+	 * Só as respostas de sucesso são guardadas; uma recusa (limite, estoque) pode passar numa nova tentativa.
+	 */
+	private ResponseEntity criar( LocacaoDTO dto ) {
 		try {
 			Locacao entidade = converter(dto);
 			entidade = service.salvar(entidade);
-			return new ResponseEntity(entidade, HttpStatus.CREATED);
+			return new ResponseEntity(converter(entidade), HttpStatus.CREATED);
 		}catch (RegraNegocioException e) {
 			return ResponseEntity.badRequest().body(e.getMessage());
 		}
 	}
 	
+	/**
+	 * Aceita um array JSON ou NDJSON (um objeto por linha); o corpo é lido em fluxo, 
+	 * sem carregar a carga inteira em memória.
+	 */
+	@PostMapping(value = "importar", consumes = { MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson" })
+	public ResponseEntity importar( HttpServletRequest request ) {
+		try (InputStream corpo = request.getInputStream();
+				MappingIterator<LocacaoDTO> linhas = objectMapper.readerFor(LocacaoDTO.class).readValues(corpo)) {
+			ResultadoImportacaoDTO resultado = service.importar(linhas, this::converter);
+			return ResponseEntity.ok(resultado);
+		}catch (IOException e) {
+			return ResponseEntity.badRequest().body("Não foi possível ler o conteúdo da importação: " + e.getMessage());
+		}
+	}
+	
 	@PutMapping("{id}")
 	public ResponseEntity atualizar( @PathVariable("id") Long id, @RequestBody LocacaoDTO dto ) {
 		return service.obterPorId(id).map( entity -> {
 			try {
 				Locacao locacao = converter(dto);
 				locacao.setId(entity.getId());
+				if(locacao.getVersao() == null) {
+					locacao.setVersao(entity.getVersao());
+				}
 				service.atualizar(locacao);
 				return ResponseEntity.ok(locacao);
 			}catch (RegraNegocioException e) {
 				return ResponseEntity.badRequest().body(e.getMessage());
+			}catch (ObjectOptimisticLockingFailureException e) {
+				return alteradaPorOutraOperacao();
 			}
 		}).orElseGet( () ->
 			new ResponseEntity("Locação não encontrada na base de Dados.", HttpStatus.BAD_REQUEST) );
@@ -107,21 +340,130 @@ public class LocacaoResource {
 				return ResponseEntity.ok(entity);
 			}catch (RegraNegocioException e) {
 				return ResponseEntity.badRequest().body(e.getMessage());
+			}catch (ObjectOptimisticLockingFailureException e) {
+				return alteradaPorOutraOperacao();
 			}
 		
 		}).orElseGet( () ->
 		new ResponseEntity("Locação não encontrada na base de Dados.", HttpStatus.BAD_REQUEST) );
 	}
 	
+	/**
+	 * Troca condicional: muda para {@code status} só se a locação ainda estiver em {@code statusAtual}.
+	 * Quem perder a corrida recebe 409 em vez de sobrescrever a troca do outro.
+	 */
+	@PutMapping("{id}/transicao-status")
+	public ResponseEntity transicionarStatus( @PathVariable("id") Long id, @RequestBody TransicaoStatusDTO dto ) {
+		StatusLocacao statusAtual;
+		StatusLocacao status;
+		try {
+			statusAtual = StatusLocacao.valueOf(dto.getStatusAtual());
+			status = StatusLocacao.valueOf(dto.getStatus());
+		}catch (IllegalArgumentException | NullPointerException e) {
+			return ResponseEntity.badRequest().body("Não foi possível atualizar o status da locação, envie um status válido.");
+		}
+		
+		ResultadoOperacaoLote resultado;
+		try {
+			resultado = service.transicionarStatus(id, statusAtual, status);
+		}catch (RegraNegocioException e) {
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}
+		
+		ItemLoteDTO corpo = new ItemLoteDTO(id, resultado);
+		switch (resultado) {
+			case NAO_ENCONTRADA:
+				return new ResponseEntity(corpo, HttpStatus.NOT_FOUND);
+			case STATUS_DIVERGENTE:
+				return new ResponseEntity(corpo, HttpStatus.CONFLICT);
+			default:
+				return ResponseEntity.ok(corpo);
+		}
+	}
+	
+	/**
+	 * Estende o prazo de devolução de um aluguel em {@code dias}, no máximo duas vezes.
+	 */
+	@PutMapping("{id}/renovar")
+	public ResponseEntity renovar( @PathVariable("id") Long id, @RequestBody RenovacaoDTO dto ) {
+		try {
+			return service.renovar(id, dto.getDias())
+						.map( locacao -> new ResponseEntity(converter(locacao), HttpStatus.OK) )
+						.orElseGet( () -> new ResponseEntity(HttpStatus.NOT_FOUND) );
+		}catch (RegraNegocioException e) {
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Troca o status de várias locações com um UPDATE por bloco. Com {@code statusAtual}, só muda 
+	 * as que estiverem nesse status; o resultado traz o desfecho de cada id.
+	 */
+	@PutMapping("atualiza-status")
+	public ResponseEntity atualizarStatusEmLote( @RequestBody LoteLocacaoDTO dto ) {
+		StatusLocacao status;
+		StatusLocacao statusAtual;
+		try {
+			status = StatusLocacao.valueOf(dto.getStatus());
+			statusAtual = dto.getStatusAtual() == null ? null : StatusLocacao.valueOf(dto.getStatusAtual());
+		}catch (IllegalArgumentException | NullPointerException e) {
+			return ResponseEntity.badRequest().body("Não foi possível atualizar o status das locações, envie um status válido.");
+		}
+		
+		try {
+			ResultadoLoteDTO resultado = service.atualizarStatusEmLote(dto.getIds(), filtroDoLote(dto), statusAtual, status);
+			return ResponseEntity.ok(resultado);
+		}catch (RegraNegocioException e) {
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}
+	}
+	
+	@DeleteMapping
+	public ResponseEntity deletarEmLote( @RequestBody LoteLocacaoDTO dto ) {
+		try {
+			ResultadoLoteDTO resultado = service.deletarEmLote(dto.getIds(), filtroDoLote(dto));
+			return ResponseEntity.ok(resultado);
+		}catch (RegraNegocioException e) {
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body("Não foi possível excluir as locações, envie um status válido.");
+		}
+	}
+	
+	private Locacao filtroDoLote( LoteLocacaoDTO dto ) {
+		if(dto.getUsuario() == null) {
+			return null;
+		}
+		
+		Locacao filtro = new Locacao();
+		filtro.setUsuario(Usuario.builder().id(dto.getUsuario()).build());
+		filtro.setMes(dto.getMes());
+		filtro.setAno(dto.getAno());
+		if(dto.getStatusAtual() != null) {
+			filtro.setStatus(StatusLocacao.valueOf(dto.getStatusAtual()));
+		}
+		return filtro;
+	}
+	
 	@DeleteMapping("{id}")
 	public ResponseEntity deletar( @PathVariable("id") Long id ) {
 		return service.obterPorId(id).map( entidade -> {
-			service.deletar(entidade);
-			return new ResponseEntity( HttpStatus.NO_CONTENT );
+			try {
+				service.deletar(entidade);
+				return new ResponseEntity( HttpStatus.NO_CONTENT );
+			}catch (RegraNegocioException e) {
+				return ResponseEntity.badRequest().body(e.getMessage());
+			}catch (ObjectOptimisticLockingFailureException e) {
+				return alteradaPorOutraOperacao();
+			}
 		}).orElseGet( () -> 
 			new ResponseEntity("Locação não encontrada na base de Dados.", HttpStatus.BAD_REQUEST) );
 	}
 	
+	private ResponseEntity alteradaPorOutraOperacao() {
+		return new ResponseEntity("A locação foi alterada por outra operação. Consulte-a novamente antes de alterar.", HttpStatus.CONFLICT);
+	}
+	
 	private LocacaoDTO converter(Locacao locacao) {
 		return LocacaoDTO.builder()
 					.id(locacao.getId())
@@ -132,6 +474,10 @@ public class LocacaoResource {
 					.status(locacao.getStatus().name())
 					.tipo(locacao.getTipo().name())
 					.usuario(locacao.getUsuario().getId())
+					.versao(locacao.getVersao())
+					.dataPrevistaDevolucao(locacao.getDataPrevistaDevolucao())
+					.renovacoes(locacao.getRenovacoes())
+					.atrasada(locacao.getAtrasada())
 					.build();
 					
 	}
@@ -143,6 +489,10 @@ public class LocacaoResource {
 		locacao.setAno(dto.getAno());
 		locacao.setMes(dto.getMes());
 		locacao.setValor(dto.getValor());
+		locacao.setVersao(dto.getVersao());
+		locacao.setDataPrevistaDevolucao(dto.getDataPrevistaDevolucao());
+		locacao.setRenovacoes(dto.getRenovacoes());
+		locacao.setAtrasada(dto.getAtrasada());
 		
 		Usuario usuario = usuarioService
 			.obterPorId(dto.getUsuario())
@@ -0,0 +1,61 @@
+package com.rafaguido.desafioeteg.api.resource;
+
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.rafaguido.desafioeteg.api.dto.ResumoMensalDTO;
+import com.rafaguido.desafioeteg.service.ResumoMensalService;
+import com.rafaguido.desafioeteg.service.UsuarioService;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Relatórios de faturamento lidos dos resumos mensais. Sem o parâmetro usuario, 
+ * os totais são de todos os usuários.
+ */
+@RestController
+@RequestMapping("/api/resumos")
+@RequiredArgsConstructor
+public class ResumoMensalResource {
+
+	private final ResumoMensalService service;
+	private final UsuarioService usuarioService;
+	
+	@GetMapping("{ano}/{mes}")
+	public ResponseEntity obterResumoMensal(
+			@PathVariable("ano") Integer ano,
+			@PathVariable("mes") Integer mes,
+			@RequestParam(value = "usuario", required = false) Long idUsuario) {
+		
+		if(mes < 1 || mes > 12) {
+			return ResponseEntity.badRequest().body("Informe um Mês válido.");
+		}
+		
+		if(idUsuario != null && !usuarioService.obterPorId(idUsuario).isPresent()) {
+			return ResponseEntity.badRequest().body("Não foi possível realizar a consulta. Usuário não encontrado para o Id informado.");
+		}
+		
+		List<ResumoMensalDTO> resumo = service.obterResumoMensal(idUsuario, ano, mes);
+		return ResponseEntity.ok(resumo);
+	}
+	
+	@GetMapping("{ano}")
+	public ResponseEntity obterResumoAnual(
+			@PathVariable("ano") Integer ano,
+			@RequestParam(value = "usuario", required = false) Long idUsuario) {
+		
+		if(idUsuario != null && !usuarioService.obterPorId(idUsuario).isPresent()) {
+			return ResponseEntity.badRequest().body("Não foi possível realizar a consulta. Usuário não encontrado para o Id informado.");
+		}
+		
+		List<ResumoMensalDTO> resumo = service.obterResumoAnual(idUsuario, ano);
+		return ResponseEntity.ok(resumo);
+	}
+	
+}
@@ -1,25 +1,48 @@
 package com.rafaguido.desafioeteg.api.resource;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.rafaguido.desafioeteg.api.dto.PaginaDTO;
+import com.rafaguido.desafioeteg.api.dto.ResultadoImportacaoDTO;
+import com.rafaguido.desafioeteg.api.dto.SaldoDTO;
 import com.rafaguido.desafioeteg.api.dto.TokenDTO;
+import com.rafaguido.desafioeteg.api.dto.TokenRenovacaoDTO;
 import com.rafaguido.desafioeteg.api.dto.UsuarioDTO;
 import com.rafaguido.desafioeteg.exception.ErroAutenticacao;
+import com.rafaguido.desafioeteg.exception.LimiteTentativasException;
 import com.rafaguido.desafioeteg.exception.RegraNegocioException;
+import com.rafaguido.desafioeteg.exception.ServicoSobrecarregadoException;
 import com.rafaguido.desafioeteg.model.entity.Usuario;
 import com.rafaguido.desafioeteg.service.JwtService;
 import com.rafaguido.desafioeteg.service.LocacaoService;
+import com.rafaguido.desafioeteg.service.TentativaLoginService;
+import com.rafaguido.desafioeteg.service.TokenRenovacaoService;
 import com.rafaguido.desafioeteg.service.UsuarioService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.RequiredArgsConstructor;
 
@@ -31,36 +54,86 @@ public class UsuarioResource {
 	private final UsuarioService service;
 	private final LocacaoService locacaoService;
 	private final JwtService jwtService;
+	private final TentativaLoginService tentativaLoginService;
+	private final TokenRenovacaoService tokenRenovacaoService;
+	private final ObjectMapper objectMapper;
+	
+	@Value("${saldo.lote.maximo-usuarios:1000}")
+	private int maximoUsuariosSaldo;
 	
 	@PostMapping("/autenticar")
-	public ResponseEntity<?> autenticar( @RequestBody UsuarioDTO dto ) {
+	public ResponseEntity<?> autenticar( @RequestBody UsuarioDTO dto, HttpServletRequest request ) {
+		String ip = request.getRemoteAddr();
 		try {
+			tentativaLoginService.verificar(dto.getEmail(), ip);
 			Usuario usuarioAutenticado = service.autenticar(dto.getEmail(), dto.getSenha());
-			String token = jwtService.gerarToken(usuarioAutenticado);
-			TokenDTO tokenDTO = new TokenDTO( usuarioAutenticado.getNome(), token);
-			return ResponseEntity.ok(tokenDTO);
+			tentativaLoginService.registrarSucesso(dto.getEmail(), ip);
+			return ResponseEntity.ok(gerarTokens(usuarioAutenticado));
 		}catch (ErroAutenticacao e) {
+			tentativaLoginService.registrarFalha(dto.getEmail(), ip);
 			return ResponseEntity.badRequest().body(e.getMessage());
+		}catch (LimiteTentativasException e) {
+			return ResponseEntity
+						.status(HttpStatus.TOO_MANY_REQUESTS)
+						.header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getSegundosParaNovaTentativa()))
+						.body(e.getMessage());
+		}catch (ServicoSobrecarregadoException e) {
+			return servicoIndisponivel(e);
 		}
 	}
 	
+	@PostMapping("/renovar-token")
+	public ResponseEntity<?> renovarToken( @RequestBody TokenRenovacaoDTO dto ) {
+		return tokenRenovacaoService
+					.consumir(dto.getTokenRenovacao())
+					.flatMap( service::obterPorId )
+					.<ResponseEntity<?>>map( usuario -> ResponseEntity.ok(gerarTokens(usuario)) )
+					.orElseGet( () -> ResponseEntity.badRequest().body("Token de renovação inválido ou expirado.") );
+	}
+	
+	private TokenDTO gerarTokens( Usuario usuario ) {
+		String token = jwtService.gerarToken(usuario);
+		String tokenRenovacao = tokenRenovacaoService.gerar(usuario);
+		return new TokenDTO( usuario.getNome(), token, tokenRenovacao );
+	}
+	
 	@PostMapping
 	public ResponseEntity salvar( @RequestBody UsuarioDTO dto ) {
 		
-		Usuario usuario = Usuario.builder()
-					.nome(dto.getNome())
-					.email(dto.getEmail())
-					.senha(dto.getSenha()).build();
+		Usuario usuario = converter(dto);
 		
 		try {
 			Usuario usuarioSalvo = service.salvarUsuario(usuario);
 			return new ResponseEntity(usuarioSalvo, HttpStatus.CREATED);
 		}catch (RegraNegocioException e) {
 			return ResponseEntity.badRequest().body(e.getMessage());
+		}catch (ServicoSobrecarregadoException e) {
+			return servicoIndisponivel(e);
 		}
 		
 	}
 	
+	/**
+	 * Cadastro em massa: aceita um array JSON ou NDJSON (um usuário por linha), lido em fluxo.
+	 */
+	@PostMapping(value = "importar", consumes = { MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson" })
+	public ResponseEntity importar( HttpServletRequest request ) {
+		try (InputStream corpo = request.getInputStream();
+				MappingIterator<UsuarioDTO> linhas = objectMapper.readerFor(UsuarioDTO.class).readValues(corpo)) {
+			ResultadoImportacaoDTO resultado = service.importar(linhas, this::converter);
+			return ResponseEntity.ok(resultado);
+		}catch (IOException e) {
+			return ResponseEntity.badRequest().body("Não foi possível ler o conteúdo da importação: " + e.getMessage());
+		}
+	}
+	
+	private Usuario converter( UsuarioDTO dto ) {
+		return Usuario.builder()
+					.nome(dto.getNome())
+					.email(dto.getEmail())
+					.senha(dto.getSenha()).build();
+	}
+	
 	@GetMapping("{id}/saldo")
 	public ResponseEntity obterSaldo( @PathVariable("id") Long id ) {
 		Optional<Usuario> usuario = service.obterPorId(id);
@@ -72,5 +145,46 @@ public class UsuarioResource {
 		BigDecimal saldo = locacaoService.obterSaldoPorUsuario(id);
 		return ResponseEntity.ok(saldo);
 	}
+	
+	/**
+	 * Saldos de vários usuários de uma vez: pelos ids informados ou, sem ids, 
+	 * pela página de usuários que começa depois do cursor.
+	 */
+	@GetMapping("saldos")
+	public ResponseEntity obterSaldos(
+			@RequestParam(value = "ids", required = false) List<Long> ids,
+			@RequestParam(value = "cursor", required = false) Long cursor,
+			@RequestParam(value = "tamanho", defaultValue = "100") int tamanho ) {
+		
+		try {
+			if(ids != null && !ids.isEmpty()) {
+				return ResponseEntity.ok(saldos(ids));
+			}
+			
+			if(tamanho < 1 || tamanho > maximoUsuariosSaldo) {
+				return ResponseEntity.badRequest().body("Informe um tamanho de página entre 1 e " + maximoUsuariosSaldo + ".");
+			}
+			
+			Slice<Long> pagina = service.obterIds(cursor, tamanho);
+			Slice<SaldoDTO> saldos = new SliceImpl<>(saldos(pagina.getContent()), pagina.getPageable(), pagina.hasNext());
+			return ResponseEntity.ok(PaginaDTO.de(saldos, SaldoDTO::getUsuario));
+		}catch (RegraNegocioException e) {
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}
+	}
+	
+	private List<SaldoDTO> saldos( List<Long> ids ) {
+		Map<Long, BigDecimal> saldos = locacaoService.obterSaldosPorUsuarios(ids);
+		return saldos.entrySet().stream()
+				.map( saldo -> new SaldoDTO(saldo.getKey(), saldo.getValue()) )
+				.collect(Collectors.toList());
+	}
+	
+	private ResponseEntity<String> servicoIndisponivel( ServicoSobrecarregadoException e ) {
+		return ResponseEntity
+					.status(HttpStatus.SERVICE_UNAVAILABLE)
+					.header(HttpHeaders.RETRY_AFTER, "1")
+					.body(e.getMessage());
+	}
 
 }
\ No newline at end of file
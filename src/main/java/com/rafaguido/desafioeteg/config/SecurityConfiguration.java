@@ -4,6 +4,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.Ordered;
@@ -33,15 +34,21 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 	@Autowired
 	private JwtService jwtService;
 	
+	@Value("${jwt.autenticacao-stateless:true}")
+	private boolean autenticacaoStateless;
+	
+	@Value("${senha.bcrypt.custo:10}")
+	private int custoBCrypt;
+	
 	@Bean
 	public PasswordEncoder passwordEncoder() {
-		PasswordEncoder encoder = new BCryptPasswordEncoder();
+		PasswordEncoder encoder = new BCryptPasswordEncoder(custoBCrypt);
 		return encoder;
 	}
 	
 	@Bean
 	public JwtTokenFilter jwtTokenFilter() {
-		return new JwtTokenFilter(jwtService, userDetailsService);
+		return new JwtTokenFilter(jwtService, userDetailsService, autenticacaoStateless);
 	}
 
 	@Override
@@ -59,6 +66,7 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 				.requestMatchers(CorsUtils::isPreFlightRequest).permitAll()
 				.antMatchers(HttpMethod.GET, "/actuator/**").permitAll()
 				.antMatchers(HttpMethod.POST, "/api/usuarios/autenticar").permitAll()
+				.antMatchers(HttpMethod.POST, "/api/usuarios/renovar-token").permitAll()
 				.antMatchers(HttpMethod.POST, "/api/usuarios").permitAll()
 				.anyRequest().authenticated()	
 		.and()
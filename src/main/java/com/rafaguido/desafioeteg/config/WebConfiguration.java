@@ -1,6 +1,10 @@
 package com.rafaguido.desafioeteg.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -8,9 +12,30 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 @EnableWebMvc
 @Configuration
 public class WebConfiguration implements WebMvcConfigurer {
+	
+	@Value("${web.async.timeout-ms:600000}")
+	private long timeoutAsync;
+	
+	@Value("${web.async.threads:8}")
+	private int threadsAsync;
 
 	@Override
 	public void addCorsMappings( CorsRegistry registry ) {
 		registry.addMapping("/**").allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS");
 	}
+	
+	@Override
+	public void configureAsyncSupport( AsyncSupportConfigurer configurer ) {
+		configurer.setDefaultTimeout(timeoutAsync);
+		configurer.setTaskExecutor(mvcTaskExecutor());
+	}
+	
+	@Bean
+	public ThreadPoolTaskExecutor mvcTaskExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(threadsAsync);
+		executor.setMaxPoolSize(threadsAsync);
+		executor.setThreadNamePrefix("mvc-async-");
+		return executor;
+	}
 }
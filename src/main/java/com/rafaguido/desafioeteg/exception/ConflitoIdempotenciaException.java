@@ -0,0 +1,8 @@
+package com.rafaguido.desafioeteg.exception;
+
+public class ConflitoIdempotenciaException extends RuntimeException {
+
+	public ConflitoIdempotenciaException(String mensagem) {
+		super(mensagem);
+	}
+}
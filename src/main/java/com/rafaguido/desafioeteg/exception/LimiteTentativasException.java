@@ -0,0 +1,15 @@
+package com.rafaguido.desafioeteg.exception;
+
+public class LimiteTentativasException extends RuntimeException {
+	
+	private final long segundosParaNovaTentativa;
+
+	public LimiteTentativasException(String mensagem, long segundosParaNovaTentativa) {
+		super(mensagem);
+		this.segundosParaNovaTentativa = segundosParaNovaTentativa;
+	}
+
+	public long getSegundosParaNovaTentativa() {
+		return segundosParaNovaTentativa;
+	}
+}
@@ -0,0 +1,42 @@
+package com.rafaguido.desafioeteg.model.entity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "filme", schema = "desafio")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Filme {
+
+	@Id
+	@Column(name = "id")
+	@GeneratedValue( strategy = GenerationType.SEQUENCE, generator = "filme_id_seq" )
+	@SequenceGenerator( name = "filme_id_seq", sequenceName = "filme_id_seq", schema = "desafio", allocationSize = 50 )
+	private Long id;
+	
+	@Column(name = "nome")
+	private String nome;
+	
+	@Column(name = "genero")
+	private String genero;
+	
+	@Column(name = "diretor")
+	private String diretor;
+	
+	@Column(name = "quantidade")
+	private Integer quantidade;
+	
+}
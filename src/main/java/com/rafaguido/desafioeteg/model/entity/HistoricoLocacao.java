@@ -0,0 +1,64 @@
+package com.rafaguido.desafioeteg.model.entity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Immutable;
+
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Evento de mudança de status de uma locação. Só recebe inserts: {@code statusAnterior} vazio é a criação
+ * e {@code statusNovo} vazio é a exclusão. Guarda o usuário e o valor para ser lido sem passar pela tabela de locações.
+ */
+@Entity
+@Immutable
+@Table(name = "historico_locacao", schema = "desafio")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistoricoLocacao {
+
+	@Id
+	@Column(name = "id")
+	@GeneratedValue( strategy = GenerationType.SEQUENCE, generator = "historico_locacao_id_seq" )
+	@SequenceGenerator( name = "historico_locacao_id_seq", sequenceName = "historico_locacao_id_seq", schema = "desafio", allocationSize = 50 )
+	private Long id;
+	
+	@Column(name = "id_locacao")
+	private Long idLocacao;
+	
+	@Column(name = "id_usuario")
+	private Long idUsuario;
+	
+	@Column(name = "status_anterior")
+	@Enumerated(value = EnumType.STRING)
+	private StatusLocacao statusAnterior;
+	
+	@Column(name = "status_novo")
+	@Enumerated(value = EnumType.STRING)
+	private StatusLocacao statusNovo;
+	
+	@Column(name = "valor")
+	private BigDecimal valor;
+	
+	@Column(name = "data_hora")
+	private LocalDateTime dataHora;
+	
+}
@@ -2,6 +2,7 @@ package com.rafaguido.desafioeteg.model.entity;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 import javax.persistence.Column;
 import javax.persistence.Convert;
@@ -13,8 +14,11 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Version;
 
+import org.hibernate.annotations.ColumnDefault;
 import org.springframework.data.jpa.convert.threeten.Jsr310JpaConverters;
 
 import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
@@ -35,7 +39,8 @@ public class Locacao {
 	
 	@Id
 	@Column(name = "id")
-	@GeneratedValue( strategy = GenerationType.IDENTITY )
+	@GeneratedValue( strategy = GenerationType.SEQUENCE, generator = "locacao_id_seq" )
+	@SequenceGenerator( name = "locacao_id_seq", sequenceName = "locacao_id_seq", schema = "desafio", allocationSize = 50 )
 	private Long id;
 	
 	@Column(name = "filme")
@@ -65,5 +70,30 @@ public class Locacao {
 	@Column(name = "status")
 	@Enumerated(value = EnumType.STRING)
 	private StatusLocacao status;
+	
+	@Column(name = "criado_em", updatable = false)
+	@Convert(converter = Jsr310JpaConverters.LocalDateTimeConverter.class)
+	private LocalDateTime criadoEm;
+	
+	@Column(name = "data_prevista_devolucao", updatable = false)
+	@Convert(converter = Jsr310JpaConverters.LocalDateConverter.class)
+	private LocalDate dataPrevistaDevolucao;
+	
+	@Column(name = "renovacoes", updatable = false)
+	private Integer renovacoes;
+	
+	@Column(name = "atrasada", updatable = false)
+	private Boolean atrasada;
+	
+	/**
+	 * Aluguel de um usuário que já devolveu tudo; só a varredura de atrasos grava, e nasce falso pelo default da coluna.
+	 */
+	@ColumnDefault("false")
+	@Column(name = "devolvida", insertable = false, updatable = false)
+	private Boolean devolvida;
+	
+	@Version
+	@Column(name = "versao")
+	private Long versao;
 
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.rafaguido.desafioeteg.model.entity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "locacoes_ativas", schema = "desafio")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocacoesAtivas {
+
+	@Id
+	@Column(name = "id_usuario")
+	private Long idUsuario;
+	
+	@Column(name = "quantidade")
+	private Integer quantidade;
+	
+}
@@ -0,0 +1,69 @@
+package com.rafaguido.desafioeteg.model.entity;
+
+import java.math.BigDecimal;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Totais pré-agregados das locações por mês. O resumo geral usa {@code idUsuario = 0} 
+ * e fica dividido em várias faixas para não concentrar as atualizações numa única linha.
+ */
+@Entity
+@Table(name = "resumo_mensal", schema = "desafio", 
+	uniqueConstraints = @UniqueConstraint(columnNames = {"id_usuario", "particao", "ano", "mes", "tipo", "status"}))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumoMensal {
+	
+	public static final Long GERAL = 0l;
+
+	@Id
+	@Column(name = "id")
+	@GeneratedValue( strategy = GenerationType.IDENTITY )
+	private Long id;
+	
+	@Column(name = "id_usuario")
+	private Long idUsuario;
+	
+	@Column(name = "particao")
+	private Integer particao;
+	
+	@Column(name = "ano")
+	private Integer ano;
+	
+	@Column(name = "mes")
+	private Integer mes;
+	
+	@Column(name = "tipo")
+	@Enumerated(value = EnumType.STRING)
+	private TipoLocacao tipo;
+	
+	@Column(name = "status")
+	@Enumerated(value = EnumType.STRING)
+	private StatusLocacao status;
+	
+	@Column(name = "total")
+	private BigDecimal total;
+	
+	@Column(name = "quantidade")
+	private Long quantidade;
+	
+}
@@ -0,0 +1,33 @@
+package com.rafaguido.desafioeteg.model.entity;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "token_renovacao", schema = "desafio")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenRenovacao {
+
+	@Id
+	@Column(name = "hash")
+	private String hash;
+	
+	@Column(name = "id_usuario")
+	private Long idUsuario;
+	
+	@Column(name = "data_expiracao")
+	private LocalDateTime dataExpiracao;
+	
+}
@@ -5,7 +5,9 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -15,7 +17,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table( name = "usuario" , schema = "desafio")
+@Table( name = "usuario" , schema = "desafio", 
+		uniqueConstraints = @UniqueConstraint( name = "uk_usuario_email", columnNames = "email" ))
 @Builder
 @Data
 @NoArgsConstructor
@@ -24,7 +27,8 @@ public class Usuario {
 
 	@Id
 	@Column(name = "id")
-	@GeneratedValue( strategy = GenerationType.IDENTITY )
+	@GeneratedValue( strategy = GenerationType.SEQUENCE, generator = "usuario_id_seq" )
+	@SequenceGenerator( name = "usuario_id_seq", sequenceName = "usuario_id_seq", schema = "desafio", allocationSize = 50 )
 	private Long id;
 	
 	@Column(name = "nome")
@@ -0,0 +1,21 @@
+package com.rafaguido.desafioeteg.model.enums;
+
+public enum ResultadoOperacaoLote {
+
+	ATUALIZADA(true),
+	EXCLUIDA(true),
+	SEM_ALTERACAO(true),
+	NAO_ENCONTRADA(false),
+	STATUS_DIVERGENTE(false),
+	REJEITADA(false);
+	
+	private final boolean sucesso;
+	
+	ResultadoOperacaoLote(boolean sucesso) {
+		this.sucesso = sucesso;
+	}
+	
+	public boolean isSucesso() {
+		return sucesso;
+	}
+}
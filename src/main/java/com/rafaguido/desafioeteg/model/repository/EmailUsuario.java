@@ -0,0 +1,9 @@
+package com.rafaguido.desafioeteg.model.repository;
+
+public interface EmailUsuario {
+
+	Long getId();
+	
+	String getEmail();
+	
+}
@@ -0,0 +1,28 @@
+package com.rafaguido.desafioeteg.model.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.rafaguido.desafioeteg.model.entity.Filme;
+
+public interface FilmeRepository extends JpaRepository<Filme, Long> {
+
+	@Query( " select case when count(f) > 0 then true else false end from Filme f where lower(f.nome) = :nome " )
+	boolean existsByNome( @Param("nome") String nome );
+	
+	/**
+	 * Retira cópias do estoque num único UPDATE condicional: sem cópias suficientes nenhuma linha é 
+	 * alterada, então o estoque nunca fica negativo e só a linha do filme é travada.
+	 */
+	@Modifying
+	@Query( " update Filme f set f.quantidade = f.quantidade - :quantidade "
+		  + " where lower(f.nome) = :nome and f.quantidade >= :quantidade " )
+	int reservar( @Param("nome") String nome, @Param("quantidade") int quantidade );
+	
+	@Modifying
+	@Query( " update Filme f set f.quantidade = f.quantidade + :quantidade where lower(f.nome) = :nome " )
+	int liberar( @Param("nome") String nome, @Param("quantidade") int quantidade );
+	
+}
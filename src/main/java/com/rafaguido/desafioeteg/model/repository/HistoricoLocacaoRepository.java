@@ -0,0 +1,41 @@
+package com.rafaguido.desafioeteg.model.repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.rafaguido.desafioeteg.model.entity.HistoricoLocacao;
+
+/**
+ * As consultas andam por ({@code dataHora}, {@code id}), do mais recente para o mais antigo, 
+ * que é a ordem dos índices de cada partição.
+ */
+public interface HistoricoLocacaoRepository extends JpaRepository<HistoricoLocacao, Long> {
+
+	@Query( " select h from HistoricoLocacao h where h.idUsuario = :idUsuario "
+		  + " and ( h.dataHora < :dataHoraCursor or ( h.dataHora = :dataHoraCursor and h.id < :cursor ) ) "
+		  + " order by h.dataHora desc, h.id desc " )
+	Slice<HistoricoLocacao> obterPorUsuario( 
+			@Param("idUsuario") Long idUsuario, 
+			@Param("dataHoraCursor") LocalDateTime dataHoraCursor, 
+			@Param("cursor") Long cursor, 
+			Pageable pageable );
+	
+	@Query( " select h from HistoricoLocacao h where h.idLocacao = :idLocacao "
+		  + " and ( h.dataHora < :dataHoraCursor or ( h.dataHora = :dataHoraCursor and h.id < :cursor ) ) "
+		  + " order by h.dataHora desc, h.id desc " )
+	Slice<HistoricoLocacao> obterPorLocacao( 
+			@Param("idLocacao") Long idLocacao, 
+			@Param("dataHoraCursor") LocalDateTime dataHoraCursor, 
+			@Param("cursor") Long cursor, 
+			Pageable pageable );
+	
+	@Query( " select h.dataHora from HistoricoLocacao h where h.id = :id " )
+	Optional<LocalDateTime> obterDataHora( @Param("id") Long id );
+	
+}
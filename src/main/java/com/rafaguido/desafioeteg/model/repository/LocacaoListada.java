@@ -0,0 +1,32 @@
+package com.rafaguido.desafioeteg.model.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Uma locação como sai das consultas de listagem: só as colunas, com o id do usuário no lugar do {@code Usuario}.
+ */
+@Getter
+@AllArgsConstructor
+public class LocacaoListada {
+
+	private final Long id;
+	private final String filme;
+	private final Integer mes;
+	private final Integer ano;
+	private final BigDecimal valor;
+	private final Long idUsuario;
+	private final TipoLocacao tipo;
+	private final StatusLocacao status;
+	private final Long versao;
+	private final LocalDate dataPrevistaDevolucao;
+	private final Integer renovacoes;
+	private final Boolean atrasada;
+	
+}
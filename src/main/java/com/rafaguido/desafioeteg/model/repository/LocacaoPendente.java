@@ -0,0 +1,11 @@
+package com.rafaguido.desafioeteg.model.repository;
+
+import java.time.LocalDateTime;
+
+public interface LocacaoPendente {
+
+	Long getId();
+	
+	LocalDateTime getCriadoEm();
+	
+}
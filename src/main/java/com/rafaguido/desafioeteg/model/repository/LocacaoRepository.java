@@ -1,23 +1,150 @@
 package com.rafaguido.desafioeteg.model.repository;
 
-import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import com.rafaguido.desafioeteg.model.entity.Locacao;
 import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
 import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
 
-public interface LocacaoRepository extends JpaRepository<Locacao, Long> {
+public interface LocacaoRepository extends JpaRepository<Locacao, Long>, LocacaoRepositoryCustom {
 
 	@Query( value = 
-			  " select sum(l.valor) from Locacao l join l.usuario u "
-			+ " where u.id = :idUsuario and l.tipo =:tipo and l.status = :status group by u " )
-	BigDecimal obterSaldoPorTipoLocacaoEUsuarioEStatus(
-			@Param("idUsuario") Long idUsuario, 
-			@Param("tipo") TipoLocacao tipo,
+			  " select l.usuario.id as idUsuario, "
+			+ " sum( case when l.tipo = :devolucao then l.valor when l.tipo = :aluguel then (0 - l.valor) else 0 end ) as saldo "
+			+ " from Locacao l "
+			+ " where l.usuario.id in :idsUsuarios and l.status = :status "
+			+ " group by l.usuario.id " )
+	List<SaldoPorUsuario> obterSaldosPorUsuarios(
+			@Param("idsUsuarios") Collection<Long> idsUsuarios,
+			@Param("devolucao") TipoLocacao devolucao,
+			@Param("aluguel") TipoLocacao aluguel,
 			@Param("status") StatusLocacao status);
 	
-}
\ No newline at end of file
+	@Query( value = 
+			  " select coalesce( sum( case when l.tipo = :aluguel then 1 when l.tipo = :devolucao then -1 else 0 end ), 0 ) "
+			+ " from Locacao l "
+			+ " where l.usuario.id = :idUsuario and l.status <> :cancelado " )
+	Long contarAtivas(
+			@Param("idUsuario") Long idUsuario,
+			@Param("aluguel") TipoLocacao aluguel,
+			@Param("devolucao") TipoLocacao devolucao,
+			@Param("cancelado") StatusLocacao cancelado);
+	
+	/**
+	 * Só as pendentes criadas pela aplicação; as importadas chegam sem {@code criadoEm} e não expiram.
+	 */
+	@Query( " select l.id as id, l.criadoEm as criadoEm from Locacao l "
+			+ " where l.status = :status and l.criadoEm is not null and l.id > :cursor order by l.id " )
+	List<LocacaoPendente> obterPendentesAPartirDe(
+			@Param("status") StatusLocacao status,
+			@Param("cursor") Long cursor,
+			Pageable pageable);
+	
+	/**
+	 * Aluguéis vencidos e ainda não marcados como atrasados nem devolvidos, em ordem de prazo e id, 
+	 * a partir do cursor ({@code prazoCursor}, {@code idCursor}). É a mesma condição do índice parcial de vencimento.
+	 */
+	@Query( value = 
+			  " select l.id as id, l.dataPrevistaDevolucao as dataPrevistaDevolucao from Locacao l "
+			+ " where l.tipo = :tipo and l.status <> :cancelado and l.atrasada = false and l.devolvida = false "
+			+ " and l.dataPrevistaDevolucao < :hoje "
+			+ " and ( l.dataPrevistaDevolucao > :prazoCursor or ( l.dataPrevistaDevolucao = :prazoCursor and l.id > :idCursor ) ) "
+			+ " order by l.dataPrevistaDevolucao, l.id " )
+	List<LocacaoVencida> obterVencidasAPartirDe(
+			@Param("tipo") TipoLocacao tipo,
+			@Param("cancelado") StatusLocacao cancelado,
+			@Param("hoje") LocalDate hoje,
+			@Param("prazoCursor") LocalDate prazoCursor,
+			@Param("idCursor") Long idCursor,
+			Pageable pageable);
+	
+	/**
+	 * Como a devolução não aponta o aluguel que encerra, só marca os aluguéis de quem ainda tem filmes em mãos
+	 * ({@code locacoes_ativas.quantidade} acima de zero); todos os vencidos desse usuário ficam atrasados.
+	 */
+	@Modifying
+	@Query( " update Locacao l set l.atrasada = true "
+		  + " where l.id in :ids and l.atrasada = false and l.devolvida = false and l.status <> :cancelado "
+		  + " and l.dataPrevistaDevolucao < :hoje "
+		  + " and exists ( select a.idUsuario from LocacoesAtivas a where a.idUsuario = l.usuario.id and a.quantidade > 0 ) " )
+	int marcarAtrasadas( 
+			@Param("ids") Collection<Long> ids, 
+			@Param("cancelado") StatusLocacao cancelado, 
+			@Param("hoje") LocalDate hoje );
+	
+	/**
+	 * O complemento de {@link #marcarAtrasadas}: os vencidos de quem já devolveu tudo são dados como devolvidos 
+	 * e saem do índice de vencimento, em vez de voltarem a cada varredura.
+	 */
+	@Modifying
+	@Query( " update Locacao l set l.devolvida = true "
+		  + " where l.id in :ids and l.atrasada = false and l.devolvida = false and l.status <> :cancelado "
+		  + " and l.dataPrevistaDevolucao < :hoje "
+		  + " and not exists ( select a.idUsuario from LocacoesAtivas a where a.idUsuario = l.usuario.id and a.quantidade > 0 ) " )
+	int marcarDevolvidas( 
+			@Param("ids") Collection<Long> ids, 
+			@Param("cancelado") StatusLocacao cancelado, 
+			@Param("hoje") LocalDate hoje );
+	
+	@Modifying
+	@Query( " update Locacao l set l.status = :status, l.versao = l.versao + 1 where l.id in :ids " )
+	int atualizarStatus( @Param("ids") Collection<Long> ids, @Param("status") StatusLocacao status );
+	
+	@Query( " select l.renovacoes as renovacoes, l.dataPrevistaDevolucao as dataPrevistaDevolucao from Locacao l where l.id = :id " )
+	Optional<PrazoLocacao> obterPrazo( @Param("id") Long id );
+	
+	/**
+	 * Renovação num único UPDATE condicional: o novo prazo vem calculado de fora e só é gravado se
+	 * {@code renovacoes} ainda for o valor lido, então tentativas concorrentes nunca passam do máximo.
+	 */
+	@Modifying(clearAutomatically = true)
+	@Query( " update Locacao l set l.renovacoes = l.renovacoes + 1, l.versao = l.versao + 1, l.atrasada = false, "
+		  + " l.dataPrevistaDevolucao = :novoPrazo "
+		  + " where l.id = :id and l.renovacoes = :renovacoes and l.renovacoes < :maximo "
+		  + " and l.tipo = :aluguel and l.status <> :cancelado " )
+	int renovar( 
+			@Param("id") Long id, 
+			@Param("renovacoes") Integer renovacoes, 
+			@Param("novoPrazo") LocalDate novoPrazo, 
+			@Param("maximo") int maximo, 
+			@Param("aluguel") TipoLocacao aluguel, 
+			@Param("cancelado") StatusLocacao cancelado );
+	
+	/**
+	 * Troca de status condicional: só altera a linha se ela ainda estiver em {@code statusAtual}.
+	 */
+	@Modifying
+	@Query( " update Locacao l set l.status = :novoStatus, l.versao = l.versao + 1 where l.id = :id and l.status = :statusAtual " )
+	int transicionarStatus( 
+			@Param("id") Long id, 
+			@Param("statusAtual") StatusLocacao statusAtual, 
+			@Param("novoStatus") StatusLocacao novoStatus );
+	
+	/**
+	 * A situação como está gravada na base. A projeção não passa pelo contexto de persistência e a consulta 
+	 * não descarrega as alterações pendentes, então uma entidade gerenciada já alterada (open-session-in-view) 
+	 * não contamina a leitura.
+	 */
+	@QueryHints( @QueryHint(name = org.hibernate.annotations.QueryHints.FLUSH_MODE, value = "COMMIT") )
+	@Query( " select new com.rafaguido.desafioeteg.model.repository.SituacaoLocacao( "
+			+ " l.id, l.usuario.id, l.filme, l.mes, l.ano, l.tipo, l.status, l.valor ) "
+			+ " from Locacao l where l.id = :id " )
+	Optional<SituacaoLocacao> obterSituacao( @Param("id") Long id );
+	
+	@Modifying
+	@Query( " delete from Locacao l where l.id in :ids " )
+	int excluirPorIds( @Param("ids") Collection<Long> ids );
+	
+}
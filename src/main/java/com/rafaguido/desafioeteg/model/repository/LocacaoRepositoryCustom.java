@@ -0,0 +1,22 @@
+package com.rafaguido.desafioeteg.model.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import com.rafaguido.desafioeteg.model.entity.Locacao;
+
+public interface LocacaoRepositoryCustom {
+
+	Slice<LocacaoListada> buscarPagina( Locacao locacaoFiltro, Long cursor, Pageable pageable );
+	
+	List<Long> obterIds( Locacao locacaoFiltro, Long cursor, int limite );
+	
+	List<SituacaoLocacao> travarSituacoes( Collection<Long> ids );
+	
+	void percorrerPorUsuario( Long idUsuario, int tamanhoLote, Consumer<LocacaoListada> consumidor );
+	
+}
@@ -0,0 +1,189 @@
+package com.rafaguido.desafioeteg.model.repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import org.hibernate.jpa.QueryHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import com.rafaguido.desafioeteg.model.entity.Locacao;
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+
+/**
+ * Consultas de leitura de locações, projetadas direto em {@link LocacaoListada}: um único select com
+ * as colunas da locação e o id do usuário, sem carregar entidades nem o {@code Usuario}.
+ * 
+ * Só entram no SQL os filtros informados e a ordenação é sempre pelo id, o que permite paginar
+ * tanto por página quanto por cursor (id > cursor).
+ * 
+ * A busca por filme é sempre {@code lower(filme) like '%termo%'}, com o termo já em minúsculas e
+ * passado como parâmetro: é exatamente a expressão coberta pelo índice trigram
+ * {@code idx_locacao_filme_trgm} do PostgreSQL (ver README).
+ */
+public class LocacaoRepositoryImpl implements LocacaoRepositoryCustom {
+	
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	public Slice<LocacaoListada> buscarPagina(Locacao locacaoFiltro, Long cursor, Pageable pageable) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<LocacaoListada> query = cb.createQuery(LocacaoListada.class);
+		Root<Locacao> locacao = query.from(Locacao.class);
+		
+		List<Predicate> filtros = filtros(cb, locacao, locacaoFiltro);
+		
+		if(cursor != null) {
+			filtros.add( cb.greaterThan(locacao.<Long>get("id"), cursor) );
+		}
+		
+		query.select(cb.construct(LocacaoListada.class, 
+					locacao.get("id"),
+					locacao.get("filme"),
+					locacao.get("mes"),
+					locacao.get("ano"),
+					locacao.get("valor"),
+					locacao.get("usuario").get("id"),
+					locacao.get("tipo"),
+					locacao.get("status"),
+					locacao.get("versao"),
+					locacao.get("dataPrevistaDevolucao"),
+					locacao.get("renovacoes"),
+					locacao.get("atrasada")))
+			.where(filtros.toArray(new Predicate[0]))
+			.orderBy(cb.asc(locacao.get("id")));
+		
+		TypedQuery<LocacaoListada> typedQuery = entityManager.createQuery(query);
+		if(cursor == null) {
+			typedQuery.setFirstResult((int) pageable.getOffset());
+		}
+		typedQuery.setMaxResults(pageable.getPageSize() + 1);
+		
+		List<LocacaoListada> resultado = typedQuery.getResultList();
+		boolean temProxima = resultado.size() > pageable.getPageSize();
+		if(temProxima) {
+			resultado = resultado.subList(0, pageable.getPageSize());
+		}
+		
+		return new SliceImpl<>(resultado, pageable, temProxima);
+	}
+	
+	@Override
+	public List<Long> obterIds(Locacao locacaoFiltro, Long cursor, int limite) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Long> query = cb.createQuery(Long.class);
+		Root<Locacao> locacao = query.from(Locacao.class);
+		
+		List<Predicate> filtros = filtros(cb, locacao, locacaoFiltro);
+		if(cursor != null) {
+			filtros.add( cb.greaterThan(locacao.<Long>get("id"), cursor) );
+		}
+		
+		query.select(locacao.<Long>get("id"))
+			.where(filtros.toArray(new Predicate[0]))
+			.orderBy(cb.asc(locacao.get("id")));
+		
+		return entityManager.createQuery(query).setMaxResults(limite).getResultList();
+	}
+	
+	private static List<Predicate> filtros(CriteriaBuilder cb, Root<Locacao> locacao, Locacao locacaoFiltro) {
+		List<Predicate> filtros = new ArrayList<>();
+		
+		if(locacaoFiltro.getUsuario() != null && locacaoFiltro.getUsuario().getId() != null) {
+			filtros.add( cb.equal(locacao.get("usuario").get("id"), locacaoFiltro.getUsuario().getId()) );
+		}
+		
+		if(locacaoFiltro.getMes() != null) {
+			filtros.add( cb.equal(locacao.get("mes"), locacaoFiltro.getMes()) );
+		}
+		
+		if(locacaoFiltro.getAno() != null) {
+			filtros.add( cb.equal(locacao.get("ano"), locacaoFiltro.getAno()) );
+		}
+		
+		if(locacaoFiltro.getStatus() != null) {
+			filtros.add( cb.equal(locacao.get("status"), locacaoFiltro.getStatus()) );
+		}
+		
+		if(locacaoFiltro.getFilme() != null && !locacaoFiltro.getFilme().trim().isEmpty()) {
+			String padrao = "%" + escaparLike(locacaoFiltro.getFilme().trim().toLowerCase(Locale.ROOT)) + "%";
+			filtros.add( cb.like(cb.lower(locacao.<String>get("filme")), padrao, '\\') );
+		}
+		
+		return filtros;
+	}
+	
+	/**
+	 * Lê só as colunas que alimentam os dados derivados e trava as linhas até o fim da transação, 
+	 * para que a alteração em lote que vem em seguida parta exatamente desta situação.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<SituacaoLocacao> travarSituacoes(Collection<Long> ids) {
+		List<Object[]> linhas = entityManager
+				.createNativeQuery(" select id, id_usuario, filme, mes, ano, tipo, status, valor "
+						+ " from desafio.locacao where id in (:ids) for update ")
+				.setParameter("ids", ids)
+				.getResultList();
+		
+		List<SituacaoLocacao> situacoes = new ArrayList<>(linhas.size());
+		for(Object[] linha : linhas) {
+			situacoes.add(new SituacaoLocacao(
+					((Number) linha[0]).longValue(),
+					linha[1] == null ? null : ((Number) linha[1]).longValue(),
+					(String) linha[2],
+					linha[3] == null ? null : ((Number) linha[3]).intValue(),
+					linha[4] == null ? null : ((Number) linha[4]).intValue(),
+					linha[5] == null ? null : TipoLocacao.valueOf((String) linha[5]),
+					linha[6] == null ? null : StatusLocacao.valueOf((String) linha[6]),
+					(BigDecimal) linha[7]));
+		}
+		return situacoes;
+	}
+	
+	/**
+	 * Percorre as locações do usuário com um cursor somente-avanço, lendo do banco em lotes
+	 * de {@code tamanhoLote} linhas. Como o resultado é uma projeção, nada fica no contexto de
+	 * persistência e o uso de memória não cresce com o total de linhas. Precisa rodar dentro de
+	 * uma transação.
+	 */
+	@Override
+	public void percorrerPorUsuario(Long idUsuario, int tamanhoLote, Consumer<LocacaoListada> consumidor) {
+		TypedQuery<LocacaoListada> query = entityManager
+				.createQuery(" select new com.rafaguido.desafioeteg.model.repository.LocacaoListada( "
+						+ " l.id, l.filme, l.mes, l.ano, l.valor, l.usuario.id, l.tipo, l.status, l.versao, "
+						+ " l.dataPrevistaDevolucao, l.renovacoes, l.atrasada ) "
+						+ " from Locacao l where l.usuario.id = :idUsuario order by l.id ", LocacaoListada.class)
+				.setParameter("idUsuario", idUsuario)
+				.setHint(QueryHints.HINT_FETCH_SIZE, tamanhoLote)
+				.setHint(QueryHints.HINT_READONLY, true);
+		
+		try (Stream<LocacaoListada> locacoes = query.getResultStream()) {
+			locacoes.forEach(consumidor);
+		}
+	}
+	
+	static String escaparLike(String texto) {
+		return texto
+				.replace("\\", "\\\\")
+				.replace("%", "\\%")
+				.replace("_", "\\_");
+	}
+
+}
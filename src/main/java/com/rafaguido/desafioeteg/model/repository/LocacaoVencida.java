@@ -0,0 +1,11 @@
+package com.rafaguido.desafioeteg.model.repository;
+
+import java.time.LocalDate;
+
+public interface LocacaoVencida {
+
+	Long getId();
+	
+	LocalDate getDataPrevistaDevolucao();
+	
+}
@@ -0,0 +1,37 @@
+package com.rafaguido.desafioeteg.model.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.rafaguido.desafioeteg.model.entity.LocacoesAtivas;
+
+public interface LocacoesAtivasRepository extends JpaRepository<LocacoesAtivas, Long> {
+
+	@Modifying
+	@Query( " update LocacoesAtivas a set a.quantidade = a.quantidade + :quantidade "
+		  + " where a.idUsuario = :idUsuario and a.quantidade + :quantidade <= :limite " )
+	int abrir( 
+			@Param("idUsuario") Long idUsuario, 
+			@Param("quantidade") int quantidade, 
+			@Param("limite") int limite );
+	
+	@Modifying
+	@Query( " update LocacoesAtivas a set a.quantidade = a.quantidade - :quantidade "
+		  + " where a.idUsuario = :idUsuario and a.quantidade >= :quantidade " )
+	int encerrar( 
+			@Param("idUsuario") Long idUsuario, 
+			@Param("quantidade") int quantidade );
+	
+	/**
+	 * Cria a linha na transação de quem chama; se outra transação já criou, não faz nada e devolve 0.
+	 */
+	@Modifying
+	@Query( value = " insert into desafio.locacoes_ativas (id_usuario, quantidade) values (:idUsuario, :quantidade) "
+				  + " on conflict do nothing ", nativeQuery = true )
+	int criar( 
+			@Param("idUsuario") Long idUsuario, 
+			@Param("quantidade") int quantidade );
+	
+}
@@ -0,0 +1,74 @@
+package com.rafaguido.desafioeteg.model.repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.rafaguido.desafioeteg.model.entity.ResumoMensal;
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+
+public interface ResumoMensalRepository extends JpaRepository<ResumoMensal, Long> {
+
+	@Modifying
+	@Query( value = 
+			  " update ResumoMensal r set r.total = r.total + :total, r.quantidade = r.quantidade + :quantidade "
+			+ " where r.idUsuario = :idUsuario and r.particao = :particao and r.ano = :ano and r.mes = :mes "
+			+ " and r.tipo = :tipo and r.status = :status " )
+	int somar(
+			@Param("idUsuario") Long idUsuario,
+			@Param("particao") Integer particao,
+			@Param("ano") Integer ano,
+			@Param("mes") Integer mes,
+			@Param("tipo") TipoLocacao tipo,
+			@Param("status") StatusLocacao status,
+			@Param("total") BigDecimal total,
+			@Param("quantidade") Long quantidade);
+	
+	/**
+	 * Cria a linha já com a variação, na transação de quem chama; se outra transação já criou, 
+	 * não faz nada e devolve 0. Tipo e status vão pelo nome, como a entidade grava.
+	 */
+	@Modifying
+	@Query( value = 
+			  " insert into desafio.resumo_mensal (id_usuario, particao, ano, mes, tipo, status, total, quantidade) "
+			+ " values (:idUsuario, :particao, :ano, :mes, :tipo, :status, :total, :quantidade) "
+			+ " on conflict do nothing ", nativeQuery = true )
+	int criar(
+			@Param("idUsuario") Long idUsuario,
+			@Param("particao") Integer particao,
+			@Param("ano") Integer ano,
+			@Param("mes") Integer mes,
+			@Param("tipo") String tipo,
+			@Param("status") String status,
+			@Param("total") BigDecimal total,
+			@Param("quantidade") Long quantidade);
+	
+	@Query( value = 
+			  " select new com.rafaguido.desafioeteg.model.repository.TotalMensal( "
+			+ " r.ano, r.mes, r.tipo, r.status, sum(r.total), sum(r.quantidade) ) "
+			+ " from ResumoMensal r "
+			+ " where r.idUsuario = :idUsuario and r.ano = :ano and r.mes = :mes "
+			+ " group by r.ano, r.mes, r.tipo, r.status "
+			+ " order by r.tipo, r.status " )
+	List<TotalMensal> obterResumoMensal(
+			@Param("idUsuario") Long idUsuario,
+			@Param("ano") Integer ano,
+			@Param("mes") Integer mes);
+	
+	@Query( value = 
+			  " select new com.rafaguido.desafioeteg.model.repository.TotalMensal( "
+			+ " r.ano, r.mes, r.tipo, r.status, sum(r.total), sum(r.quantidade) ) "
+			+ " from ResumoMensal r "
+			+ " where r.idUsuario = :idUsuario and r.ano = :ano "
+			+ " group by r.ano, r.mes, r.tipo, r.status "
+			+ " order by r.mes, r.tipo, r.status " )
+	List<TotalMensal> obterResumoAnual(
+			@Param("idUsuario") Long idUsuario,
+			@Param("ano") Integer ano);
+	
+}
@@ -0,0 +1,11 @@
+package com.rafaguido.desafioeteg.model.repository;
+
+import java.math.BigDecimal;
+
+public interface SaldoPorUsuario {
+
+	Long getIdUsuario();
+	
+	BigDecimal getSaldo();
+	
+}
@@ -0,0 +1,33 @@
+package com.rafaguido.desafioeteg.model.repository;
+
+import java.math.BigDecimal;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.rafaguido.desafioeteg.model.entity.SaldoUsuario;
+
+public interface SaldoUsuarioRepository extends JpaRepository<SaldoUsuario, Long> {
+
+	@Modifying
+	@Query( " update SaldoUsuario s set s.saldo = s.saldo + :variacao where s.idUsuario = :idUsuario " )
+	int somar( @Param("idUsuario") Long idUsuario, @Param("variacao") BigDecimal variacao );
+	
+	@Modifying
+	@Query( " update SaldoUsuario s set s.saldo = :novoSaldo where s.idUsuario = :idUsuario and s.saldo = :saldoEsperado " )
+	int corrigir( 
+			@Param("idUsuario") Long idUsuario, 
+			@Param("saldoEsperado") BigDecimal saldoEsperado, 
+			@Param("novoSaldo") BigDecimal novoSaldo );
+	
+	/**
+	 * Cria a linha na transação de quem chama; se outra transação já criou, não faz nada e devolve 0.
+	 */
+	@Modifying
+	@Query( value = " insert into desafio.saldo_usuario (id_usuario, saldo) values (:idUsuario, :saldo) "
+				  + " on conflict do nothing ", nativeQuery = true )
+	int criar( @Param("idUsuario") Long idUsuario, @Param("saldo") BigDecimal saldo );
+	
+}
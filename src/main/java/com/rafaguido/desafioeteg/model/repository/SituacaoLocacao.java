@@ -0,0 +1,67 @@
+package com.rafaguido.desafioeteg.model.repository;
+
+import java.math.BigDecimal;
+
+import com.rafaguido.desafioeteg.model.entity.Locacao;
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Fotografia imutável dos campos de uma locação que alimentam os dados derivados dela.
+ */
+@Getter
+@AllArgsConstructor
+public class SituacaoLocacao {
+
+	private final Long id;
+	private final Long idUsuario;
+	private final String filme;
+	private final Integer mes;
+	private final Integer ano;
+	private final TipoLocacao tipo;
+	private final StatusLocacao status;
+	private final BigDecimal valor;
+	
+	public static SituacaoLocacao de(Locacao locacao) {
+		Long idUsuario = locacao.getUsuario() == null ? null : locacao.getUsuario().getId();
+		return new SituacaoLocacao(
+				locacao.getId(), 
+				idUsuario, 
+				locacao.getFilme(),
+				locacao.getMes(), 
+				locacao.getAno(), 
+				locacao.getTipo(), 
+				locacao.getStatus(), 
+				locacao.getValor());
+	}
+	
+	public SituacaoLocacao comStatus(StatusLocacao novoStatus) {
+		return new SituacaoLocacao(id, idUsuario, filme, mes, ano, tipo, novoStatus, valor);
+	}
+	
+	/**
+	 * Quanto esta locação soma ao saldo do usuário: devoluções efetivadas entram positivas,
+	 * aluguéis efetivados negativos e o resto não conta.
+	 */
+	public BigDecimal contribuicaoParaSaldo() {
+		if(status != StatusLocacao.EFETIVADO || valor == null || tipo == null) {
+			return BigDecimal.ZERO;
+		}
+		return tipo == TipoLocacao.DEVOLUÇÃO ? valor : valor.negate();
+	}
+	
+	/**
+	 * Quantas cópias esta locação deixa com o usuário: um aluguel leva uma, uma devolução traz uma de volta
+	 * e locações canceladas não contam.
+	 */
+	public int ocupacao() {
+		if(status == StatusLocacao.CANCELADO || tipo == null) {
+			return 0;
+		}
+		return tipo == TipoLocacao.ALUGUEL ? 1 : -1;
+	}
+	
+}
\ No newline at end of file
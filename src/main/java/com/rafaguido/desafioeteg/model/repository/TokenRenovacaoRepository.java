@@ -0,0 +1,28 @@
+package com.rafaguido.desafioeteg.model.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.rafaguido.desafioeteg.model.entity.TokenRenovacao;
+
+public interface TokenRenovacaoRepository extends JpaRepository<TokenRenovacao, String> {
+
+	@Modifying
+	@Query( " delete from TokenRenovacao t where t.hash = :hash and t.dataExpiracao > :agora " )
+	int consumir( @Param("hash") String hash, @Param("agora") LocalDateTime agora );
+	
+	@Query( " select t.hash from TokenRenovacao t where t.dataExpiracao <= :agora " )
+	List<String> obterHashesExpirados( @Param("agora") LocalDateTime agora, Pageable pageable );
+	
+	@Modifying
+	@Query( " delete from TokenRenovacao t where t.hash in :hashes " )
+	int excluirPorHashes( @Param("hashes") Collection<String> hashes );
+	
+}
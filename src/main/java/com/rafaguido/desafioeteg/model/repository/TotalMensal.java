@@ -0,0 +1,25 @@
+package com.rafaguido.desafioeteg.model.repository;
+
+import java.math.BigDecimal;
+
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Soma dos resumos de um mês por tipo e status, somando todas as partições.
+ */
+@Getter
+@AllArgsConstructor
+public class TotalMensal {
+
+	private final Integer ano;
+	private final Integer mes;
+	private final TipoLocacao tipo;
+	private final StatusLocacao status;
+	private final BigDecimal total;
+	private final Long quantidade;
+	
+}
@@ -1,8 +1,13 @@
 package com.rafaguido.desafioeteg.model.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.rafaguido.desafioeteg.model.entity.Usuario;
 
@@ -12,4 +17,13 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
 	
 	Optional<Usuario> findByEmail(String email);
 	
+	@Query( " select u.id from Usuario u where u.id > :cursor order by u.id " )
+	List<Long> obterIdsAPartirDe( @Param("cursor") Long cursor, Pageable pageable );
+	
+	@Query( " select u.id as id, u.email as email from Usuario u where u.id > :cursor order by u.id " )
+	List<EmailUsuario> obterEmailsAPartirDe( @Param("cursor") Long cursor, Pageable pageable );
+	
+	@Query( " select u.email from Usuario u where u.email in :emails " )
+	List<String> obterEmailsCadastrados( @Param("emails") Collection<String> emails );
+	
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.rafaguido.desafioeteg.service;
+
+import com.rafaguido.desafioeteg.model.entity.Locacao;
+import com.rafaguido.desafioeteg.model.repository.SituacaoLocacao;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Uma mudança numa locação: sem {@code anterior} é uma inclusão, sem {@code atual} é uma exclusão.
+ */
+@Getter
+@AllArgsConstructor
+public class AlteracaoLocacao {
+
+	private final SituacaoLocacao anterior;
+	private final SituacaoLocacao atual;
+	
+	public static AlteracaoLocacao inclusao(Locacao locacao) {
+		return new AlteracaoLocacao(null, SituacaoLocacao.de(locacao));
+	}
+	
+	public static AlteracaoLocacao exclusao(SituacaoLocacao anterior) {
+		return new AlteracaoLocacao(anterior, null);
+	}
+	
+}
@@ -0,0 +1,7 @@
+package com.rafaguido.desafioeteg.service;
+
+public interface AtrasoLocacaoService {
+
+	int marcarAtrasadas();
+	
+}
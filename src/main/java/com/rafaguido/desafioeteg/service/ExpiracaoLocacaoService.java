@@ -0,0 +1,9 @@
+package com.rafaguido.desafioeteg.service;
+
+public interface ExpiracaoLocacaoService {
+
+	void carregarPendentes();
+	
+	int expirar();
+	
+}
@@ -0,0 +1,18 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.util.Collection;
+import java.util.Optional;
+
+import com.rafaguido.desafioeteg.model.entity.Filme;
+
+public interface FilmeService {
+
+	Filme salvar( Filme filme );
+	
+	Optional<Filme> obterPorId( Long id );
+	
+	void registrar( Collection<AlteracaoLocacao> alteracoes );
+	
+	void validar( Filme filme );
+	
+}
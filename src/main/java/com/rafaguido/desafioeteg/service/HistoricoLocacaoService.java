@@ -0,0 +1,17 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.util.Collection;
+
+import org.springframework.data.domain.Slice;
+
+import com.rafaguido.desafioeteg.model.entity.HistoricoLocacao;
+
+public interface HistoricoLocacaoService {
+
+	void registrar( Collection<AlteracaoLocacao> alteracoes );
+	
+	Slice<HistoricoLocacao> obterPorUsuario( Long idUsuario, Long cursor, Integer tamanho );
+	
+	Slice<HistoricoLocacao> obterPorLocacao( Long idLocacao, Long cursor, Integer tamanho );
+	
+}
@@ -0,0 +1,21 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+public interface IdempotenciaService {
+
+	/**
+	 * Executa a operação uma única vez por chave. Repetições com a mesma chave e o mesmo conteúdo 
+	 * recebem o resultado guardado (ou aguardam a execução em andamento); com outro conteúdo, 
+	 * lançam {@link com.rafaguido.desafioeteg.exception.ConflitoIdempotenciaException}.
+	 */
+	<T> T executar( String chave, String conteudo, Supplier<T> operacao );
+	
+	/**
+	 * Como {@link #executar(String, String, Supplier)}, mas só guarda o resultado quando {@code guardar} aceita; 
+	 * os demais são entregues a quem esperava por eles e a chave fica livre para uma nova tentativa.
+	 */
+	<T> T executar( String chave, String conteudo, Supplier<T> operacao, Predicate<T> guardar );
+	
+}
@@ -1,5 +1,7 @@
 package com.rafaguido.desafioeteg.service;
 
+import java.util.Optional;
+
 import com.rafaguido.desafioeteg.model.entity.Usuario;
 
 import io.jsonwebtoken.Claims;
@@ -11,6 +13,8 @@ public interface JwtService {
 	
 	Claims obterClaims(String token) throws ExpiredJwtException;
 	
+	Optional<Claims> obterClaimsValidas(String token);
+	
 	boolean isTokenValido(String token);
 	
 	String obterLoginUsuario( String token );
@@ -1,28 +1,53 @@
 package com.rafaguido.desafioeteg.service;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+import org.springframework.data.domain.Slice;
+
+import com.rafaguido.desafioeteg.api.dto.LocacaoDTO;
+import com.rafaguido.desafioeteg.api.dto.ResultadoImportacaoDTO;
+import com.rafaguido.desafioeteg.api.dto.ResultadoLoteDTO;
 import com.rafaguido.desafioeteg.model.entity.Locacao;
+import com.rafaguido.desafioeteg.model.enums.ResultadoOperacaoLote;
 import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
 
 public interface LocacaoService {
 
 	Locacao salvar(Locacao locacao);
 	
+	ResultadoImportacaoDTO importar(Iterator<LocacaoDTO> linhas, Function<LocacaoDTO, Locacao> conversor);
+	
 	Locacao atualizar(Locacao locacao);
 	
 	void deletar(Locacao locacao);
 	
-	List<Locacao> buscar( Locacao locacaoFiltro );
+	Slice<LocacaoDTO> buscar( Locacao locacaoFiltro, Long cursor, Integer pagina, Integer tamanho );
+	
+	void exportar( Long idUsuario, Consumer<LocacaoDTO> consumidor );
 	
 	void atualizarStatus(Locacao locacao, StatusLocacao status);
 	
+	ResultadoOperacaoLote transicionarStatus(Long id, StatusLocacao statusAtual, StatusLocacao novoStatus);
+	
+	Optional<Locacao> renovar(Long id, Integer dias);
+	
+	ResultadoLoteDTO atualizarStatusEmLote(List<Long> ids, Locacao filtro, StatusLocacao statusAtual, StatusLocacao novoStatus);
+	
+	ResultadoLoteDTO deletarEmLote(List<Long> ids, Locacao filtro);
+	
 	void validar(Locacao locacao);
 	
 	Optional<Locacao> obterPorId(Long id);
 	
 	BigDecimal obterSaldoPorUsuario(Long id);
 	
+	Map<Long, BigDecimal> obterSaldosPorUsuarios(Collection<Long> idsUsuarios);
+	
 }
@@ -0,0 +1,11 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.util.Collection;
+
+public interface LocacoesAtivasService {
+
+	void registrar( Collection<AlteracaoLocacao> alteracoes );
+	
+	void registrarImportacao( Collection<AlteracaoLocacao> alteracoes );
+	
+}
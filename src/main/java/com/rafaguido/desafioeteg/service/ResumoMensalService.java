@@ -0,0 +1,16 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.rafaguido.desafioeteg.api.dto.ResumoMensalDTO;
+
+public interface ResumoMensalService {
+
+	void registrar( Collection<AlteracaoLocacao> alteracoes );
+	
+	List<ResumoMensalDTO> obterResumoMensal( Long idUsuario, Integer ano, Integer mes );
+	
+	List<ResumoMensalDTO> obterResumoAnual( Long idUsuario, Integer ano );
+	
+}
@@ -0,0 +1,15 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+
+public interface SaldoUsuarioService {
+
+	void registrar( Collection<AlteracaoLocacao> alteracoes );
+	
+	Map<Long, BigDecimal> obterSaldos( Collection<Long> idsUsuarios );
+	
+	void reconciliar();
+	
+}
@@ -0,0 +1,15 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.util.List;
+
+public interface SenhaService {
+
+	String criptografar(String senha);
+	
+	List<String> criptografarEmLote(List<String> senhas);
+	
+	boolean confere(String senha, String senhaCriptografada);
+	
+	boolean precisaCriptografarNovamente(String senhaCriptografada);
+	
+}
@@ -0,0 +1,11 @@
+package com.rafaguido.desafioeteg.service;
+
+public interface TentativaLoginService {
+
+	void verificar(String email, String ip);
+	
+	void registrarFalha(String email, String ip);
+	
+	void registrarSucesso(String email, String ip);
+	
+}
@@ -0,0 +1,15 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.util.Optional;
+
+import com.rafaguido.desafioeteg.model.entity.Usuario;
+
+public interface TokenRenovacaoService {
+
+	String gerar(Usuario usuario);
+	
+	Optional<Long> consumir(String tokenRenovacao);
+	
+	void removerExpirados();
+	
+}
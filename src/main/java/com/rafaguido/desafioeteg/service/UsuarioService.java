@@ -1,7 +1,13 @@
 package com.rafaguido.desafioeteg.service;
 
+import java.util.Iterator;
 import java.util.Optional;
+import java.util.function.Function;
 
+import org.springframework.data.domain.Slice;
+
+import com.rafaguido.desafioeteg.api.dto.ResultadoImportacaoDTO;
+import com.rafaguido.desafioeteg.api.dto.UsuarioDTO;
 import com.rafaguido.desafioeteg.model.entity.Usuario;
 
 public interface UsuarioService {
@@ -10,8 +16,12 @@ public interface UsuarioService {
 	
 	Usuario salvarUsuario(Usuario usuario);
 	
+	ResultadoImportacaoDTO importar(Iterator<UsuarioDTO> linhas, Function<UsuarioDTO, Usuario> conversor);
+	
 	void validarEmail(String email);
 	
 	Optional<Usuario> obterPorId(Long id);
 	
+	Slice<Long> obterIds(Long cursor, int tamanho);
+	
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package com.rafaguido.desafioeteg.service.impl;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.service.AlteracaoLocacao;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Prazos de expiração das locações pendentes, guardados numa {@link RodaTemporizacao} em memória.
+ * Cada locação criada como PENDENTE vence {@code ttl} depois de criada; quem cancela é o
+ * {@link ExpiracaoLocacaoServiceImpl}, que só consulta os prazos vencidos.
+ */
+@Component
+public class AgendaExpiracaoLocacao {
+
+	private final RodaTemporizacao<Long> roda;
+	private final long ttl;
+
+	public AgendaExpiracaoLocacao(
+			MeterRegistry meterRegistry,
+			@Value("${locacao.expiracao.ttl-minutos:30}") long ttlMinutos,
+			@Value("${locacao.expiracao.tick-ms:1000}") long duracaoTick,
+			@Value("${locacao.expiracao.faixas:512}") int faixas) {
+		this.ttl = TimeUnit.MINUTES.toMillis(ttlMinutos);
+		this.roda = new RodaTemporizacao<>(faixas, duracaoTick, System.currentTimeMillis());
+		Gauge.builder("locacao.expiracao.agendadas", roda, RodaTemporizacao::getAgendados)
+			.description("Locações pendentes aguardando o prazo de expiração")
+			.register(meterRegistry);
+	}
+
+	/**
+	 * Agenda as locações incluídas como pendentes. Dentro de uma transação, só depois do commit.
+	 */
+	public void agendar(Collection<AlteracaoLocacao> alteracoes) {
+		List<Long> ids = alteracoes.stream()
+				.filter( alteracao -> alteracao.getAnterior() == null && alteracao.getAtual() != null )
+				.filter( alteracao -> alteracao.getAtual().getStatus() == StatusLocacao.PENDENTE )
+				.map( alteracao -> alteracao.getAtual().getId() )
+				.collect(Collectors.toList());
+		if(ids.isEmpty()) {
+			return;
+		}
+		
+		long prazo = System.currentTimeMillis() + ttl;
+		if(TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronization aposCommit = new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					ids.forEach( id -> roda.agendar(id, prazo) );
+				}
+			};
+			TransactionSynchronizationManager.registerSynchronization(aposCommit);
+		}else {
+			ids.forEach( id -> roda.agendar(id, prazo) );
+		}
+	}
+	
+	/**
+	 * Locações lidas da base; sem data de criação conhecida, ganham um {@code ttl} inteiro a partir de agora.
+	 */
+	public void agendar(Long id, LocalDateTime criadoEm) {
+		long criacao = criadoEm == null 
+				? System.currentTimeMillis() 
+				: criadoEm.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		roda.agendar(id, criacao + ttl);
+	}
+	
+	public void reagendar(Collection<Long> ids, long atrasoMillis) {
+		long prazo = System.currentTimeMillis() + atrasoMillis;
+		ids.forEach( id -> roda.agendar(id, prazo) );
+	}
+	
+	public List<Long> vencidas() {
+		return roda.avancar(System.currentTimeMillis());
+	}
+
+}
@@ -0,0 +1,142 @@
+package com.rafaguido.desafioeteg.service.impl;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+import com.rafaguido.desafioeteg.model.repository.LocacaoRepository;
+import com.rafaguido.desafioeteg.model.repository.LocacaoVencida;
+import com.rafaguido.desafioeteg.service.AtrasoLocacaoService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Marca como atrasados os aluguéis com prazo de devolução vencido. A leitura anda pelo índice de prazo 
+ * com cursor (prazo, id) e só enxerga aluguéis vencidos ainda não marcados, então o custo acompanha 
+ * a quantidade de atrasos, não o tamanho da tabela. Cada lote lido é marcado em paralelo, na sua transação;
+ * os aluguéis de quem já devolveu tudo são marcados como devolvidos, para também saírem do índice.
+ */
+@Service
+public class AtrasoLocacaoServiceImpl implements AtrasoLocacaoService {
+	
+	private static final Logger log = LoggerFactory.getLogger(AtrasoLocacaoServiceImpl.class);
+	
+	static final LocalDate INICIO_VARREDURA = LocalDate.of(1900, 1, 1);
+	
+	private final LocacaoRepository repository;
+	private final TransactionTemplate transactionTemplate;
+	private final Counter verificadas;
+	private final Counter marcadas;
+	private final Timer duracao;
+	private final AtomicLong pendentesNaVarredura = new AtomicLong();
+	private final int tamanhoLote;
+	private final int paralelismo;
+
+	public AtrasoLocacaoServiceImpl(
+			LocacaoRepository repository,
+			PlatformTransactionManager transactionManager,
+			MeterRegistry meterRegistry,
+			@Value("${locacao.atraso.tamanho-lote:500}") int tamanhoLote,
+			@Value("${locacao.atraso.paralelismo:4}") int paralelismo) {
+		this.repository = repository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.verificadas = Counter.builder("locacao.atraso.verificadas")
+				.description("Aluguéis vencidos lidos pela varredura de atrasos")
+				.register(meterRegistry);
+		this.marcadas = Counter.builder("locacao.atraso.marcadas")
+				.description("Aluguéis marcados como atrasados")
+				.register(meterRegistry);
+		this.duracao = Timer.builder("locacao.atraso.varredura")
+				.description("Duração da varredura de atrasos")
+				.register(meterRegistry);
+		Gauge.builder("locacao.atraso.lotes-pendentes", pendentesNaVarredura, AtomicLong::get)
+			.description("Lotes lidos pela varredura em andamento e ainda não marcados")
+			.register(meterRegistry);
+		this.tamanhoLote = tamanhoLote;
+		this.paralelismo = Math.max(1, paralelismo);
+	}
+
+	@Override
+	@Scheduled(cron = "${locacao.atraso.cron:0 0 * * * *}")
+	public int marcarAtrasadas() {
+		return duracao.record( this::varrer );
+	}
+	
+	private int varrer() {
+		LocalDate hoje = LocalDate.now();
+		ExecutorService executor = Executors.newFixedThreadPool(paralelismo);
+		try {
+			List<Future<Integer>> lotes = new ArrayList<>();
+			PageRequest lote = PageRequest.of(0, tamanhoLote);
+			LocalDate prazoCursor = INICIO_VARREDURA;
+			Long idCursor = 0l;
+			
+			List<LocacaoVencida> vencidas;
+			do {
+				vencidas = repository.obterVencidasAPartirDe(
+						TipoLocacao.ALUGUEL, StatusLocacao.CANCELADO, hoje, prazoCursor, idCursor, lote);
+				if(!vencidas.isEmpty()) {
+					verificadas.increment(vencidas.size());
+					List<Long> ids = vencidas.stream().map(LocacaoVencida::getId).collect(Collectors.toList());
+					pendentesNaVarredura.incrementAndGet();
+					lotes.add( executor.submit( () -> marcarLote(ids, hoje) ) );
+					
+					LocacaoVencida ultima = vencidas.get(vencidas.size() - 1);
+					prazoCursor = ultima.getDataPrevistaDevolucao();
+					idCursor = ultima.getId();
+				}
+			} while(vencidas.size() == tamanhoLote);
+			
+			int total = 0;
+			for(Future<Integer> resultado : lotes) {
+				total += resultado.get();
+			}
+			log.info("Varredura de atrasos concluída: {} lotes, {} aluguéis marcados como atrasados", lotes.size(), total);
+			return total;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return 0;
+		} catch (ExecutionException e) {
+			log.error("Falha na varredura de atrasos", e.getCause());
+			return 0;
+		} finally {
+			executor.shutdownNow();
+			pendentesNaVarredura.set(0);
+		}
+	}
+	
+	private int marcarLote(List<Long> ids, LocalDate hoje) {
+		try {
+			Integer quantidade = transactionTemplate.execute( status -> {
+				repository.marcarDevolvidas(ids, StatusLocacao.CANCELADO, hoje);
+				return repository.marcarAtrasadas(ids, StatusLocacao.CANCELADO, hoje);
+			});
+			int marcadasNoLote = quantidade == null ? 0 : quantidade;
+			marcadas.increment(marcadasNoLote);
+			return marcadasNoLote;
+		} finally {
+			pendentesNaVarredura.decrementAndGet();
+		}
+	}
+
+}
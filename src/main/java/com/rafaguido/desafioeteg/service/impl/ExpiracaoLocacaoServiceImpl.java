@@ -0,0 +1,146 @@
+package com.rafaguido.desafioeteg.service.impl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+
+import com.rafaguido.desafioeteg.api.dto.ResultadoLoteDTO;
+import com.rafaguido.desafioeteg.api.dto.ResultadoLoteDTO.ItemLoteDTO;
+import com.rafaguido.desafioeteg.exception.RegraNegocioException;
+import com.rafaguido.desafioeteg.model.enums.ResultadoOperacaoLote;
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.repository.LocacaoPendente;
+import com.rafaguido.desafioeteg.model.repository.LocacaoRepository;
+import com.rafaguido.desafioeteg.service.ExpiracaoLocacaoService;
+import com.rafaguido.desafioeteg.service.LocacaoService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Cancela as locações que ficaram PENDENTE além do prazo. Os prazos vêm da {@link AgendaExpiracaoLocacao};
+ * na subida da aplicação ela é preenchida com as pendentes da base, e depois só recebe as novas.
+ * O cancelamento usa a operação em lote de status, em blocos, com a troca condicional a partir de PENDENTE:
+ * uma locação efetivada nesse meio tempo fica como está.
+ */
+@Service
+public class ExpiracaoLocacaoServiceImpl implements ExpiracaoLocacaoService {
+	
+	private static final Logger log = LoggerFactory.getLogger(ExpiracaoLocacaoServiceImpl.class);
+	
+	private final AgendaExpiracaoLocacao agenda;
+	private final LocacaoRepository repository;
+	private final LocacaoService locacaoService;
+	private final Counter canceladas;
+	private final int tamanhoLote;
+	private final long atrasoNovaTentativa;
+
+	public ExpiracaoLocacaoServiceImpl(
+			AgendaExpiracaoLocacao agenda,
+			LocacaoRepository repository,
+			LocacaoService locacaoService,
+			MeterRegistry meterRegistry,
+			@Value("${locacao.expiracao.tamanho-lote:500}") int tamanhoLote,
+			@Value("${locacao.expiracao.nova-tentativa-ms:60000}") long atrasoNovaTentativa) {
+		this.agenda = agenda;
+		this.repository = repository;
+		this.locacaoService = locacaoService;
+		this.canceladas = Counter.builder("locacao.expiracao.canceladas")
+				.description("Locações pendentes canceladas por expiração")
+				.register(meterRegistry);
+		this.tamanhoLote = tamanhoLote;
+		this.atrasoNovaTentativa = atrasoNovaTentativa;
+	}
+
+	@Override
+	@EventListener(ApplicationReadyEvent.class)
+	public void carregarPendentes() {
+		PageRequest lote = PageRequest.of(0, tamanhoLote);
+		Long cursor = 0l;
+		int quantidade = 0;
+		
+		List<LocacaoPendente> pendentes;
+		do {
+			pendentes = repository.obterPendentesAPartirDe(StatusLocacao.PENDENTE, cursor, lote);
+			for(LocacaoPendente pendente : pendentes) {
+				agenda.agendar(pendente.getId(), pendente.getCriadoEm());
+				cursor = pendente.getId();
+			}
+			quantidade += pendentes.size();
+		} while(pendentes.size() == tamanhoLote);
+		
+		log.info("{} locações pendentes agendadas para expiração", quantidade);
+	}
+
+	/**
+	 * Um bloco que falhar na base volta para a agenda. Ids recusados pela regra (bloco rejeitado ou exceção) 
+	 * são tentados um a um, para que uma locação problemática não segure as outras do bloco.
+	 */
+	@Override
+	@Scheduled(fixedDelayString = "${locacao.expiracao.tick-ms:1000}")
+	public int expirar() {
+		List<Long> vencidas = agenda.vencidas();
+		int total = 0;
+		
+		for(int inicio = 0; inicio < vencidas.size(); inicio += tamanhoLote) {
+			List<Long> bloco = vencidas.subList(inicio, Math.min(inicio + tamanhoLote, vencidas.size()));
+			List<Long> recusadas;
+			try {
+				ResultadoLoteDTO resultado = locacaoService.atualizarStatusEmLote(bloco, null, StatusLocacao.PENDENTE, StatusLocacao.CANCELADO);
+				total += resultado.getItens().stream()
+						.filter( item -> item.getResultado() == ResultadoOperacaoLote.ATUALIZADA )
+						.count();
+				recusadas = resultado.getItens().stream()
+						.filter( item -> item.getResultado() == ResultadoOperacaoLote.REJEITADA )
+						.map( ItemLoteDTO::getId )
+						.collect(Collectors.toList());
+			}catch (RegraNegocioException e) {
+				recusadas = bloco;
+			}catch (DataAccessException | TransactionException e) {
+				log.warn("Falha ao expirar {} locações, nova tentativa em {} ms", bloco.size(), atrasoNovaTentativa, e);
+				agenda.reagendar(bloco, atrasoNovaTentativa);
+				continue;
+			}
+			total += expirarUmaAUma(recusadas);
+		}
+		
+		canceladas.increment(total);
+		if(total > 0) {
+			log.info("{} locações pendentes canceladas por expiração", total);
+		}
+		return total;
+	}
+	
+	/**
+	 * Cada id na sua transação. O que a regra ainda recusar fica registrado no log e sai da agenda, 
+	 * porque tentar de novo daria no mesmo; falhas da base voltam para a agenda.
+	 */
+	private int expirarUmaAUma(List<Long> ids) {
+		int quantidade = 0;
+		for(Long id : ids) {
+			try {
+				if(locacaoService.transicionarStatus(id, StatusLocacao.PENDENTE, StatusLocacao.CANCELADO) == ResultadoOperacaoLote.ATUALIZADA) {
+					quantidade++;
+				}
+			}catch (RegraNegocioException e) {
+				log.warn("Locação {} não cancelada por expiração: {}", id, e.getMessage());
+			}catch (DataAccessException | TransactionException e) {
+				log.warn("Falha ao expirar a locação {}, nova tentativa em {} ms", id, atrasoNovaTentativa, e);
+				agenda.reagendar(Collections.singletonList(id), atrasoNovaTentativa);
+			}
+		}
+		return quantidade;
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.rafaguido.desafioeteg.service.impl;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.rafaguido.desafioeteg.exception.RegraNegocioException;
+import com.rafaguido.desafioeteg.model.entity.Filme;
+import com.rafaguido.desafioeteg.model.repository.FilmeRepository;
+import com.rafaguido.desafioeteg.model.repository.SituacaoLocacao;
+import com.rafaguido.desafioeteg.service.AlteracaoLocacao;
+import com.rafaguido.desafioeteg.service.FilmeService;
+
+@Service
+public class FilmeServiceImpl implements FilmeService {
+	
+	private final FilmeRepository repository;
+
+	public FilmeServiceImpl(FilmeRepository repository) {
+		this.repository = repository;
+	}
+
+	@Override
+	@Transactional
+	public Filme salvar(Filme filme) {
+		validar(filme);
+		if(repository.existsByNome(chave(filme.getNome()))) {
+			throw new RegraNegocioException("Já existe um filme cadastrado com este nome.");
+		}
+		return repository.save(filme);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Optional<Filme> obterPorId(Long id) {
+		return repository.findById(id);
+	}
+
+	/**
+	 * Acerta o estoque pelas cópias que as locações levaram ou trouxeram de volta. As variações 
+	 * são somadas por filme e aplicadas em ordem de nome, para transações concorrentes travarem as linhas 
+	 * sempre na mesma ordem. Faltando estoque, a exceção desfaz a transação de quem alterou a locação.
+	 */
+	@Override
+	@Transactional
+	public void registrar(Collection<AlteracaoLocacao> alteracoes) {
+		Map<String, Integer> variacoes = new TreeMap<>();
+		for(AlteracaoLocacao alteracao : alteracoes) {
+			acumular(variacoes, alteracao.getAnterior(), 1);
+			acumular(variacoes, alteracao.getAtual(), -1);
+		}
+		
+		variacoes.forEach( (nome, variacao) -> {
+			if(variacao < 0 && repository.reservar(nome, -variacao) == 0) {
+				throw new RegraNegocioException("Filme indisponível em estoque: " + nome);
+			}
+			if(variacao > 0) {
+				repository.liberar(nome, variacao);
+			}
+		});
+	}
+	
+	private static void acumular(Map<String, Integer> variacoes, SituacaoLocacao situacao, int sinal) {
+		if(situacao != null && situacao.getFilme() != null && situacao.ocupacao() != 0) {
+			variacoes.merge(chave(situacao.getFilme()), sinal * situacao.ocupacao(), Integer::sum);
+		}
+	}
+	
+	private static String chave(String nome) {
+		return nome.trim().toLowerCase();
+	}
+
+	@Override
+	public void validar(Filme filme) {
+		
+		if(filme.getNome() == null || filme.getNome().trim().equals("")) {
+			throw new RegraNegocioException("Informe um Nome válido.");
+		}
+		
+		if(filme.getQuantidade() == null || filme.getQuantidade() < 0) {
+			throw new RegraNegocioException("Informe uma Quantidade válida.");
+		}
+	}
+
+}
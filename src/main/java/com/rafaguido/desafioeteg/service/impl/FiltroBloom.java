@@ -0,0 +1,64 @@
+package com.rafaguido.desafioeteg.service.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro de Bloom de strings, seguro para várias threads. {@link #podeConter(String)} falso garante que o valor 
+ * nunca foi adicionado; verdadeiro pode ser um falso positivo, na taxa pedida enquanto a capacidade não for excedida.
+ */
+public class FiltroBloom {
+
+	private final AtomicLongArray bits;
+	private final long tamanho;
+	private final int funcoes;
+	
+	public FiltroBloom(long capacidade, double taxaFalsosPositivos) {
+		long elementos = Math.max(1, capacidade);
+		long bitsNecessarios = (long) Math.ceil(-elementos * Math.log(taxaFalsosPositivos) / (Math.log(2) * Math.log(2)));
+		this.bits = new AtomicLongArray((int) Math.max(1, (bitsNecessarios + 63) / 64));
+		this.tamanho = bits.length() * 64l;
+		this.funcoes = Math.max(1, (int) Math.round((double) tamanho / elementos * Math.log(2)));
+	}
+	
+	public void adicionar(String valor) {
+		long hash = hash(valor);
+		for(int i = 1; i <= funcoes; i++) {
+			long indice = indice(hash, i);
+			long mascara = 1l << indice;
+			bits.getAndAccumulate((int) (indice >>> 6), mascara, (atual, bit) -> atual | bit);
+		}
+	}
+	
+	public boolean podeConter(String valor) {
+		long hash = hash(valor);
+		for(int i = 1; i <= funcoes; i++) {
+			long indice = indice(hash, i);
+			if((bits.get((int) (indice >>> 6)) & (1l << indice)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Hash duplo: as {@code funcoes} posições saem das duas metades de um único hash de 64 bits.
+	 */
+	private long indice(long hash, int i) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		return Math.floorMod(h1 + (long) i * h2, tamanho);
+	}
+	
+	private static long hash(String valor) {
+		long hash = 0xcbf29ce484222325l;
+		for(int i = 0; i < valor.length(); i++) {
+			hash ^= valor.charAt(i);
+			hash *= 0x100000001b3l;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdl;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+	
+}
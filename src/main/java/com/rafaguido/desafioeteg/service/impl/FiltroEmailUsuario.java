@@ -0,0 +1,73 @@
+package com.rafaguido.desafioeteg.service.impl;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.rafaguido.desafioeteg.model.repository.EmailUsuario;
+import com.rafaguido.desafioeteg.model.repository.UsuarioRepository;
+
+/**
+ * Emails já cadastrados, num {@link FiltroBloom} em memória. Serve só para evitar a consulta de email 
+ * repetido no cadastro quando o email certamente é novo; quem garante a unicidade é o índice único da base.
+ * Até a carga inicial terminar, todo email é tratado como possivelmente cadastrado.
+ */
+@Component
+public class FiltroEmailUsuario {
+	
+	private static final Logger log = LoggerFactory.getLogger(FiltroEmailUsuario.class);
+
+	private final UsuarioRepository repository;
+	private final FiltroBloom filtro;
+	private final int tamanhoLote;
+	private volatile boolean carregado;
+
+	public FiltroEmailUsuario(
+			UsuarioRepository repository,
+			@Value("${usuario.filtro-email.capacidade:1000000}") long capacidade,
+			@Value("${usuario.filtro-email.taxa-falsos-positivos:0.01}") double taxaFalsosPositivos,
+			@Value("${usuario.filtro-email.tamanho-lote:1000}") int tamanhoLote) {
+		this.repository = repository;
+		this.filtro = new FiltroBloom(capacidade, taxaFalsosPositivos);
+		this.tamanhoLote = tamanhoLote;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void carregar() {
+		PageRequest lote = PageRequest.of(0, tamanhoLote);
+		Long cursor = 0l;
+		int quantidade = 0;
+		
+		List<EmailUsuario> emails;
+		do {
+			emails = repository.obterEmailsAPartirDe(cursor, lote);
+			for(EmailUsuario email : emails) {
+				if(email.getEmail() != null) {
+					filtro.adicionar(email.getEmail());
+				}
+				cursor = email.getId();
+			}
+			quantidade += emails.size();
+		} while(emails.size() == tamanhoLote);
+		
+		carregado = true;
+		log.info("{} emails de usuários carregados no filtro de cadastro", quantidade);
+	}
+	
+	public boolean podeExistir(String email) {
+		return !carregado || email == null || filtro.podeConter(email);
+	}
+	
+	public void adicionar(String email) {
+		if(email != null) {
+			filtro.adicionar(email);
+		}
+	}
+
+}
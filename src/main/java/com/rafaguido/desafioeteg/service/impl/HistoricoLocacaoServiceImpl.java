@@ -0,0 +1,113 @@
+package com.rafaguido.desafioeteg.service.impl;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.rafaguido.desafioeteg.model.entity.HistoricoLocacao;
+import com.rafaguido.desafioeteg.model.repository.HistoricoLocacaoRepository;
+import com.rafaguido.desafioeteg.model.repository.SituacaoLocacao;
+import com.rafaguido.desafioeteg.service.AlteracaoLocacao;
+import com.rafaguido.desafioeteg.service.HistoricoLocacaoService;
+
+@Service
+public class HistoricoLocacaoServiceImpl implements HistoricoLocacaoService {
+	
+	private static final LocalDateTime SEM_CURSOR = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+	
+	private final HistoricoLocacaoRepository repository;
+	
+	@Value("${locacao.pagina.tamanho-padrao:20}")
+	private int tamanhoPaginaPadrao;
+	
+	@Value("${locacao.pagina.tamanho-maximo:100}")
+	private int tamanhoPaginaMaximo;
+
+	public HistoricoLocacaoServiceImpl(HistoricoLocacaoRepository repository) {
+		this.repository = repository;
+	}
+
+	/**
+	 * Grava um evento para cada alteração que mudou o status, na transação de quem alterou.
+	 */
+	@Override
+	@Transactional
+	public void registrar(Collection<AlteracaoLocacao> alteracoes) {
+		LocalDateTime agora = LocalDateTime.now();
+		List<HistoricoLocacao> eventos = new ArrayList<>();
+		
+		for(AlteracaoLocacao alteracao : alteracoes) {
+			SituacaoLocacao anterior = alteracao.getAnterior();
+			SituacaoLocacao atual = alteracao.getAtual();
+			SituacaoLocacao referencia = atual != null ? atual : anterior;
+			if(referencia == null || referencia.getId() == null) {
+				continue;
+			}
+			
+			HistoricoLocacao evento = HistoricoLocacao.builder()
+					.idLocacao(referencia.getId())
+					.idUsuario(referencia.getIdUsuario())
+					.statusAnterior(anterior == null ? null : anterior.getStatus())
+					.statusNovo(atual == null ? null : atual.getStatus())
+					.valor(referencia.getValor())
+					.dataHora(agora)
+					.build();
+			
+			if(anterior == null || atual == null || evento.getStatusAnterior() != evento.getStatusNovo()) {
+				eventos.add(evento);
+			}
+		}
+		
+		if(!eventos.isEmpty()) {
+			repository.saveAll(eventos);
+		}
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Slice<HistoricoLocacao> obterPorUsuario(Long idUsuario, Long cursor, Integer tamanho) {
+		PageRequest pagina = pagina(tamanho);
+		return dataHoraDoCursor(cursor)
+				.map( dataHora -> repository.obterPorUsuario(idUsuario, dataHora, cursor(cursor), pagina) )
+				.orElseGet( () -> new SliceImpl<>(Collections.emptyList(), pagina, false) );
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Slice<HistoricoLocacao> obterPorLocacao(Long idLocacao, Long cursor, Integer tamanho) {
+		PageRequest pagina = pagina(tamanho);
+		return dataHoraDoCursor(cursor)
+				.map( dataHora -> repository.obterPorLocacao(idLocacao, dataHora, cursor(cursor), pagina) )
+				.orElseGet( () -> new SliceImpl<>(Collections.emptyList(), pagina, false) );
+	}
+	
+	/**
+	 * O cursor continua sendo o id do último evento; a data dele é lida para a consulta andar pelo índice 
+	 * de ({@code dataHora}, {@code id}). Sem cursor, parte do fim; cursor desconhecido não tem próxima página.
+	 */
+	private Optional<LocalDateTime> dataHoraDoCursor(Long cursor) {
+		return cursor == null ? Optional.of(SEM_CURSOR) : repository.obterDataHora(cursor);
+	}
+	
+	private static Long cursor(Long cursor) {
+		return cursor == null ? Long.MAX_VALUE : cursor;
+	}
+	
+	private PageRequest pagina(Integer tamanho) {
+		int tamanhoPagina = tamanho == null || tamanho < 1 
+				? tamanhoPaginaPadrao 
+				: Math.min(tamanho, tamanhoPaginaMaximo);
+		return PageRequest.of(0, tamanhoPagina);
+	}
+
+}
@@ -0,0 +1,116 @@
+package com.rafaguido.desafioeteg.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rafaguido.desafioeteg.exception.ConflitoIdempotenciaException;
+import com.rafaguido.desafioeteg.service.IdempotenciaService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Guarda em memória, por tempo e quantidade limitados, o resultado de cada chave de idempotência.
+ * A primeira requisição de uma chave registra um future antes de executar; as repetições simultâneas
+ * encontram esse future e esperam por ele em vez de executar a operação de novo. Se a operação falhar
+ * com exceção, ou devolver um resultado que não deve ser guardado, a chave é liberada para uma nova tentativa.
+ */
+@Service
+public class IdempotenciaServiceImpl implements IdempotenciaService {
+	
+	private final Cache<String, Registro> registros;
+	private final long esperaMs;
+
+	public IdempotenciaServiceImpl(
+			MeterRegistry meterRegistry,
+			@Value("${idempotencia.tamanho-maximo:100000}") long tamanhoMaximo,
+			@Value("${idempotencia.expiracao-minutos:1440}") long expiracaoMinutos,
+			@Value("${idempotencia.espera-ms:30000}") long esperaMs) {
+		this.registros = Caffeine.newBuilder()
+				.maximumSize(tamanhoMaximo)
+				.expireAfterWrite(expiracaoMinutos, TimeUnit.MINUTES)
+				.recordStats()
+				.build();
+		this.esperaMs = esperaMs;
+		
+		CaffeineCacheMetrics.monitor(meterRegistry, registros, "idempotencia");
+	}
+
+	@Override
+	public <T> T executar(String chave, String conteudo, Supplier<T> operacao) {
+		return executar(chave, conteudo, operacao, resultado -> true);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T executar(String chave, String conteudo, Supplier<T> operacao, Predicate<T> guardar) {
+		Registro novo = new Registro(resumo(conteudo), new CompletableFuture<>());
+		Registro existente = registros.asMap().putIfAbsent(chave, novo);
+		
+		if(existente == null) {
+			try {
+				T resultado = operacao.get();
+				if(!guardar.test(resultado)) {
+					registros.asMap().remove(chave, novo);
+				}
+				novo.getResultado().complete(resultado);
+				return resultado;
+			}catch (RuntimeException | Error e) {
+				registros.asMap().remove(chave, novo);
+				novo.getResultado().completeExceptionally(e);
+				throw e;
+			}
+		}
+		
+		if(!existente.getResumoConteudo().equals(novo.getResumoConteudo())) {
+			throw new ConflitoIdempotenciaException("A chave de idempotência informada já foi usada com outro conteúdo.");
+		}
+		
+		try {
+			return (T) existente.getResultado().get(esperaMs, TimeUnit.MILLISECONDS);
+		}catch (TimeoutException e) {
+			throw new ConflitoIdempotenciaException("Uma requisição com a mesma chave de idempotência ainda está em processamento.");
+		}catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ConflitoIdempotenciaException("Uma requisição com a mesma chave de idempotência ainda está em processamento.");
+		}catch (ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+	
+	private static String resumo(String conteudo) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = digest.digest(conteudo == null ? new byte[0] : conteudo.getBytes(StandardCharsets.UTF_8));
+			return Base64.getEncoder().encodeToString(hash);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	@Getter
+	@AllArgsConstructor
+	private static class Registro {
+		private final String resumoConteudo;
+		private final CompletableFuture<Object> resultado;
+	}
+
+}
@@ -1,30 +1,69 @@
 package com.rafaguido.desafioeteg.service.impl;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.rafaguido.desafioeteg.model.entity.Usuario;
 import com.rafaguido.desafioeteg.service.JwtService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 
 @Service
 public class JwtServiceImpl implements JwtService {
 	
+	public static final String CLAIM_USERID = "userid";
+	public static final String CLAIM_ROLES = "roles";
+	
 	@Value("${jwt.expiracao}")
 	private String expiracao;
 	
 	@Value("${jwt.chave-assinatura}")
 	private String chaveAssinatura;
+	
+	@Value("${jwt.cache.tamanho-maximo:10000}")
+	private long tamanhoMaximoCache;
+	
+	private final MeterRegistry meterRegistry;
+	private Cache<String, Claims> cacheClaims;
+	
+	public JwtServiceImpl(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+	
+	@PostConstruct
+	public void iniciarCache() {
+		cacheClaims = Caffeine.newBuilder()
+				.maximumSize(tamanhoMaximoCache)
+				.expireAfter(new ExpiracaoDoToken())
+				.recordStats()
+				.build();
+		
+		CaffeineCacheMetrics.monitor(meterRegistry, cacheClaims, "jwt.claims");
+	}
 
 	@Override
 	public String gerarToken(Usuario usuario) {
@@ -40,7 +79,8 @@ public class JwtServiceImpl implements JwtService {
 							.builder()
 							.setExpiration(data)
 							.setSubject(usuario.getEmail())
-							.claim("userid", usuario.getId())
+							.claim(CLAIM_USERID, usuario.getId())
+							.claim(CLAIM_ROLES, Collections.singletonList("USER"))
 							.claim("nome", usuario.getNome())
 							.claim("horaExpiracao", horaExpiracaoToken)
 							.signWith( SignatureAlgorithm.HS512 , chaveAssinatura )
@@ -59,18 +99,53 @@ public class JwtServiceImpl implements JwtService {
 	}
 
 	@Override
-	public boolean isTokenValido(String token) {
+	public Optional<Claims> obterClaimsValidas(String token) {
+		if(token == null || token.isEmpty()) {
+			return Optional.empty();
+		}
+		
+		String chave = resumo(token);
+		Claims emCache = cacheClaims.getIfPresent(chave);
+		
+		if(emCache != null) {
+			if(isDentroDaValidade(emCache)) {
+				return Optional.of(emCache);
+			}
+			cacheClaims.invalidate(chave);
+			return Optional.empty();
+		}
+		
 		try {
 			Claims claims = obterClaims(token);
-			java.util.Date dataEx = claims.getExpiration();
-			LocalDateTime dataExpiracao = dataEx.toInstant()
-					.atZone(ZoneId.systemDefault()).toLocalDateTime();
-			boolean dataHoraAtualIsAfterDataExpiracao = LocalDateTime.now().isAfter(dataExpiracao);
-			return !dataHoraAtualIsAfterDataExpiracao;
-		}catch(ExpiredJwtException e) {
-			return false;
+			if(!isDentroDaValidade(claims)) {
+				return Optional.empty();
+			}
+			cacheClaims.put(chave, claims);
+			return Optional.of(claims);
+		}catch(JwtException | IllegalArgumentException e) {
+			return Optional.empty();
 		}
 	}
+	
+	private boolean isDentroDaValidade(Claims claims) {
+		java.util.Date dataEx = claims.getExpiration();
+		return dataEx != null && dataEx.after(new Date());
+	}
+	
+	private String resumo(String token) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = digest.digest(token.getBytes(StandardCharsets.US_ASCII));
+			return Base64.getEncoder().withoutPadding().encodeToString(hash);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public boolean isTokenValido(String token) {
+		return obterClaimsValidas(token).isPresent();
+	}
 
 	@Override
 	public String obterLoginUsuario(String token) {
@@ -78,4 +153,26 @@ public class JwtServiceImpl implements JwtService {
 		return claims.getSubject();
 	}
 
+	/**
+	 * Cada entrada expira exatamente no "exp" do token, nunca depois dele.
+	 */
+	private static class ExpiracaoDoToken implements Expiry<String, Claims> {
+
+		@Override
+		public long expireAfterCreate(String chave, Claims claims, long currentTime) {
+			long restante = claims.getExpiration().getTime() - System.currentTimeMillis();
+			return TimeUnit.MILLISECONDS.toNanos(Math.max(restante, 0));
+		}
+
+		@Override
+		public long expireAfterUpdate(String chave, Claims claims, long currentTime, long currentDuration) {
+			return expireAfterCreate(chave, claims, currentTime);
+		}
+
+		@Override
+		public long expireAfterRead(String chave, Claims claims, long currentTime, long currentDuration) {
+			return currentDuration;
+		}
+	}
+
 }
\ No newline at end of file
@@ -1,38 +1,274 @@
 package com.rafaguido.desafioeteg.service.impl;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
-import org.springframework.data.domain.Example;
-import org.springframework.data.domain.ExampleMatcher;
-import org.springframework.data.domain.ExampleMatcher.StringMatcher;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.rafaguido.desafioeteg.api.dto.LocacaoDTO;
+import com.rafaguido.desafioeteg.api.dto.ResultadoImportacaoDTO;
+import com.rafaguido.desafioeteg.api.dto.ResultadoImportacaoDTO.ErroImportacaoDTO;
+import com.rafaguido.desafioeteg.api.dto.ResultadoLoteDTO;
 import com.rafaguido.desafioeteg.exception.RegraNegocioException;
 import com.rafaguido.desafioeteg.model.entity.Locacao;
+import com.rafaguido.desafioeteg.model.enums.ResultadoOperacaoLote;
 import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
 import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+import com.rafaguido.desafioeteg.model.repository.LocacaoListada;
 import com.rafaguido.desafioeteg.model.repository.LocacaoRepository;
+import com.rafaguido.desafioeteg.model.repository.PrazoLocacao;
+import com.rafaguido.desafioeteg.model.repository.SituacaoLocacao;
+import com.rafaguido.desafioeteg.service.AlteracaoLocacao;
+import com.rafaguido.desafioeteg.service.FilmeService;
+import com.rafaguido.desafioeteg.service.HistoricoLocacaoService;
 import com.rafaguido.desafioeteg.service.LocacaoService;
+import com.rafaguido.desafioeteg.service.LocacoesAtivasService;
+import com.rafaguido.desafioeteg.service.ResumoMensalService;
+import com.rafaguido.desafioeteg.service.SaldoUsuarioService;
 
 @Service
 public class LocacaoServiceImpl implements LocacaoService {
 	
 	private LocacaoRepository repository;
+	private SaldoUsuarioService saldoUsuarioService;
+	private ResumoMensalService resumoMensalService;
+	private HistoricoLocacaoService historicoLocacaoService;
+	private FilmeService filmeService;
+	private LocacoesAtivasService locacoesAtivasService;
+	private AgendaExpiracaoLocacao agendaExpiracao;
+	private TransactionTemplate transactionTemplate;
+	
+	@PersistenceContext
+	private EntityManager entityManager;
+	
+	@Value("${locacao.pagina.tamanho-padrao:20}")
+	private int tamanhoPaginaPadrao;
+	
+	@Value("${locacao.pagina.tamanho-maximo:100}")
+	private int tamanhoPaginaMaximo;
+	
+	@Value("${locacao.exportacao.tamanho-lote:500}")
+	private int tamanhoLoteExportacao;
+	
+	@Value("${locacao.importacao.tamanho-lote:1000}")
+	private int tamanhoLoteImportacao;
+	
+	@Value("${locacao.importacao.maximo-erros:1000}")
+	private int maximoErrosImportacao;
+	
+	@Value("${locacao.lote.tamanho-bloco:500}")
+	private int tamanhoBlocoLote;
+	
+	@Value("${locacao.lote.maximo-ids:10000}")
+	private int maximoIdsLote;
+	
+	@Value("${locacao.prazo-devolucao-dias:7}")
+	private int prazoDevolucaoDias;
+	
+	@Value("${locacao.renovacao.maximo:2}")
+	private int maximoRenovacoes;
+	
+	@Value("${locacao.renovacao.maximo-dias:30}")
+	private int maximoDiasRenovacao;
+	
+	@Value("${saldo.lote.maximo-usuarios:1000}")
+	private int maximoUsuariosSaldo;
 	
-	public LocacaoServiceImpl(LocacaoRepository repository) {
+	@Value("${saldo.lote.tamanho-consulta:500}")
+	private int tamanhoConsultaSaldo;
+	
+	public LocacaoServiceImpl(
+			LocacaoRepository repository, 
+			SaldoUsuarioService saldoUsuarioService,
+			ResumoMensalService resumoMensalService,
+			HistoricoLocacaoService historicoLocacaoService,
+			FilmeService filmeService,
+			LocacoesAtivasService locacoesAtivasService,
+			AgendaExpiracaoLocacao agendaExpiracao,
+			PlatformTransactionManager transactionManager) {
 		this.repository = repository;
+		this.saldoUsuarioService = saldoUsuarioService;
+		this.resumoMensalService = resumoMensalService;
+		this.historicoLocacaoService = historicoLocacaoService;
+		this.filmeService = filmeService;
+		this.locacoesAtivasService = locacoesAtivasService;
+		this.agendaExpiracao = agendaExpiracao;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
 	}
 
 	@Override
 	@Transactional
 	public Locacao salvar(Locacao locacao) {
 		validar(locacao);
+		prepararInclusao(locacao);
+		Locacao salva = repository.save(locacao);
+		List<AlteracaoLocacao> inclusao = Collections.singletonList(AlteracaoLocacao.inclusao(salva));
+		registrarAlteracoes(inclusao);
+		agendaExpiracao.agendar(inclusao);
+		return salva;
+	}
+
+	/**
+	 * Toda locação nasce pendente e sem renovações; aluguéis recebem o prazo padrão de devolução.
+	 */
+	private void prepararInclusao(Locacao locacao) {
 		locacao.setStatus(StatusLocacao.PENDENTE);
-		return repository.save(locacao);
+		locacao.setCriadoEm(LocalDateTime.now());
+		locacao.setRenovacoes(0);
+		locacao.setAtrasada(false);
+		locacao.setDataPrevistaDevolucao(locacao.getTipo() == TipoLocacao.ALUGUEL 
+				? LocalDate.now().plusDays(prazoDevolucaoDias) 
+				: null);
+	}
+
+	/**
+	 * Linhas importadas são históricas: mantêm o status, o prazo e as renovações de origem, 
+	 * caindo em pendente só quando o status não vier, e ficam sem {@code criadoEm}.
+	 */
+	private void prepararImportacao(Locacao locacao) {
+		if(locacao.getStatus() == null) {
+			locacao.setStatus(StatusLocacao.PENDENTE);
+		}
+		if(locacao.getRenovacoes() == null) {
+			locacao.setRenovacoes(0);
+		}
+		if(locacao.getAtrasada() == null) {
+			locacao.setAtrasada(false);
+		}
+		locacao.setCriadoEm(null);
+	}
+
+	/**
+	 * Lê as linhas uma a uma e grava as válidas em lotes, cada lote na sua transação. Ao fim de cada lote
+	 * o contexto de persistência é descarregado e limpo, então a memória não cresce com o tamanho da carga.
+	 * Um lote com linhas recusadas é regravado linha a linha; se a base cair, o lote é rejeitado inteiro, 
+	 * sem desfazer os anteriores.
+	 */
+	@Override
+	public ResultadoImportacaoDTO importar(Iterator<LocacaoDTO> linhas, Function<LocacaoDTO, Locacao> conversor) {
+		ResultadoImportacaoDTO resultado = new ResultadoImportacaoDTO();
+		List<Locacao> lote = new ArrayList<>();
+		List<Long> linhasDoLote = new ArrayList<>();
+		long linha = 0;
+		
+		while(true) {
+			LocacaoDTO dto;
+			try {
+				if(!linhas.hasNext()) {
+					break;
+				}
+				dto = linhas.next();
+			}catch (RuntimeException e) {
+				rejeitar(resultado, linha + 1, "Conteúdo inválido, importação interrompida: " + e.getMessage());
+				resultado.setInterrompida(true);
+				break;
+			}
+			
+			linha++;
+			resultado.setLidas(linha);
+			try {
+				Locacao locacao = conversor.apply(dto);
+				locacao.setId(null);
+				locacao.setVersao(null);
+				validar(locacao);
+				prepararImportacao(locacao);
+				lote.add(locacao);
+				linhasDoLote.add(linha);
+			}catch (RegraNegocioException e) {
+				rejeitar(resultado, linha, e.getMessage());
+			}catch (IllegalArgumentException e) {
+				rejeitar(resultado, linha, "Informe um tipo e um status de Locação válidos.");
+			}
+			
+			if(lote.size() >= tamanhoLoteImportacao) {
+				gravarLote(lote, linhasDoLote, resultado);
+			}
+		}
+		
+		if(!lote.isEmpty()) {
+			gravarLote(lote, linhasDoLote, resultado);
+		}
+		
+		return resultado;
+	}
+	
+	/**
+	 * Uma linha que a regra recusa (filme sem estoque, limite de locações ativas) ou que viola uma restrição 
+	 * derruba o lote inteiro; aí o bloco é regravado um a um para rejeitar só as linhas com problema.
+	 */
+	private void gravarLote(List<Locacao> lote, List<Long> linhasDoLote, ResultadoImportacaoDTO resultado) {
+		try {
+			transactionTemplate.execute( status -> {
+				List<Locacao> salvas = repository.saveAll(lote);
+				registrarAlteracoes(salvas.stream().map(AlteracaoLocacao::inclusao).collect(Collectors.toList()), true);
+				repository.flush();
+				entityManager.clear();
+				return null;
+			});
+			resultado.setImportadas(resultado.getImportadas() + lote.size());
+		}catch (RegraNegocioException | DataIntegrityViolationException e) {
+			for(int i = 0; i < lote.size(); i++) {
+				gravarLocacao(lote.get(i), linhasDoLote.get(i), resultado);
+			}
+		}catch (DataAccessException | TransactionException e) {
+			String mensagem = "Lote não gravado: " + e.getMostSpecificCause().getMessage();
+			linhasDoLote.forEach( linha -> rejeitar(resultado, linha, mensagem) );
+		}
+		lote.clear();
+		linhasDoLote.clear();
+	}
+	
+	private void gravarLocacao(Locacao locacao, Long linha, ResultadoImportacaoDTO resultado) {
+		locacao.setId(null);
+		locacao.setVersao(null);
+		try {
+			transactionTemplate.execute( status -> {
+				Locacao salva = repository.saveAndFlush(locacao);
+				registrarAlteracoes(Collections.singletonList(AlteracaoLocacao.inclusao(salva)), true);
+				entityManager.clear();
+				return null;
+			});
+			resultado.setImportadas(resultado.getImportadas() + 1);
+		}catch (RegraNegocioException e) {
+			rejeitar(resultado, linha, e.getMessage());
+		}catch (DataAccessException | TransactionException e) {
+			rejeitar(resultado, linha, "Locação não gravada: " + e.getMostSpecificCause().getMessage());
+		}
+	}
+	
+	private void rejeitar(ResultadoImportacaoDTO resultado, long linha, String mensagem) {
+		resultado.setRejeitadas(resultado.getRejeitadas() + 1);
+		if(resultado.getErros().size() < maximoErrosImportacao) {
+			resultado.getErros().add(new ErroImportacaoDTO(linha, mensagem));
+		}
 	}
 
 	@Override
@@ -40,25 +276,92 @@ public class LocacaoServiceImpl implements LocacaoService {
 	public Locacao atualizar(Locacao locacao) {
 		Objects.requireNonNull(locacao.getId());
 		validar(locacao);
-		return repository.save(locacao);
+		SituacaoLocacao anterior = situacaoAtual(locacao.getId());
+		Locacao atualizada = repository.save(locacao);
+		registrarAlteracoes(Collections.singletonList(
+				new AlteracaoLocacao(anterior, SituacaoLocacao.de(atualizada))));
+		return atualizada;
 	}
 
 	@Override
 	@Transactional
 	public void deletar(Locacao locacao) {
 		Objects.requireNonNull(locacao.getId());
+		SituacaoLocacao anterior = situacaoAtual(locacao.getId());
 		repository.delete(locacao);
+		if(anterior != null) {
+			registrarAlteracoes(Collections.singletonList(AlteracaoLocacao.exclusao(anterior)));
+		}
+	}
+	
+	/**
+	 * Lê a locação como está na base, antes de ser alterada nesta transação. Não usa {@code findById}: 
+	 * com open-session-in-view ele devolveria a instância que o resource acabou de alterar.
+	 */
+	private SituacaoLocacao situacaoAtual(Long id) {
+		return repository.obterSituacao(id).orElse(null);
+	}
+	
+	/**
+	 * Ponto único onde os dados derivados das locações são mantidos, 
+	 * sempre dentro da transação que fez a alteração. Estoque e limite de locações ativas vêm primeiro 
+	 * porque são os que podem recusar a alteração.
+	 */
+	private void registrarAlteracoes(List<AlteracaoLocacao> alteracoes) {
+		registrarAlteracoes(alteracoes, false);
+	}
+	
+	/**
+	 * Na importação as locações ativas são contadas sem o limite, que só vale para aluguéis novos.
+	 */
+	private void registrarAlteracoes(List<AlteracaoLocacao> alteracoes, boolean importacao) {
+		filmeService.registrar(alteracoes);
+		if(importacao) {
+			locacoesAtivasService.registrarImportacao(alteracoes);
+		}else {
+			locacoesAtivasService.registrar(alteracoes);
+		}
+		saldoUsuarioService.registrar(alteracoes);
+		resumoMensalService.registrar(alteracoes);
+		historicoLocacaoService.registrar(alteracoes);
 	}
 
 	@Override
 	@Transactional(readOnly = true)
-	public List<Locacao> buscar(Locacao locacaoFiltro) {
-		Example example = Example.of( locacaoFiltro, 
-				ExampleMatcher.matching()
-					.withIgnoreCase()
-					.withStringMatcher(StringMatcher.CONTAINING) );
+	public Slice<LocacaoDTO> buscar(Locacao locacaoFiltro, Long cursor, Integer pagina, Integer tamanho) {
+		int tamanhoPagina = tamanho == null || tamanho < 1 
+				? tamanhoPaginaPadrao 
+				: Math.min(tamanho, tamanhoPaginaMaximo);
+		int numeroPagina = cursor != null || pagina == null || pagina < 0 ? 0 : pagina;
+		if((long) numeroPagina * tamanhoPagina > Integer.MAX_VALUE) {
+			throw new RegraNegocioException("Página fora do intervalo permitido; para avançar além dela, use o cursor.");
+		}
 		
-		return repository.findAll(example);
+		PageRequest pageable = PageRequest.of(numeroPagina, tamanhoPagina, Sort.by("id"));
+		return repository.buscarPagina(locacaoFiltro, cursor, pageable).map(LocacaoServiceImpl::paraDTO);
+	}
+	
+	@Override
+	@Transactional(readOnly = true)
+	public void exportar(Long idUsuario, Consumer<LocacaoDTO> consumidor) {
+		repository.percorrerPorUsuario(idUsuario, tamanhoLoteExportacao, locacao -> consumidor.accept(paraDTO(locacao)));
+	}
+	
+	private static LocacaoDTO paraDTO(LocacaoListada locacao) {
+		return LocacaoDTO.builder()
+				.id(locacao.getId())
+				.filme(locacao.getFilme())
+				.mes(locacao.getMes())
+				.ano(locacao.getAno())
+				.valor(locacao.getValor())
+				.usuario(locacao.getIdUsuario())
+				.tipo(locacao.getTipo() == null ? null : locacao.getTipo().name())
+				.status(locacao.getStatus() == null ? null : locacao.getStatus().name())
+				.versao(locacao.getVersao())
+				.dataPrevistaDevolucao(locacao.getDataPrevistaDevolucao())
+				.renovacoes(locacao.getRenovacoes())
+				.atrasada(locacao.getAtrasada())
+				.build();
 	}
 	
 	@Override
@@ -67,6 +370,184 @@ public class LocacaoServiceImpl implements LocacaoService {
 		atualizar(locacao);
 	}
 
+	/**
+	 * Compare-and-set de status num único UPDATE condicional, sem travar a linha antes. Só depois de
+	 * a troca ter acontecido a locação é lida, já protegida pelo próprio UPDATE, para manter os dados derivados.
+	 */
+	@Override
+	@Transactional
+	public ResultadoOperacaoLote transicionarStatus(Long id, StatusLocacao statusAtual, StatusLocacao novoStatus) {
+		Objects.requireNonNull(id);
+		Objects.requireNonNull(statusAtual);
+		Objects.requireNonNull(novoStatus);
+		
+		if(statusAtual == novoStatus) {
+			return repository.obterSituacao(id)
+					.map( situacao -> situacao.getStatus() == statusAtual 
+							? ResultadoOperacaoLote.SEM_ALTERACAO 
+							: ResultadoOperacaoLote.STATUS_DIVERGENTE )
+					.orElse(ResultadoOperacaoLote.NAO_ENCONTRADA);
+		}
+		
+		if(repository.transicionarStatus(id, statusAtual, novoStatus) == 0) {
+			return repository.existsById(id) ? ResultadoOperacaoLote.STATUS_DIVERGENTE : ResultadoOperacaoLote.NAO_ENCONTRADA;
+		}
+		
+		repository.obterSituacao(id).ifPresent( atual -> registrarAlteracoes(Collections.singletonList(
+				new AlteracaoLocacao(atual.comStatus(statusAtual), atual))) );
+		return ResultadoOperacaoLote.ATUALIZADA;
+	}
+	
+	/**
+	 * O novo prazo é calculado aqui e gravado por um UPDATE condicional sobre o número de renovações lido.
+	 * Se outra renovação passou na frente, relê e tenta de novo; se nada mudou, a regra é que barrou.
+	 */
+	@Override
+	@Transactional
+	public Optional<Locacao> renovar(Long id, Integer dias) {
+		Objects.requireNonNull(id);
+		if(dias == null || dias < 1 || dias > maximoDiasRenovacao) {
+			throw new RegraNegocioException("Informe um número de dias entre 1 e " + maximoDiasRenovacao + ".");
+		}
+		
+		Optional<PrazoLocacao> prazo = repository.obterPrazo(id);
+		while(prazo.isPresent()) {
+			PrazoLocacao lido = prazo.get();
+			LocalDate base = lido.getDataPrevistaDevolucao() != null ? lido.getDataPrevistaDevolucao() : LocalDate.now();
+			
+			if(repository.renovar(id, lido.getRenovacoes(), base.plusDays(dias), maximoRenovacoes, 
+					TipoLocacao.ALUGUEL, StatusLocacao.CANCELADO) == 1) {
+				return repository.findById(id);
+			}
+			
+			prazo = repository.obterPrazo(id);
+			if(prazo.isPresent() && Objects.equals(prazo.get().getRenovacoes(), lido.getRenovacoes())) {
+				throw new RegraNegocioException("Só aluguéis não cancelados podem ser renovados, no máximo " + maximoRenovacoes + " vezes.");
+			}
+		}
+		return Optional.empty();
+	}
+	
+	@Override
+	public ResultadoLoteDTO atualizarStatusEmLote(List<Long> ids, Locacao filtro, StatusLocacao statusAtual, StatusLocacao novoStatus) {
+		Objects.requireNonNull(novoStatus);
+		if(filtro != null) {
+			filtro.setStatus(statusAtual);
+		}
+		
+		return processarEmLote(ids, filtro, (bloco, resultado) -> {
+			List<Long> alterar = new ArrayList<>();
+			List<AlteracaoLocacao> alteracoes = new ArrayList<>();
+			Map<Long, SituacaoLocacao> situacoes = travarSituacoes(bloco);
+			
+			for(Long id : bloco) {
+				SituacaoLocacao situacao = situacoes.get(id);
+				if(situacao == null) {
+					resultado.adicionar(id, ResultadoOperacaoLote.NAO_ENCONTRADA);
+				}else if(statusAtual != null && situacao.getStatus() != statusAtual) {
+					resultado.adicionar(id, ResultadoOperacaoLote.STATUS_DIVERGENTE);
+				}else if(situacao.getStatus() == novoStatus) {
+					resultado.adicionar(id, ResultadoOperacaoLote.SEM_ALTERACAO);
+				}else {
+					alterar.add(id);
+					alteracoes.add(new AlteracaoLocacao(situacao, situacao.comStatus(novoStatus)));
+					resultado.adicionar(id, ResultadoOperacaoLote.ATUALIZADA);
+				}
+			}
+			
+			if(!alterar.isEmpty()) {
+				repository.atualizarStatus(alterar, novoStatus);
+				registrarAlteracoes(alteracoes);
+			}
+		});
+	}
+	
+	@Override
+	public ResultadoLoteDTO deletarEmLote(List<Long> ids, Locacao filtro) {
+		return processarEmLote(ids, filtro, (bloco, resultado) -> {
+			List<Long> excluir = new ArrayList<>();
+			List<AlteracaoLocacao> alteracoes = new ArrayList<>();
+			Map<Long, SituacaoLocacao> situacoes = travarSituacoes(bloco);
+			
+			for(Long id : bloco) {
+				SituacaoLocacao situacao = situacoes.get(id);
+				if(situacao == null) {
+					resultado.adicionar(id, ResultadoOperacaoLote.NAO_ENCONTRADA);
+				}else {
+					excluir.add(id);
+					alteracoes.add(AlteracaoLocacao.exclusao(situacao));
+					resultado.adicionar(id, ResultadoOperacaoLote.EXCLUIDA);
+				}
+			}
+			
+			if(!excluir.isEmpty()) {
+				repository.excluirPorIds(excluir);
+				registrarAlteracoes(alteracoes);
+			}
+		});
+	}
+	
+	/**
+	 * Divide a seleção em blocos e executa a operação de cada bloco numa transação curta. Com ids, 
+	 * a lista é limitada a {@code maximoIdsLote}; com filtro, os ids são lidos em ordem, bloco a bloco,
+	 * e nenhuma entidade é carregada.
+	 */
+	private ResultadoLoteDTO processarEmLote(List<Long> ids, Locacao filtro, BiConsumer<List<Long>, ResultadoLoteDTO> operacao) {
+		ResultadoLoteDTO resultado = new ResultadoLoteDTO();
+		
+		if(ids != null && !ids.isEmpty()) {
+			List<Long> selecionados = new ArrayList<>(new LinkedHashSet<>(ids));
+			if(selecionados.size() > maximoIdsLote) {
+				throw new RegraNegocioException("Informe no máximo " + maximoIdsLote + " locações por operação.");
+			}
+			
+			for(int inicio = 0; inicio < selecionados.size(); inicio += tamanhoBlocoLote) {
+				List<Long> bloco = selecionados.subList(inicio, Math.min(inicio + tamanhoBlocoLote, selecionados.size()));
+				executarBloco(bloco, resultado, operacao);
+			}
+			return resultado;
+		}
+		
+		if(filtro == null || filtro.getUsuario() == null || filtro.getUsuario().getId() == null) {
+			throw new RegraNegocioException("Informe os ids ou o usuário das locações.");
+		}
+		
+		Long cursor = null;
+		List<Long> bloco;
+		do {
+			bloco = repository.obterIds(filtro, cursor, tamanhoBlocoLote);
+			if(!bloco.isEmpty()) {
+				executarBloco(bloco, resultado, operacao);
+				cursor = bloco.get(bloco.size() - 1);
+			}
+		} while(bloco.size() == tamanhoBlocoLote);
+		
+		return resultado;
+	}
+	
+	/**
+	 * Cada bloco anota os desfechos num resultado próprio, que só entra no geral se a transação dele passar. 
+	 * Se a regra recusar o bloco (estoque, limite de locações ativas), os ids dele saem como rejeitados 
+	 * e os blocos seguintes continuam; os anteriores já estão gravados.
+	 */
+	private void executarBloco(List<Long> bloco, ResultadoLoteDTO resultado, BiConsumer<List<Long>, ResultadoLoteDTO> operacao) {
+		ResultadoLoteDTO doBloco = new ResultadoLoteDTO();
+		try {
+			transactionTemplate.execute( status -> {
+				operacao.accept(bloco, doBloco);
+				return null;
+			});
+			doBloco.getItens().forEach( item -> resultado.adicionar(item.getId(), item.getResultado()) );
+		}catch (RegraNegocioException e) {
+			bloco.forEach( id -> resultado.adicionar(id, ResultadoOperacaoLote.REJEITADA) );
+		}
+	}
+	
+	private Map<Long, SituacaoLocacao> travarSituacoes(List<Long> ids) {
+		return repository.travarSituacoes(ids).stream()
+				.collect(Collectors.toMap(SituacaoLocacao::getId, Function.identity()));
+	}
+
 	@Override
 	public void validar(Locacao locacao) {
 		
@@ -103,19 +584,39 @@ public class LocacaoServiceImpl implements LocacaoService {
 	@Override
 	@Transactional(readOnly = true)
 	public BigDecimal obterSaldoPorUsuario(Long id) {
+		return obterSaldosPorUsuarios(Collections.singletonList(id)).get(id);
+	}
+	
+	/**
+	 * Os saldos já materializados vêm direto da saldo_usuario; os que faltam são calculados 
+	 * com uma única consulta agrupada por lote de ids.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public Map<Long, BigDecimal> obterSaldosPorUsuarios(Collection<Long> idsUsuarios) {
+		List<Long> ids = new ArrayList<>(new LinkedHashSet<>(idsUsuarios));
+		if(ids.size() > maximoUsuariosSaldo) {
+			throw new RegraNegocioException("Informe no máximo " + maximoUsuariosSaldo + " usuários por consulta.");
+		}
 		
-		BigDecimal devolucoes = repository.obterSaldoPorTipoLocacaoEUsuarioEStatus(id, TipoLocacao.DEVOLUÇÃO, StatusLocacao.EFETIVADO);
-		BigDecimal alugueis = repository.obterSaldoPorTipoLocacaoEUsuarioEStatus(id, TipoLocacao.ALUGUEL, StatusLocacao.EFETIVADO);
+		Map<Long, BigDecimal> saldos = new LinkedHashMap<>();
+		ids.forEach( id -> saldos.put(id, BigDecimal.ZERO) );
 		
-		if(devolucoes == null) {
-			devolucoes = BigDecimal.ZERO;
-		}
-
-		if(alugueis == null) {
-			alugueis = BigDecimal.ZERO;
+		for(int inicio = 0; inicio < ids.size(); inicio += tamanhoConsultaSaldo) {
+			List<Long> lote = ids.subList(inicio, Math.min(inicio + tamanhoConsultaSaldo, ids.size()));
+			
+			Map<Long, BigDecimal> materializados = saldoUsuarioService.obterSaldos(lote);
+			saldos.putAll(materializados);
+			
+			List<Long> semSaldoMaterializado = new ArrayList<>();
+			lote.stream().filter( id -> !materializados.containsKey(id) ).forEach(semSaldoMaterializado::add);
+			if(!semSaldoMaterializado.isEmpty()) {
+				repository.obterSaldosPorUsuarios(semSaldoMaterializado, TipoLocacao.DEVOLUÇÃO, TipoLocacao.ALUGUEL, StatusLocacao.EFETIVADO)
+					.forEach( saldo -> saldos.put(saldo.getIdUsuario(), saldo.getSaldo()) );
+			}
 		}
 		
-		return devolucoes.subtract(alugueis);
+		return saldos;
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,118 @@
+package com.rafaguido.desafioeteg.service.impl;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.rafaguido.desafioeteg.exception.RegraNegocioException;
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+import com.rafaguido.desafioeteg.model.repository.LocacaoRepository;
+import com.rafaguido.desafioeteg.model.repository.LocacoesAtivasRepository;
+import com.rafaguido.desafioeteg.model.repository.SituacaoLocacao;
+import com.rafaguido.desafioeteg.service.AlteracaoLocacao;
+import com.rafaguido.desafioeteg.service.LocacoesAtivasService;
+
+/**
+ * Mantém a tabela locacoes_ativas, com quantos filmes cada usuário tem em mãos. O limite é conferido
+ * no próprio incremento ({@code quantidade + n <= limite}), então a regra custa um UPDATE por usuário, 
+ * qualquer que seja o tamanho do histórico dele.
+ */
+@Service
+public class LocacoesAtivasServiceImpl implements LocacoesAtivasService {
+	
+	private final LocacoesAtivasRepository repository;
+	private final LocacaoRepository locacaoRepository;
+	private final int limite;
+
+	public LocacoesAtivasServiceImpl(
+			LocacoesAtivasRepository repository,
+			LocacaoRepository locacaoRepository,
+			@Value("${locacao.maximo-ativas-por-usuario:5}") int limite) {
+		this.repository = repository;
+		this.locacaoRepository = locacaoRepository;
+		this.limite = limite;
+	}
+
+	/**
+	 * Deve ser chamado dentro da transação que alterou as locações; a exceção desfaz essa transação.
+	 * As variações são aplicadas em ordem de usuário, como no saldo.
+	 */
+	@Override
+	@Transactional
+	public void registrar(Collection<AlteracaoLocacao> alteracoes) {
+		registrar(alteracoes, limite);
+	}
+	
+	/**
+	 * Locações importadas são históricas: entram na contagem, mas não esbarram no limite, 
+	 * que vale só para os aluguéis novos.
+	 */
+	@Override
+	@Transactional
+	public void registrarImportacao(Collection<AlteracaoLocacao> alteracoes) {
+		registrar(alteracoes, Integer.MAX_VALUE);
+	}
+	
+	private void registrar(Collection<AlteracaoLocacao> alteracoes, int limiteAbertura) {
+		Map<Long, Integer> variacoes = new TreeMap<>();
+		for(AlteracaoLocacao alteracao : alteracoes) {
+			acumular(variacoes, alteracao.getAnterior(), -1);
+			acumular(variacoes, alteracao.getAtual(), 1);
+		}
+		
+		variacoes.forEach( (idUsuario, variacao) -> {
+			if(variacao > 0 && !aplicar(idUsuario, variacao, limiteAbertura)) {
+				throw new RegraNegocioException("O usuário já possui " + limite + " filmes locados.");
+			}
+			if(variacao < 0 && !aplicar(idUsuario, variacao, limiteAbertura)) {
+				throw new RegraNegocioException("O usuário não possui filmes locados para devolver.");
+			}
+		});
+	}
+	
+	/**
+	 * Se o UPDATE não pegou nenhuma linha, só cria o registro quando ele não existe; 
+	 * uma recusa do limite não volta a contar as locações do usuário.
+	 */
+	private boolean aplicar(Long idUsuario, int variacao, int limiteAbertura) {
+		if(atualizar(idUsuario, variacao, limiteAbertura)) {
+			return true;
+		}
+		return !repository.existsById(idUsuario) && criarRegistro(idUsuario, variacao, limiteAbertura);
+	}
+	
+	private boolean atualizar(Long idUsuario, int variacao, int limiteAbertura) {
+		return variacao > 0 
+				? repository.abrir(idUsuario, variacao, limiteAbertura) > 0 
+				: repository.encerrar(idUsuario, -variacao) > 0;
+	}
+	
+	private static void acumular(Map<Long, Integer> variacoes, SituacaoLocacao situacao, int sinal) {
+		if(situacao != null && situacao.getIdUsuario() != null && situacao.ocupacao() != 0) {
+			variacoes.merge(situacao.getIdUsuario(), sinal * situacao.ocupacao(), Integer::sum);
+		}
+	}
+	
+	/**
+	 * Cria a linha na transação de quem chama, contando as locações que ela enxerga, inclusive a alteração 
+	 * em curso; por isso a variação não é aplicada de novo. Se outra transação criou a linha antes, 
+	 * o insert não faz nada e a variação segue pelo UPDATE condicional.
+	 */
+	private boolean criarRegistro(Long idUsuario, int variacao, int limiteAbertura) {
+		locacaoRepository.flush();
+		long ativas = locacaoRepository.contarAtivas(idUsuario, TipoLocacao.ALUGUEL, TipoLocacao.DEVOLUÇÃO, StatusLocacao.CANCELADO);
+		if(ativas < 0 || (variacao > 0 && ativas > limiteAbertura)) {
+			return false;
+		}
+		if(repository.criar(idUsuario, (int) ativas) > 0) {
+			return true;
+		}
+		return atualizar(idUsuario, variacao, limiteAbertura);
+	}
+
+}
@@ -0,0 +1,163 @@
+package com.rafaguido.desafioeteg.service.impl;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.rafaguido.desafioeteg.api.dto.ResumoMensalDTO;
+import com.rafaguido.desafioeteg.model.entity.ResumoMensal;
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+import com.rafaguido.desafioeteg.model.repository.ResumoMensalRepository;
+import com.rafaguido.desafioeteg.model.repository.SituacaoLocacao;
+import com.rafaguido.desafioeteg.model.repository.TotalMensal;
+import com.rafaguido.desafioeteg.service.AlteracaoLocacao;
+import com.rafaguido.desafioeteg.service.ResumoMensalService;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Cada alteração de locação tira o valor do resumo da situação anterior e soma no da situação atual,
+ * tanto no resumo do usuário quanto no geral. No geral a faixa vem do id da locação, então a mesma 
+ * locação sempre cai na mesma linha e transações de locações diferentes raramente disputam a mesma linha.
+ */
+@Service
+public class ResumoMensalServiceImpl implements ResumoMensalService {
+	
+	private static final Comparator<Chave> ORDEM = Comparator
+			.comparing(Chave::getIdUsuario)
+			.thenComparing(Chave::getParticao)
+			.thenComparing(Chave::getAno)
+			.thenComparing(Chave::getMes)
+			.thenComparing(Chave::getTipo)
+			.thenComparing(Chave::getStatus);
+	
+	private final ResumoMensalRepository repository;
+	private final int faixasGerais;
+
+	public ResumoMensalServiceImpl(
+			ResumoMensalRepository repository,
+			@Value("${resumo.faixas-gerais:16}") int faixasGerais) {
+		this.repository = repository;
+		this.faixasGerais = Math.max(1, faixasGerais);
+	}
+
+	@Override
+	@Transactional
+	public void registrar(Collection<AlteracaoLocacao> alteracoes) {
+		Map<Chave, Variacao> variacoes = new TreeMap<>(ORDEM);
+		for(AlteracaoLocacao alteracao : alteracoes) {
+			acumular(variacoes, alteracao.getAnterior(), -1);
+			acumular(variacoes, alteracao.getAtual(), 1);
+		}
+		
+		variacoes.forEach( (chave, variacao) -> {
+			if(variacao.isNula()) {
+				return;
+			}
+			if(somar(chave, variacao) == 0 && criar(chave, variacao) == 0) {
+				somar(chave, variacao);
+			}
+		});
+	}
+	
+	private void acumular(Map<Chave, Variacao> variacoes, SituacaoLocacao situacao, int sinal) {
+		if(situacao == null || situacao.getAno() == null || situacao.getMes() == null 
+				|| situacao.getTipo() == null || situacao.getStatus() == null) {
+			return;
+		}
+		
+		BigDecimal valor = situacao.getValor() == null ? BigDecimal.ZERO : situacao.getValor();
+		Variacao variacao = new Variacao(sinal > 0 ? valor : valor.negate(), sinal);
+		
+		int particao = situacao.getId() == null ? 0 : (int) Math.floorMod(situacao.getId(), (long) faixasGerais);
+		variacoes.merge(chave(ResumoMensal.GERAL, particao, situacao), variacao, Variacao::somar);
+		if(situacao.getIdUsuario() != null) {
+			variacoes.merge(chave(situacao.getIdUsuario(), 0, situacao), variacao, Variacao::somar);
+		}
+	}
+	
+	private static Chave chave(Long idUsuario, int particao, SituacaoLocacao situacao) {
+		return new Chave(idUsuario, particao, situacao.getAno(), situacao.getMes(), situacao.getTipo(), situacao.getStatus());
+	}
+	
+	private int somar(Chave chave, Variacao variacao) {
+		return repository.somar(chave.getIdUsuario(), chave.getParticao(), chave.getAno(), chave.getMes(), 
+				chave.getTipo(), chave.getStatus(), variacao.getTotal(), variacao.getQuantidade());
+	}
+	
+	/**
+	 * A linha nasce já com a variação, na mesma transação; se outra transação a criou antes,
+	 * o insert não faz nada e a variação vai pelo UPDATE.
+	 */
+	private int criar(Chave chave, Variacao variacao) {
+		return repository.criar(chave.getIdUsuario(), chave.getParticao(), chave.getAno(), chave.getMes(), 
+				chave.getTipo().name(), chave.getStatus().name(), variacao.getTotal(), variacao.getQuantidade());
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public List<ResumoMensalDTO> obterResumoMensal(Long idUsuario, Integer ano, Integer mes) {
+		return paraDTO(repository.obterResumoMensal(idUsuario == null ? ResumoMensal.GERAL : idUsuario, ano, mes));
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public List<ResumoMensalDTO> obterResumoAnual(Long idUsuario, Integer ano) {
+		return paraDTO(repository.obterResumoAnual(idUsuario == null ? ResumoMensal.GERAL : idUsuario, ano));
+	}
+	
+	private static List<ResumoMensalDTO> paraDTO(List<TotalMensal> totais) {
+		return totais.stream()
+				.map( total -> ResumoMensalDTO.builder()
+						.ano(total.getAno())
+						.mes(total.getMes())
+						.tipo(total.getTipo() == null ? null : total.getTipo().name())
+						.status(total.getStatus() == null ? null : total.getStatus().name())
+						.total(total.getTotal())
+						.quantidade(total.getQuantidade())
+						.build() )
+				.collect(Collectors.toList());
+	}
+	
+	@Getter
+	@AllArgsConstructor
+	private static class Chave {
+		private final Long idUsuario;
+		private final Integer particao;
+		private final Integer ano;
+		private final Integer mes;
+		private final TipoLocacao tipo;
+		private final StatusLocacao status;
+		
+		@Override
+		public String toString() {
+			return idUsuario + "/" + particao + "/" + ano + "-" + mes + "/" + tipo + "/" + status;
+		}
+	}
+	
+	@Getter
+	@AllArgsConstructor
+	private static class Variacao {
+		private final BigDecimal total;
+		private final long quantidade;
+		
+		Variacao somar(Variacao outra) {
+			return new Variacao(total.add(outra.total), quantidade + outra.quantidade);
+		}
+		
+		boolean isNula() {
+			return quantidade == 0 && total.signum() == 0;
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.rafaguido.desafioeteg.service.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Roda de temporização com hash: os prazos caem em {@code faixas} posições de {@code duracaoTick} ms cada,
+ * e prazos além de uma volta guardam quantas voltas ainda faltam. Agendar custa O(1) e só entra numa fila 
+ * sem bloqueio; a roda em si é mexida apenas por quem chama {@link #avancar(long)}, que olha uma faixa por tick.
+ * A precisão é de um tick: um item vence no primeiro tick a partir do seu prazo.
+ */
+public class RodaTemporizacao<T> {
+
+	private final long duracaoTick;
+	private final long inicio;
+	private final int mascara;
+	private final List<List<Entrada<T>>> faixas;
+	private final Queue<Entrada<T>> novas = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger agendados = new AtomicInteger();
+	private long tick;
+	
+	public RodaTemporizacao(int faixas, long duracaoTick, long agora) {
+		int quantidade = Integer.highestOneBit(Math.max(1, faixas - 1)) << 1;
+		this.duracaoTick = Math.max(1, duracaoTick);
+		this.inicio = agora;
+		this.mascara = quantidade - 1;
+		this.faixas = new ArrayList<>(quantidade);
+		for(int i = 0; i < quantidade; i++) {
+			this.faixas.add(new ArrayList<>());
+		}
+	}
+	
+	public void agendar(T item, long prazo) {
+		novas.add(new Entrada<>(item, prazo));
+		agendados.incrementAndGet();
+	}
+	
+	/**
+	 * Processa todos os ticks até {@code agora} e devolve os itens vencidos, tirando-os da roda.
+	 */
+	public synchronized List<T> avancar(long agora) {
+		List<T> vencidos = new ArrayList<>();
+		long ultimoTick = (agora - inicio) / duracaoTick;
+		
+		while(tick <= ultimoTick) {
+			distribuirNovas();
+			Iterator<Entrada<T>> entradas = faixas.get((int) (tick & mascara)).iterator();
+			while(entradas.hasNext()) {
+				Entrada<T> entrada = entradas.next();
+				if(entrada.voltas > 0) {
+					entrada.voltas--;
+					continue;
+				}
+				vencidos.add(entrada.item);
+				entradas.remove();
+			}
+			tick++;
+		}
+		
+		agendados.addAndGet(-vencidos.size());
+		return vencidos;
+	}
+	
+	public int getAgendados() {
+		return agendados.get();
+	}
+	
+	private void distribuirNovas() {
+		Entrada<T> entrada;
+		while((entrada = novas.poll()) != null) {
+			long tickDoPrazo = Math.max(tick, (entrada.prazo - inicio + duracaoTick - 1) / duracaoTick);
+			entrada.voltas = (tickDoPrazo - tick) / faixas.size();
+			faixas.get((int) (tickDoPrazo & mascara)).add(entrada);
+		}
+	}
+	
+	private static class Entrada<T> {
+		private final T item;
+		private final long prazo;
+		private long voltas;
+		
+		private Entrada(T item, long prazo) {
+			this.item = item;
+			this.prazo = prazo;
+		}
+	}
+	
+}
@@ -0,0 +1,204 @@
+package com.rafaguido.desafioeteg.service.impl;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.rafaguido.desafioeteg.model.entity.SaldoUsuario;
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+import com.rafaguido.desafioeteg.model.repository.LocacaoRepository;
+import com.rafaguido.desafioeteg.model.repository.SaldoPorUsuario;
+import com.rafaguido.desafioeteg.model.repository.SaldoUsuarioRepository;
+import com.rafaguido.desafioeteg.model.repository.SituacaoLocacao;
+import com.rafaguido.desafioeteg.model.repository.UsuarioRepository;
+import com.rafaguido.desafioeteg.service.AlteracaoLocacao;
+import com.rafaguido.desafioeteg.service.SaldoUsuarioService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Mantém a tabela saldo_usuario: cada alteração de locação vira um incremento atômico 
+ * ({@code saldo = saldo + variacao}) na mesma transação que a alterou. A linha de um usuário
+ * é criada na primeira vez que ele precisa dela, nessa mesma transação.
+ */
+@Service
+public class SaldoUsuarioServiceImpl implements SaldoUsuarioService {
+	
+	private static final Logger log = LoggerFactory.getLogger(SaldoUsuarioServiceImpl.class);
+	
+	private final SaldoUsuarioRepository repository;
+	private final LocacaoRepository locacaoRepository;
+	private final UsuarioRepository usuarioRepository;
+	private final TransactionTemplate transacaoReconciliacao;
+	private final Counter divergencias;
+	private final int tamanhoLoteReconciliacao;
+	private final int paralelismoReconciliacao;
+
+	public SaldoUsuarioServiceImpl(
+			SaldoUsuarioRepository repository,
+			LocacaoRepository locacaoRepository,
+			UsuarioRepository usuarioRepository,
+			PlatformTransactionManager transactionManager,
+			MeterRegistry meterRegistry,
+			@Value("${saldo.reconciliacao.tamanho-lote:500}") int tamanhoLoteReconciliacao,
+			@Value("${saldo.reconciliacao.paralelismo:4}") int paralelismoReconciliacao) {
+		this.repository = repository;
+		this.locacaoRepository = locacaoRepository;
+		this.usuarioRepository = usuarioRepository;
+		this.transacaoReconciliacao = new TransactionTemplate(transactionManager);
+		this.divergencias = Counter.builder("saldo.reconciliacao.divergencias")
+				.description("Saldos materializados que não batiam com o recalculado")
+				.register(meterRegistry);
+		this.tamanhoLoteReconciliacao = tamanhoLoteReconciliacao;
+		this.paralelismoReconciliacao = Math.max(1, paralelismoReconciliacao);
+	}
+
+	/**
+	 * Deve ser chamado dentro da transação que alterou as locações. As variações são somadas por usuário
+	 * e aplicadas em ordem de id, para que transações concorrentes travem as linhas sempre na mesma ordem.
+	 */
+	@Override
+	@Transactional
+	public void registrar(Collection<AlteracaoLocacao> alteracoes) {
+		Map<Long, BigDecimal> variacoes = new TreeMap<>();
+		for(AlteracaoLocacao alteracao : alteracoes) {
+			acumular(variacoes, alteracao.getAnterior(), true);
+			acumular(variacoes, alteracao.getAtual(), false);
+		}
+		
+		variacoes.forEach( (idUsuario, variacao) -> {
+			if(variacao.signum() == 0) {
+				return;
+			}
+			if(repository.somar(idUsuario, variacao) == 0 && !criarRegistro(idUsuario)) {
+				repository.somar(idUsuario, variacao);
+			}
+		});
+	}
+	
+	private static void acumular(Map<Long, BigDecimal> variacoes, SituacaoLocacao situacao, boolean remover) {
+		if(situacao == null || situacao.getIdUsuario() == null) {
+			return;
+		}
+		BigDecimal contribuicao = situacao.contribuicaoParaSaldo();
+		if(contribuicao.signum() != 0) {
+			variacoes.merge(situacao.getIdUsuario(), remover ? contribuicao.negate() : contribuicao, BigDecimal::add);
+		}
+	}
+	
+	/**
+	 * Cria a linha na transação de quem chama, com o saldo que ela enxerga, que já inclui a variação em curso.
+	 * Devolve falso se outra transação criou a linha antes; aí a variação ainda precisa ser somada.
+	 */
+	private boolean criarRegistro(Long idUsuario) {
+		locacaoRepository.flush();
+		return repository.criar(idUsuario, recalcular(idUsuario)) > 0;
+	}
+	
+	private BigDecimal recalcular(Long idUsuario) {
+		List<SaldoPorUsuario> saldos = recalcular(Collections.singletonList(idUsuario));
+		return saldos.isEmpty() ? BigDecimal.ZERO : saldos.get(0).getSaldo();
+	}
+	
+	private List<SaldoPorUsuario> recalcular(Collection<Long> idsUsuarios) {
+		return locacaoRepository.obterSaldosPorUsuarios(
+				idsUsuarios, TipoLocacao.DEVOLUÇÃO, TipoLocacao.ALUGUEL, StatusLocacao.EFETIVADO);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Map<Long, BigDecimal> obterSaldos(Collection<Long> idsUsuarios) {
+		return repository.findAllById(idsUsuarios).stream()
+				.collect(Collectors.toMap(SaldoUsuario::getIdUsuario, SaldoUsuario::getSaldo));
+	}
+
+	/**
+	 * Percorre os usuários em lotes por id e recalcula os saldos de cada lote em paralelo.
+	 * O saldo guardado é lido antes do agregado e corrigido só se ainda for o mesmo valor lido,
+	 * assim uma locação commitada no meio da verificação não é sobrescrita com um saldo velho.
+	 */
+	@Override
+	@Scheduled(cron = "${saldo.reconciliacao.cron:0 0 3 * * *}")
+	public void reconciliar() {
+		ExecutorService executor = Executors.newFixedThreadPool(paralelismoReconciliacao);
+		try {
+			List<Future<Integer>> lotes = new ArrayList<>();
+			PageRequest lote = PageRequest.of(0, tamanhoLoteReconciliacao);
+			Long cursor = 0l;
+			
+			List<Long> ids;
+			do {
+				ids = usuarioRepository.obterIdsAPartirDe(cursor, lote);
+				if(!ids.isEmpty()) {
+					List<Long> idsDoLote = ids;
+					lotes.add( executor.submit( () -> reconciliarLote(idsDoLote) ) );
+					cursor = ids.get(ids.size() - 1);
+				}
+			} while(ids.size() == tamanhoLoteReconciliacao);
+			
+			int corrigidos = 0;
+			for(Future<Integer> resultado : lotes) {
+				corrigidos += resultado.get();
+			}
+			log.info("Reconciliação de saldos concluída: {} lotes, {} saldos divergentes", lotes.size(), corrigidos);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			log.error("Falha na reconciliação de saldos", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private int reconciliarLote(List<Long> idsUsuarios) {
+		Integer divergentes = transacaoReconciliacao.execute( status -> {
+			Map<Long, BigDecimal> armazenados = repository.findAllById(idsUsuarios).stream()
+					.collect(Collectors.toMap(SaldoUsuario::getIdUsuario, SaldoUsuario::getSaldo));
+			Map<Long, BigDecimal> calculados = recalcular(idsUsuarios).stream()
+					.collect(Collectors.toMap(SaldoPorUsuario::getIdUsuario, SaldoPorUsuario::getSaldo));
+			
+			int quantidade = 0;
+			for(Long idUsuario : idsUsuarios) {
+				BigDecimal armazenado = armazenados.get(idUsuario);
+				BigDecimal calculado = calculados.getOrDefault(idUsuario, BigDecimal.ZERO);
+				if(armazenado == null) {
+					repository.criar(idUsuario, calculado);
+					continue;
+				}
+				if(armazenado.compareTo(calculado) == 0) {
+					continue;
+				}
+				
+				quantidade++;
+				divergencias.increment();
+				log.warn("Saldo do usuário {} divergente: armazenado {}, recalculado {}", idUsuario, armazenado, calculado);
+				repository.corrigir(idUsuario, armazenado, calculado);
+			}
+			return quantidade;
+		});
+		
+		return divergentes == null ? 0 : divergentes;
+	}
+
+}
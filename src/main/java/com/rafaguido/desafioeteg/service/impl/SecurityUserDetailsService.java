@@ -7,21 +7,20 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import com.rafaguido.desafioeteg.model.entity.Usuario;
-import com.rafaguido.desafioeteg.model.repository.UsuarioRepository;
 
 @Service
 public class SecurityUserDetailsService implements UserDetailsService {
 	
-	private UsuarioRepository usuarioRepository;
+	private UsuarioCache usuarioCache;
 
-	public SecurityUserDetailsService(UsuarioRepository usuarioRepository) {
-		this.usuarioRepository = usuarioRepository;
+	public SecurityUserDetailsService(UsuarioCache usuarioCache) {
+		this.usuarioCache = usuarioCache;
 	}
 	
 	@Override
 	public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-		Usuario usuarioEncontrado = usuarioRepository
-				.findByEmail(email)
+		Usuario usuarioEncontrado = usuarioCache
+				.obterPorEmail(email)
 				.orElseThrow(() -> new UsernameNotFoundException("Email não cadastrado."));
 		
 		return User.builder()
@@ -0,0 +1,198 @@
+package com.rafaguido.desafioeteg.service.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import com.rafaguido.desafioeteg.exception.ServicoSobrecarregadoException;
+import com.rafaguido.desafioeteg.service.SenhaService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+/**
+ * Executa o BCrypt num pool próprio e limitado, fora das threads do Tomcat.
+ * Quando a fila do pool está cheia a requisição é recusada na hora.
+ * As criptografias em lote usam um pool fork-join separado, para não disputar a fila dos logins.
+ */
+@Service
+public class SenhaServiceImpl implements SenhaService {
+	
+	private static final String MENSAGEM_SOBRECARGA = "Serviço temporariamente sobrecarregado, tente novamente em instantes.";
+	private static final Pattern CUSTO_BCRYPT = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+	
+	private final PasswordEncoder encoder;
+	private final int custo;
+	private final long timeoutMillis;
+	private final ThreadPoolExecutor executor;
+	private final ForkJoinPool poolLote;
+	private final Timer tempoCriptografar;
+	private final Timer tempoConferir;
+
+	public SenhaServiceImpl(
+			PasswordEncoder encoder,
+			MeterRegistry meterRegistry,
+			@Value("${senha.bcrypt.custo:10}") int custo,
+			@Value("${senha.executor.threads:0}") int threads,
+			@Value("${senha.executor.fila:100}") int fila,
+			@Value("${senha.executor.timeout-ms:5000}") long timeoutMillis,
+			@Value("${senha.lote.paralelismo:0}") int paralelismoLote) {
+		this.encoder = encoder;
+		this.custo = custo;
+		this.timeoutMillis = timeoutMillis;
+		
+		int tamanhoPool = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		this.executor = new ThreadPoolExecutor(
+				tamanhoPool, tamanhoPool, 
+				0L, TimeUnit.MILLISECONDS, 
+				new ArrayBlockingQueue<>(fila),
+				new ThreadsSenha(),
+				new ThreadPoolExecutor.AbortPolicy());
+		this.poolLote = new ForkJoinPool(paralelismoLote > 0 ? paralelismoLote : Runtime.getRuntime().availableProcessors());
+		
+		new ExecutorServiceMetrics(executor, "senha", Tags.empty()).bindTo(meterRegistry);
+		this.tempoCriptografar = criarTimer(meterRegistry, "criptografar");
+		this.tempoConferir = criarTimer(meterRegistry, "conferir");
+	}
+	
+	private static Timer criarTimer(MeterRegistry meterRegistry, String operacao) {
+		return Timer.builder("senha.bcrypt")
+				.description("Tempo gasto pelo BCrypt")
+				.tag("operacao", operacao)
+				.publishPercentiles(0.5, 0.95, 0.99)
+				.register(meterRegistry);
+	}
+
+	@Override
+	public String criptografar(String senha) {
+		return executar( () -> tempoCriptografar.recordCallable( () -> encoder.encode(senha) ) );
+	}
+
+	/**
+	 * Bloqueia até todas as senhas estarem criptografadas; a ordem do retorno é a mesma da entrada.
+	 */
+	@Override
+	public List<String> criptografarEmLote(List<String> senhas) {
+		String[] criptografadas = new String[senhas.size()];
+		poolLote.invoke(new CriptografiaLote(senhas, criptografadas, 0, senhas.size()));
+		return Arrays.asList(criptografadas);
+	}
+
+	@Override
+	public boolean confere(String senha, String senhaCriptografada) {
+		return executar( () -> tempoConferir.recordCallable( () -> encoder.matches(senha, senhaCriptografada) ) );
+	}
+
+	/**
+	 * Compara o custo gravado no hash ({@code $2a$NN$...}) com o configurado, nos dois sentidos: 
+	 * o {@code upgradeEncoding} do encoder só pede nova criptografia quando o custo sobe.
+	 */
+	@Override
+	public boolean precisaCriptografarNovamente(String senhaCriptografada) {
+		if(senhaCriptografada == null) {
+			return false;
+		}
+		
+		Matcher matcher = CUSTO_BCRYPT.matcher(senhaCriptografada);
+		return matcher.find() && Integer.parseInt(matcher.group(1)) != custo;
+	}
+	
+	private <T> T executar(Callable<T> tarefa) {
+		Future<T> futuro;
+		try {
+			futuro = executor.submit(tarefa);
+		}catch (RejectedExecutionException e) {
+			throw new ServicoSobrecarregadoException(MENSAGEM_SOBRECARGA);
+		}
+		
+		try {
+			return futuro.get(timeoutMillis, TimeUnit.MILLISECONDS);
+		}catch (TimeoutException e) {
+			futuro.cancel(true);
+			throw new ServicoSobrecarregadoException(MENSAGEM_SOBRECARGA);
+		}catch (InterruptedException e) {
+			futuro.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new ServicoSobrecarregadoException(MENSAGEM_SOBRECARGA);
+		}catch (ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+	
+	@PreDestroy
+	public void encerrar() {
+		executor.shutdown();
+		poolLote.shutdown();
+	}
+	
+	private class CriptografiaLote extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		private static final int LIMIAR = 4;
+		
+		private final List<String> senhas;
+		private final String[] criptografadas;
+		private final int inicio;
+		private final int fim;
+		
+		CriptografiaLote(List<String> senhas, String[] criptografadas, int inicio, int fim) {
+			this.senhas = senhas;
+			this.criptografadas = criptografadas;
+			this.inicio = inicio;
+			this.fim = fim;
+		}
+
+		@Override
+		protected void compute() {
+			if(fim - inicio <= LIMIAR) {
+				for(int i = inicio; i < fim; i++) {
+					String senha = senhas.get(i);
+					criptografadas[i] = tempoCriptografar.record( () -> encoder.encode(senha) );
+				}
+				return;
+			}
+			
+			int meio = (inicio + fim) >>> 1;
+			invokeAll(
+					new CriptografiaLote(senhas, criptografadas, inicio, meio), 
+					new CriptografiaLote(senhas, criptografadas, meio, fim));
+		}
+	}
+	
+	private static class ThreadsSenha implements ThreadFactory {
+		
+		private final AtomicInteger contador = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "senha-" + contador.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
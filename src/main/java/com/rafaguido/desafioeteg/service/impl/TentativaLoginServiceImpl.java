@@ -0,0 +1,305 @@
+package com.rafaguido.desafioeteg.service.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.rafaguido.desafioeteg.exception.LimiteTentativasException;
+import com.rafaguido.desafioeteg.service.TentativaLoginService;
+
+/**
+ * Limita as tentativas de login por email e por IP antes que elas cheguem à base ou ao BCrypt.
+ * 
+ * Cada chave tem uma janela deslizante (aproximada pela janela atual e a anterior) e, depois de
+ * algumas falhas dentro dessa janela, um bloqueio que dobra a cada nova falha. As falhas saem da conta 
+ * junto com a janela, então um IP compartilhado não acumula falhas para sempre. Os registros ficam espalhados
+ * em faixas com lock próprio e cada faixa tem capacidade fixa, descartando as chaves menos usadas.
+ */
+@Service
+public class TentativaLoginServiceImpl implements TentativaLoginService {
+	
+	private static final String MENSAGEM_BLOQUEIO = "Muitas tentativas de login. Aguarde antes de tentar novamente.";
+	
+	private final Limitador porEmail;
+	private final Limitador porIp;
+	
+	public TentativaLoginServiceImpl(
+			@Value("${login.limite.tentativas-email:10}") int tentativasEmail,
+			@Value("${login.limite.tentativas-ip:100}") int tentativasIp,
+			@Value("${login.limite.janela-segundos:60}") long janelaSegundos,
+			@Value("${login.limite.falhas-para-bloqueio:5}") int falhasParaBloqueio,
+			@Value("${login.limite.bloqueio-inicial-ms:1000}") long bloqueioInicialMillis,
+			@Value("${login.limite.bloqueio-maximo-ms:900000}") long bloqueioMaximoMillis,
+			@Value("${login.limite.capacidade:100000}") int capacidade,
+			@Value("${login.limite.faixas:64}") int faixas) {
+		
+		long janelaMillis = TimeUnit.SECONDS.toMillis(janelaSegundos);
+		this.porEmail = new Limitador(tentativasEmail, janelaMillis, falhasParaBloqueio, 
+				bloqueioInicialMillis, bloqueioMaximoMillis, capacidade, faixas);
+		this.porIp = new Limitador(tentativasIp, janelaMillis, falhasParaBloqueio * 10, 
+				bloqueioInicialMillis, bloqueioMaximoMillis, capacidade, faixas);
+	}
+
+	@Override
+	public void verificar(String email, String ip) {
+		long agora = agora();
+		long esperaIp = porIp.tentar(ip, agora);
+		long esperaEmail = esperaIp > 0 ? 0 : porEmail.tentar(normalizar(email), agora);
+		long espera = Math.max(esperaIp, esperaEmail);
+		
+		if(espera > 0) {
+			long segundos = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(espera + 999));
+			throw new LimiteTentativasException(MENSAGEM_BLOQUEIO, segundos);
+		}
+	}
+
+	@Override
+	public void registrarFalha(String email, String ip) {
+		long agora = agora();
+		porIp.falhou(ip, agora);
+		porEmail.falhou(normalizar(email), agora);
+	}
+
+	/**
+	 * O email volta do zero; no IP só sai uma falha, porque o mesmo IP pode ter outros usuários 
+	 * e um ataque que acerte uma senha não deve limpar as falhas dele.
+	 */
+	@Override
+	public void registrarSucesso(String email, String ip) {
+		porEmail.liberar(normalizar(email));
+		porIp.descontarFalha(ip);
+	}
+	
+	@Scheduled(fixedDelayString = "${login.limite.limpeza-ms:60000}")
+	public void removerChavesOciosas() {
+		long agora = agora();
+		porEmail.removerOciosas(agora);
+		porIp.removerOciosas(agora);
+	}
+	
+	private static String normalizar(String email) {
+		return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+	}
+	
+	private static long agora() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+	}
+	
+	private static class Registro {
+		long inicioJanela;
+		int tentativasJanelaAtual;
+		int tentativasJanelaAnterior;
+		int falhasJanelaAtual;
+		int falhasJanelaAnterior;
+		long bloqueadoAte;
+		long ultimoAcesso;
+	}
+	
+	private static class Faixa {
+		
+		final ReentrantLock lock = new ReentrantLock();
+		final LinkedHashMap<String, Registro> registros;
+		
+		Faixa(final int capacidade) {
+			this.registros = new LinkedHashMap<String, Registro>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Registro> maisAntigo) {
+					return size() > capacidade;
+				}
+			};
+		}
+	}
+	
+	private static class Limitador {
+		
+		private final int maximoPorJanela;
+		private final long janelaMillis;
+		private final int falhasParaBloqueio;
+		private final long bloqueioInicialMillis;
+		private final long bloqueioMaximoMillis;
+		private final Faixa[] faixas;
+		private final int mascara;
+		
+		Limitador(int maximoPorJanela, long janelaMillis, int falhasParaBloqueio, 
+				long bloqueioInicialMillis, long bloqueioMaximoMillis, int capacidade, int quantidadeFaixas) {
+			this.maximoPorJanela = maximoPorJanela;
+			this.janelaMillis = janelaMillis;
+			this.falhasParaBloqueio = falhasParaBloqueio;
+			this.bloqueioInicialMillis = bloqueioInicialMillis;
+			this.bloqueioMaximoMillis = bloqueioMaximoMillis;
+			
+			int tamanho = Integer.highestOneBit(Math.max(1, quantidadeFaixas - 1)) << 1;
+			this.faixas = new Faixa[tamanho];
+			this.mascara = tamanho - 1;
+			int capacidadePorFaixa = Math.max(1, capacidade / tamanho);
+			for (int i = 0; i < tamanho; i++) {
+				faixas[i] = new Faixa(capacidadePorFaixa);
+			}
+		}
+		
+		/**
+		 * Conta a tentativa e devolve quantos milissegundos faltam para a chave ser liberada,
+		 * ou zero quando a tentativa pode seguir.
+		 */
+		long tentar(String chave, long agora) {
+			if(chave == null) {
+				return 0;
+			}
+			
+			Faixa faixa = faixa(chave);
+			faixa.lock.lock();
+			try {
+				Registro registro = faixa.registros.get(chave);
+				if(registro == null) {
+					registro = new Registro();
+					registro.inicioJanela = agora;
+					faixa.registros.put(chave, registro);
+				}
+				
+				registro.ultimoAcesso = agora;
+				if(registro.bloqueadoAte > agora) {
+					return registro.bloqueadoAte - agora;
+				}
+				
+				avancarJanela(registro, agora);
+				if(estimar(registro.tentativasJanelaAnterior, registro.tentativasJanelaAtual, registro, agora) >= maximoPorJanela) {
+					return Math.max(1, janelaMillis - (agora - registro.inicioJanela));
+				}
+				
+				registro.tentativasJanelaAtual++;
+				return 0;
+			}finally {
+				faixa.lock.unlock();
+			}
+		}
+		
+		void falhou(String chave, long agora) {
+			if(chave == null) {
+				return;
+			}
+			
+			Faixa faixa = faixa(chave);
+			faixa.lock.lock();
+			try {
+				Registro registro = faixa.registros.get(chave);
+				if(registro == null) {
+					return;
+				}
+				
+				avancarJanela(registro, agora);
+				registro.falhasJanelaAtual++;
+				registro.ultimoAcesso = agora;
+				int excedente = (int) estimar(registro.falhasJanelaAnterior, registro.falhasJanelaAtual, registro, agora) 
+						- falhasParaBloqueio;
+				if(excedente >= 0) {
+					long bloqueio = bloqueioInicialMillis << Math.min(excedente, 20);
+					registro.bloqueadoAte = agora + Math.min(bloqueio, bloqueioMaximoMillis);
+				}
+			}finally {
+				faixa.lock.unlock();
+			}
+		}
+		
+		void liberar(String chave) {
+			if(chave == null) {
+				return;
+			}
+			
+			Faixa faixa = faixa(chave);
+			faixa.lock.lock();
+			try {
+				Registro registro = faixa.registros.get(chave);
+				if(registro != null) {
+					registro.falhasJanelaAtual = 0;
+					registro.falhasJanelaAnterior = 0;
+					registro.bloqueadoAte = 0;
+				}
+			}finally {
+				faixa.lock.unlock();
+			}
+		}
+		
+		void descontarFalha(String chave) {
+			if(chave == null) {
+				return;
+			}
+			
+			Faixa faixa = faixa(chave);
+			faixa.lock.lock();
+			try {
+				Registro registro = faixa.registros.get(chave);
+				if(registro == null) {
+					return;
+				}
+				if(registro.falhasJanelaAtual > 0) {
+					registro.falhasJanelaAtual--;
+				}else if(registro.falhasJanelaAnterior > 0) {
+					registro.falhasJanelaAnterior--;
+				}
+			}finally {
+				faixa.lock.unlock();
+			}
+		}
+		
+		void removerOciosas(long agora) {
+			long limite = agora - 2 * janelaMillis;
+			for (Faixa faixa : faixas) {
+				faixa.lock.lock();
+				try {
+					Iterator<Registro> iterator = faixa.registros.values().iterator();
+					while(iterator.hasNext()) {
+						Registro registro = iterator.next();
+						if(registro.ultimoAcesso > limite) {
+							break;
+						}
+						if(registro.bloqueadoAte <= agora) {
+							iterator.remove();
+						}
+					}
+				}finally {
+					faixa.lock.unlock();
+				}
+			}
+		}
+		
+		private void avancarJanela(Registro registro, long agora) {
+			long decorrido = agora - registro.inicioJanela;
+			if(decorrido < janelaMillis) {
+				return;
+			}
+			
+			if(decorrido < 2 * janelaMillis) {
+				registro.tentativasJanelaAnterior = registro.tentativasJanelaAtual;
+				registro.falhasJanelaAnterior = registro.falhasJanelaAtual;
+				registro.inicioJanela += janelaMillis;
+			}else {
+				registro.tentativasJanelaAnterior = 0;
+				registro.falhasJanelaAnterior = 0;
+				registro.inicioJanela = agora;
+			}
+			registro.tentativasJanelaAtual = 0;
+			registro.falhasJanelaAtual = 0;
+		}
+		
+		/**
+		 * Contagem na janela deslizante: a janela anterior pesa o quanto dela ainda cabe nos últimos {@code janelaMillis}.
+		 */
+		private double estimar(int anterior, int atual, Registro registro, long agora) {
+			long decorrido = agora - registro.inicioJanela;
+			return anterior * ((double) (janelaMillis - decorrido) / janelaMillis) + atual;
+		}
+		
+		private Faixa faixa(String chave) {
+			int hash = chave.hashCode();
+			return faixas[(hash ^ (hash >>> 16)) & mascara];
+		}
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.rafaguido.desafioeteg.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.rafaguido.desafioeteg.model.entity.TokenRenovacao;
+import com.rafaguido.desafioeteg.model.entity.Usuario;
+import com.rafaguido.desafioeteg.model.repository.TokenRenovacaoRepository;
+import com.rafaguido.desafioeteg.service.TokenRenovacaoService;
+
+/**
+ * Tokens de renovação opacos: o cliente recebe um valor aleatório e a base guarda só o SHA-256 dele,
+ * que é a chave primária da tabela. Cada token só pode ser usado uma vez e é trocado por um novo,
+ * com o prazo contado outra vez a partir da troca.
+ */
+@Service
+public class TokenRenovacaoServiceImpl implements TokenRenovacaoService {
+	
+	private final SecureRandom random = new SecureRandom();
+	
+	private final TokenRenovacaoRepository repository;
+	private final TransactionTemplate transactionTemplate;
+	private final long expiracaoMinutos;
+	private final int tamanhoLoteLimpeza;
+
+	public TokenRenovacaoServiceImpl(
+			TokenRenovacaoRepository repository,
+			PlatformTransactionManager transactionManager,
+			@Value("${jwt.renovacao.expiracao-minutos:10080}") long expiracaoMinutos,
+			@Value("${jwt.renovacao.lote-limpeza:500}") int tamanhoLoteLimpeza) {
+		this.repository = repository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.expiracaoMinutos = expiracaoMinutos;
+		this.tamanhoLoteLimpeza = tamanhoLoteLimpeza;
+	}
+
+	@Override
+	@Transactional
+	public String gerar(Usuario usuario) {
+		byte[] bytes = new byte[32];
+		random.nextBytes(bytes);
+		String tokenRenovacao = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+		
+		TokenRenovacao registro = TokenRenovacao.builder()
+				.hash(resumo(tokenRenovacao))
+				.idUsuario(usuario.getId())
+				.dataExpiracao(LocalDateTime.now().plusMinutes(expiracaoMinutos))
+				.build();
+		repository.save(registro);
+		
+		return tokenRenovacao;
+	}
+
+	@Override
+	@Transactional
+	public Optional<Long> consumir(String tokenRenovacao) {
+		if(tokenRenovacao == null || tokenRenovacao.isEmpty()) {
+			return Optional.empty();
+		}
+		
+		String hash = resumo(tokenRenovacao);
+		Optional<TokenRenovacao> registro = repository.findById(hash);
+		if(!registro.isPresent()) {
+			return Optional.empty();
+		}
+		
+		int consumidos = repository.consumir(hash, LocalDateTime.now());
+		if(consumidos == 0) {
+			return Optional.empty();
+		}
+		
+		return Optional.of(registro.get().getIdUsuario());
+	}
+
+	@Override
+	@Scheduled(fixedDelayString = "${jwt.renovacao.limpeza-ms:300000}")
+	public void removerExpirados() {
+		LocalDateTime agora = LocalDateTime.now();
+		PageRequest lote = PageRequest.of(0, tamanhoLoteLimpeza);
+		
+		List<String> hashes;
+		do {
+			hashes = repository.obterHashesExpirados(agora, lote);
+			if(!hashes.isEmpty()) {
+				List<String> hashesDoLote = hashes;
+				transactionTemplate.execute( status -> repository.excluirPorHashes(hashesDoLote) );
+			}
+		} while(hashes.size() == tamanhoLoteLimpeza);
+	}
+	
+	private static String resumo(String tokenRenovacao) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = digest.digest(tokenRenovacao.getBytes(StandardCharsets.US_ASCII));
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,144 @@
+package com.rafaguido.desafioeteg.service.impl;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.rafaguido.desafioeteg.model.entity.Usuario;
+import com.rafaguido.desafioeteg.model.repository.UsuarioRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Cache de usuários na frente do {@link UsuarioRepository}, indexado por id e por email.
+ * As entradas expiram por tempo e por tamanho, e são atualizadas sempre que um usuário é salvo.
+ */
+@Component
+public class UsuarioCache {
+
+	private final UsuarioRepository repository;
+	private final Cache<Long, Usuario> porId;
+	private final Cache<String, Usuario> porEmail;
+
+	public UsuarioCache(
+			UsuarioRepository repository,
+			MeterRegistry meterRegistry,
+			@Value("${usuario.cache.tamanho-maximo:10000}") long tamanhoMaximo,
+			@Value("${usuario.cache.expiracao-minutos:10}") long expiracaoMinutos) {
+		this.repository = repository;
+		this.porId = criarCache(tamanhoMaximo, expiracaoMinutos);
+		this.porEmail = criarCache(tamanhoMaximo, expiracaoMinutos);
+
+		CaffeineCacheMetrics.monitor(meterRegistry, porId, "usuario.id");
+		CaffeineCacheMetrics.monitor(meterRegistry, porEmail, "usuario.email");
+		Gauge.builder("usuario.cache.taxa-acerto", this, UsuarioCache::taxaDeAcerto)
+			.description("Proporção de consultas de usuário atendidas pelo cache")
+			.register(meterRegistry);
+	}
+
+	private static <K> Cache<K, Usuario> criarCache(long tamanhoMaximo, long expiracaoMinutos) {
+		return Caffeine.newBuilder()
+				.maximumSize(tamanhoMaximo)
+				.expireAfterWrite(expiracaoMinutos, TimeUnit.MINUTES)
+				.recordStats()
+				.build();
+	}
+
+	public Optional<Usuario> obterPorId(Long id) {
+		if(id == null) {
+			return Optional.empty();
+		}
+
+		Usuario usuario = porId.get(id, chave -> {
+			Usuario encontrado = repository.findById(chave).orElse(null);
+			if(encontrado != null && encontrado.getEmail() != null) {
+				porEmail.put(encontrado.getEmail(), encontrado);
+			}
+			return encontrado;
+		});
+
+		return Optional.ofNullable(usuario).map(UsuarioCache::copiar);
+	}
+
+	public Optional<Usuario> obterPorEmail(String email) {
+		if(email == null) {
+			return Optional.empty();
+		}
+
+		Usuario usuario = porEmail.get(email, chave -> {
+			Usuario encontrado = repository.findByEmail(chave).orElse(null);
+			if(encontrado != null) {
+				porId.put(encontrado.getId(), encontrado);
+			}
+			return encontrado;
+		});
+
+		return Optional.ofNullable(usuario).map(UsuarioCache::copiar);
+	}
+
+	/**
+	 * Dentro de uma transação, o usuário só volta para o cache depois do commit;
+	 * até lá as entradas antigas ficam invalidadas.
+	 */
+	public void atualizar(Usuario usuario) {
+		invalidar(usuario);
+		Usuario copia = copiar(usuario);
+		
+		if(TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronization aposCommit = new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					armazenar(copia);
+				}
+			};
+			TransactionSynchronizationManager.registerSynchronization(aposCommit);
+		}else {
+			armazenar(copia);
+		}
+	}
+	
+	private void armazenar(Usuario copia) {
+		porId.put(copia.getId(), copia);
+		if(copia.getEmail() != null) {
+			porEmail.put(copia.getEmail(), copia);
+		}
+	}
+
+	public void invalidar(Usuario usuario) {
+		if(usuario.getId() != null) {
+			Usuario anterior = porId.getIfPresent(usuario.getId());
+			if(anterior != null && anterior.getEmail() != null) {
+				porEmail.invalidate(anterior.getEmail());
+			}
+			porId.invalidate(usuario.getId());
+		}
+		if(usuario.getEmail() != null) {
+			porEmail.invalidate(usuario.getEmail());
+		}
+	}
+
+	private double taxaDeAcerto() {
+		CacheStats stats = porId.stats().plus(porEmail.stats());
+		return stats.hitRate();
+	}
+
+	private static Usuario copiar(Usuario usuario) {
+		return Usuario.builder()
+				.id(usuario.getId())
+				.nome(usuario.getNome())
+				.email(usuario.getEmail())
+				.senha(usuario.getSenha())
+				.build();
+	}
+
+}
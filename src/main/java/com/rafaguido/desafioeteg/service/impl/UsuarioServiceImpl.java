@@ -1,59 +1,301 @@
 package com.rafaguido.desafioeteg.service.impl;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
-import org.springframework.security.crypto.password.PasswordEncoder;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.rafaguido.desafioeteg.api.dto.ResultadoImportacaoDTO;
+import com.rafaguido.desafioeteg.api.dto.ResultadoImportacaoDTO.ErroImportacaoDTO;
+import com.rafaguido.desafioeteg.api.dto.UsuarioDTO;
 import com.rafaguido.desafioeteg.exception.ErroAutenticacao;
 import com.rafaguido.desafioeteg.exception.RegraNegocioException;
+import com.rafaguido.desafioeteg.exception.ServicoSobrecarregadoException;
 import com.rafaguido.desafioeteg.model.entity.Usuario;
 import com.rafaguido.desafioeteg.model.repository.UsuarioRepository;
+import com.rafaguido.desafioeteg.service.SenhaService;
 import com.rafaguido.desafioeteg.service.UsuarioService;
 
 @Service
 public class UsuarioServiceImpl implements UsuarioService {
 	
+	private static final String MENSAGEM_EMAIL_CADASTRADO = "Já existe um usuário cadastrado com este email.";
+	
 	private UsuarioRepository repository;
-	private PasswordEncoder encoder;
+	private SenhaService senhaService;
+	private UsuarioCache cache;
+	private FiltroEmailUsuario filtroEmail;
+	private TransactionTemplate transactionTemplate;
+	
+	@PersistenceContext
+	private EntityManager entityManager;
+	
+	@Value("${usuario.importacao.tamanho-lote:1000}")
+	private int tamanhoLoteImportacao;
+	
+	@Value("${usuario.importacao.maximo-erros:1000}")
+	private int maximoErrosImportacao;
 	
 	public UsuarioServiceImpl(
 			UsuarioRepository repository, 
-			PasswordEncoder encoder) {
+			SenhaService senhaService,
+			UsuarioCache cache,
+			FiltroEmailUsuario filtroEmail,
+			PlatformTransactionManager transactionManager) {
 		super();
 		this.repository = repository;
-		this.encoder = encoder;
+		this.senhaService = senhaService;
+		this.cache = cache;
+		this.filtroEmail = filtroEmail;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
 	}
 
 	@Override
 	public Usuario autenticar(String email, String senha) {
-		Optional<Usuario> usuario = repository.findByEmail(email);
+		Optional<Usuario> usuario = cache.obterPorEmail(normalizarEmail(email));
 		
 		if(!usuario.isPresent()) {
 			throw new ErroAutenticacao("Usuário não encontrado para o email informado.");
 		}
 		
-		boolean senhasBatem = encoder.matches(senha, usuario.get().getSenha());
+		boolean senhasBatem = senhaService.confere(senha, usuario.get().getSenha());
 		
 		if(!senhasBatem) {
 			throw new ErroAutenticacao("Senha inválida.");
 		}
+		
+		if(senhaService.precisaCriptografarNovamente(usuario.get().getSenha())) {
+			criptografarNovamente(usuario.get(), senha);
+		}
 
 		return usuario.get();
 	}
+	
+	private void criptografarNovamente(Usuario usuario, String senha) {
+		try {
+			usuario.setSenha(senhaService.criptografar(senha));
+			cache.atualizar(repository.save(usuario));
+		}catch (ServicoSobrecarregadoException e) {
+			// fica para o próximo login
+		}
+	}
 
+	/**
+	 * O índice único de email é quem barra cadastros repetidos, inclusive concorrentes. A consulta prévia 
+	 * só acontece quando o filtro de emails não descarta o email, para falhar antes de criptografar a senha.
+	 */
 	@Override
 	@Transactional
 	public Usuario salvarUsuario(Usuario usuario) {
-		validarEmail(usuario.getEmail());
+		usuario.setEmail(normalizarEmail(usuario.getEmail()));
+		if(filtroEmail.podeExistir(usuario.getEmail())) {
+			validarEmail(usuario.getEmail());
+		}
 		criptografarSenha(usuario);
-		return repository.save(usuario);
+		
+		Usuario usuarioSalvo;
+		try {
+			usuarioSalvo = repository.saveAndFlush(usuario);
+		}catch (DataIntegrityViolationException e) {
+			throw traduzirViolacao(e);
+		}
+		
+		filtroEmail.adicionar(usuarioSalvo.getEmail());
+		cache.atualizar(usuarioSalvo);
+		return usuarioSalvo;
+	}
+	
+	private static RuntimeException traduzirViolacao(DataIntegrityViolationException e) {
+		String mensagem = String.valueOf(e.getMostSpecificCause().getMessage()).toLowerCase();
+		if(mensagem.contains("uk_usuario_email")) {
+			return new RegraNegocioException(MENSAGEM_EMAIL_CADASTRADO);
+		}
+		return e;
+	}
+	
+	/**
+	 * Lê em blocos de {@code usuario.importacao.tamanho-lote} linhas. Emails repetidos na própria importação 
+	 * são descartados em memória e os já cadastrados numa única consulta por bloco; as senhas do bloco são 
+	 * criptografadas em paralelo e os usuários gravados em lotes JDBC. Os importados não entram no cache.
+	 */
+	@Override
+	public ResultadoImportacaoDTO importar(Iterator<UsuarioDTO> linhas, Function<UsuarioDTO, Usuario> conversor) {
+		ResultadoImportacaoDTO resultado = new ResultadoImportacaoDTO();
+		Set<String> emailsLidos = new HashSet<>();
+		List<Usuario> lote = new ArrayList<>();
+		List<Long> linhasDoLote = new ArrayList<>();
+		long linha = 0;
+		
+		while(true) {
+			UsuarioDTO dto;
+			try {
+				if(!linhas.hasNext()) {
+					break;
+				}
+				dto = linhas.next();
+			}catch (RuntimeException e) {
+				rejeitar(resultado, linha + 1, "Conteúdo inválido, importação interrompida: " + e.getMessage());
+				resultado.setInterrompida(true);
+				break;
+			}
+			
+			linha++;
+			resultado.setLidas(linha);
+			try {
+				Usuario usuario = conversor.apply(dto);
+				usuario.setId(null);
+				usuario.setEmail(normalizarEmail(usuario.getEmail()));
+				validarImportacao(usuario);
+				if(!emailsLidos.add(usuario.getEmail())) {
+					throw new RegraNegocioException("Email repetido na importação.");
+				}
+				lote.add(usuario);
+				linhasDoLote.add(linha);
+			}catch (RegraNegocioException e) {
+				rejeitar(resultado, linha, e.getMessage());
+			}
+			
+			if(lote.size() >= tamanhoLoteImportacao) {
+				importarLote(lote, linhasDoLote, resultado);
+			}
+		}
+		
+		if(!lote.isEmpty()) {
+			importarLote(lote, linhasDoLote, resultado);
+		}
+		
+		return resultado;
+	}
+	
+	private static void validarImportacao(Usuario usuario) {
+		if(usuario.getEmail() == null || usuario.getEmail().isEmpty()) {
+			throw new RegraNegocioException("Informe um email válido.");
+		}
+		if(usuario.getSenha() == null || usuario.getSenha().isEmpty()) {
+			throw new RegraNegocioException("Informe uma senha.");
+		}
+	}
+	
+	private void importarLote(List<Usuario> lote, List<Long> linhasDoLote, ResultadoImportacaoDTO resultado) {
+		descartarCadastrados(lote, linhasDoLote, resultado);
+		if(!lote.isEmpty()) {
+			criptografarSenhas(lote);
+			gravarLote(lote, linhasDoLote, resultado);
+		}
+		lote.clear();
+		linhasDoLote.clear();
+	}
+	
+	/**
+	 * Só consulta os emails que o filtro não descarta; num bloco de emails novos não há consulta nenhuma.
+	 */
+	private void descartarCadastrados(List<Usuario> lote, List<Long> linhasDoLote, ResultadoImportacaoDTO resultado) {
+		List<String> candidatos = lote.stream()
+				.map(Usuario::getEmail)
+				.filter(filtroEmail::podeExistir)
+				.collect(Collectors.toList());
+		if(candidatos.isEmpty()) {
+			return;
+		}
+		
+		Set<String> cadastrados = new HashSet<>(repository.obterEmailsCadastrados(candidatos));
+		Iterator<Usuario> usuarios = lote.iterator();
+		Iterator<Long> numeros = linhasDoLote.iterator();
+		while(usuarios.hasNext()) {
+			Usuario usuario = usuarios.next();
+			Long numero = numeros.next();
+			if(cadastrados.contains(usuario.getEmail())) {
+				usuarios.remove();
+				numeros.remove();
+				rejeitar(resultado, numero, MENSAGEM_EMAIL_CADASTRADO);
+			}
+		}
+	}
+	
+	private void criptografarSenhas(List<Usuario> lote) {
+		List<String> senhas = lote.stream().map(Usuario::getSenha).collect(Collectors.toList());
+		List<String> criptografadas = senhaService.criptografarEmLote(senhas);
+		for(int i = 0; i < lote.size(); i++) {
+			lote.get(i).setSenha(criptografadas.get(i));
+		}
+	}
+	
+	/**
+	 * Se um cadastro concorrente ganhar a corrida por algum email do lote, o índice único derruba o lote 
+	 * inteiro; aí o bloco é regravado um a um para rejeitar só as linhas em conflito.
+	 */
+	private void gravarLote(List<Usuario> lote, List<Long> linhasDoLote, ResultadoImportacaoDTO resultado) {
+		try {
+			transactionTemplate.execute( status -> {
+				repository.saveAll(lote);
+				repository.flush();
+				entityManager.clear();
+				return null;
+			});
+			lote.forEach( usuario -> registrarImportado(usuario, resultado) );
+		}catch (DataIntegrityViolationException e) {
+			for(int i = 0; i < lote.size(); i++) {
+				gravarUsuario(lote.get(i), linhasDoLote.get(i), resultado);
+			}
+		}catch (DataAccessException | TransactionException e) {
+			String mensagem = "Lote não gravado: " + e.getMostSpecificCause().getMessage();
+			linhasDoLote.forEach( linha -> rejeitar(resultado, linha, mensagem) );
+		}
+	}
+	
+	private void gravarUsuario(Usuario usuario, Long linha, ResultadoImportacaoDTO resultado) {
+		usuario.setId(null);
+		try {
+			transactionTemplate.execute( status -> repository.saveAndFlush(usuario) );
+			registrarImportado(usuario, resultado);
+		}catch (DataIntegrityViolationException e) {
+			RuntimeException erro = traduzirViolacao(e);
+			rejeitar(resultado, linha, erro instanceof RegraNegocioException 
+					? erro.getMessage() 
+					: "Usuário não gravado: " + e.getMostSpecificCause().getMessage());
+		}catch (DataAccessException | TransactionException e) {
+			rejeitar(resultado, linha, "Usuário não gravado: " + e.getMostSpecificCause().getMessage());
+		}
+	}
+	
+	private void registrarImportado(Usuario usuario, ResultadoImportacaoDTO resultado) {
+		filtroEmail.adicionar(usuario.getEmail());
+		resultado.setImportadas(resultado.getImportadas() + 1);
+	}
+	
+	private void rejeitar(ResultadoImportacaoDTO resultado, long linha, String mensagem) {
+		resultado.setRejeitadas(resultado.getRejeitadas() + 1);
+		if(resultado.getErros().size() < maximoErrosImportacao) {
+			resultado.getErros().add(new ErroImportacaoDTO(linha, mensagem));
+		}
+	}
+	
+	static String normalizarEmail(String email) {
+		return email == null ? null : email.trim().toLowerCase();
 	}
 
 	private void criptografarSenha(Usuario usuario) {
 		String senha = usuario.getSenha();
-		String senhaCripto = encoder.encode(senha);
+		String senhaCripto = senhaService.criptografar(senha);
 		usuario.setSenha(senhaCripto);
 	}
 
@@ -61,13 +303,22 @@ public class UsuarioServiceImpl implements UsuarioService {
 	public void validarEmail(String email) {
 		boolean existe = repository.existsByEmail(email);
 		if(existe) {
-			throw new RegraNegocioException("Já existe um usuário cadastrado com este email.");
+			throw new RegraNegocioException(MENSAGEM_EMAIL_CADASTRADO);
 		}
 	}
 
 	@Override
 	public Optional<Usuario> obterPorId(Long id) {
-		return repository.findById(id);
+		return cache.obterPorId(id);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Slice<Long> obterIds(Long cursor, int tamanho) {
+		List<Long> ids = repository.obterIdsAPartirDe(cursor == null ? 0l : cursor, PageRequest.of(0, tamanho + 1));
+		boolean temProxima = ids.size() > tamanho;
+		
+		return new SliceImpl<>(temProxima ? ids.subList(0, tamanho) : ids, PageRequest.of(0, tamanho), temProxima);
 	}
 
-}
\ No newline at end of file
+}
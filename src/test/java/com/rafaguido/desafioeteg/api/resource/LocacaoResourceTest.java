@@ -0,0 +1,163 @@
+package com.rafaguido.desafioeteg.api.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rafaguido.desafioeteg.api.dto.AtualizaStatusDTO;
+import com.rafaguido.desafioeteg.api.dto.LocacaoDTO;
+import com.rafaguido.desafioeteg.api.dto.ResumoMensalDTO;
+import com.rafaguido.desafioeteg.model.entity.Filme;
+import com.rafaguido.desafioeteg.model.entity.HistoricoLocacao;
+import com.rafaguido.desafioeteg.model.entity.Usuario;
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.repository.FilmeRepository;
+import com.rafaguido.desafioeteg.model.repository.HistoricoLocacaoRepository;
+import com.rafaguido.desafioeteg.model.repository.LocacoesAtivasRepository;
+import com.rafaguido.desafioeteg.model.repository.SaldoUsuarioRepository;
+import com.rafaguido.desafioeteg.model.repository.UsuarioRepository;
+import com.rafaguido.desafioeteg.service.ResumoMensalService;
+
+/**
+ * Passa pela pilha inteira (MockMvc, open-session-in-view, H2), onde a entidade alterada pelo resource
+ * é a mesma instância gerenciada que o serviço enxerga.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+@AutoConfigureMockMvc(addFilters = false)
+public class LocacaoResourceTest {
+
+	static final String API = "/api/locacoes";
+	static final MediaType JSON = MediaType.APPLICATION_JSON;
+
+	@Autowired
+	MockMvc mvc;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@Autowired
+	UsuarioRepository usuarioRepository;
+
+	@Autowired
+	FilmeRepository filmeRepository;
+
+	@Autowired
+	LocacoesAtivasRepository locacoesAtivasRepository;
+
+	@Autowired
+	SaldoUsuarioRepository saldoUsuarioRepository;
+
+	@Autowired
+	HistoricoLocacaoRepository historicoLocacaoRepository;
+
+	@Autowired
+	ResumoMensalService resumoMensalService;
+
+	@Test
+	public void deveManterOsDadosDerivadosAoTrocarOStatusPeloEndpoint() throws Exception {
+
+		Usuario usuario = usuarioRepository.save(Usuario.builder().nome("status").email("status@email.com").senha("senha").build());
+		Filme filme = filmeRepository.save(Filme.builder().nome("filme do status").quantidade(5).build());
+
+		LocacaoDTO dto = LocacaoDTO.builder()
+				.filme(filme.getNome()).mes(1).ano(2020).valor(BigDecimal.TEN)
+				.usuario(usuario.getId()).tipo("ALUGUEL").build();
+		MvcResult criada = mvc.perform( MockMvcRequestBuilders.post(API)
+					.contentType(JSON)
+					.content(objectMapper.writeValueAsString(dto)) )
+				.andExpect( MockMvcResultMatchers.status().isCreated() )
+				.andReturn();
+		Long id = objectMapper.readTree(criada.getResponse().getContentAsString()).get("id").asLong();
+
+		assertThat(filmeRepository.findById(filme.getId()).get().getQuantidade()).isEqualTo(4);
+		assertThat(locacoesAtivasRepository.findById(usuario.getId()).get().getQuantidade()).isEqualTo(1);
+
+		atualizarStatus(id, StatusLocacao.EFETIVADO);
+
+		assertThat(saldoUsuarioRepository.findById(usuario.getId()).get().getSaldo()).isEqualByComparingTo("-10");
+
+		atualizarStatus(id, StatusLocacao.CANCELADO);
+
+		assertThat(filmeRepository.findById(filme.getId()).get().getQuantidade()).isEqualTo(5);
+		assertThat(locacoesAtivasRepository.findById(usuario.getId()).get().getQuantidade()).isEqualTo(0);
+		assertThat(saldoUsuarioRepository.findById(usuario.getId()).get().getSaldo()).isEqualByComparingTo("0");
+		List<HistoricoLocacao> historico = historicoLocacaoRepository.findAll();
+		assertThat(historico)
+			.filteredOn( evento -> evento.getIdLocacao().equals(id) )
+			.extracting(HistoricoLocacao::getStatusNovo)
+			.containsExactlyInAnyOrder(StatusLocacao.PENDENTE, StatusLocacao.EFETIVADO, StatusLocacao.CANCELADO);
+		assertThat(resumoMensalService.obterResumoMensal(usuario.getId(), 2020, 1))
+			.filteredOn( resumo -> resumo.getQuantidade() > 0 )
+			.extracting(ResumoMensalDTO::getStatus)
+			.containsExactly(StatusLocacao.CANCELADO.name());
+	}
+
+	@Test
+	public void deveExportarAsMesmasColunasEmCsvENdjson() throws Exception {
+
+		Usuario usuario = usuarioRepository.save(Usuario.builder().nome("exporta").email("exporta@email.com").senha("senha").build());
+		Filme filme = filmeRepository.save(Filme.builder().nome("filme da exportação").quantidade(5).build());
+		LocacaoDTO dto = LocacaoDTO.builder()
+				.filme(filme.getNome()).mes(1).ano(2020).valor(BigDecimal.TEN)
+				.usuario(usuario.getId()).tipo("ALUGUEL").build();
+		mvc.perform( MockMvcRequestBuilders.post(API)
+					.contentType(JSON)
+					.content(objectMapper.writeValueAsString(dto)) )
+				.andExpect( MockMvcResultMatchers.status().isCreated() );
+		
+		String[] csv = exportar(usuario.getId(), "csv").split("\n");
+		JsonNode ndjson = objectMapper.readTree(exportar(usuario.getId(), "ndjson"));
+		
+		List<String> campos = new ArrayList<>();
+		ndjson.fieldNames().forEachRemaining(campos::add);
+		assertThat(csv).hasSize(2);
+		assertThat(csv[0].split(",")).containsExactlyElementsOf(campos);
+		assertThat(campos).contains("versao", "dataPrevistaDevolucao", "renovacoes", "atrasada");
+		assertThat(csv[1].split(",", -1)).hasSameSizeAs(csv[0].split(","));
+	}
+
+	private String exportar(Long idUsuario, String formato) throws Exception {
+		MvcResult resultado = mvc.perform( MockMvcRequestBuilders.get(API.concat("/exportar"))
+					.param("usuario", String.valueOf(idUsuario))
+					.param("formato", formato) )
+				.andExpect( MockMvcResultMatchers.request().asyncStarted() )
+				.andReturn();
+		MockHttpServletResponse resposta = mvc.perform( MockMvcRequestBuilders.asyncDispatch(resultado) )
+				.andExpect( MockMvcResultMatchers.status().isOk() )
+				.andReturn().getResponse();
+		assertThat(resposta.getHeaders(HttpHeaders.VARY)).contains(HttpHeaders.ACCEPT_ENCODING);
+		return resposta.getContentAsString(StandardCharsets.UTF_8);
+	}
+
+	private void atualizarStatus(Long id, StatusLocacao status) throws Exception {
+		AtualizaStatusDTO dto = new AtualizaStatusDTO();
+		dto.setStatus(status.name());
+		mvc.perform( MockMvcRequestBuilders.put(API.concat("/" + id + "/atualiza-status"))
+					.contentType(JSON)
+					.content(objectMapper.writeValueAsString(dto)) )
+				.andExpect( MockMvcResultMatchers.status().isOk() );
+	}
+
+}
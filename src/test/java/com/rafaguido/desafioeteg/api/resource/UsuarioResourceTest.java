@@ -1,6 +1,10 @@
 package com.rafaguido.desafioeteg.api.resource;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
@@ -10,6 +14,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -18,18 +24,26 @@ import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilde
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import com.rafaguido.desafioeteg.api.dto.ResultadoImportacaoDTO;
+import com.rafaguido.desafioeteg.api.dto.TokenRenovacaoDTO;
 import com.rafaguido.desafioeteg.api.dto.UsuarioDTO;
 import com.rafaguido.desafioeteg.exception.ErroAutenticacao;
+import com.rafaguido.desafioeteg.exception.LimiteTentativasException;
 import com.rafaguido.desafioeteg.exception.RegraNegocioException;
+import com.rafaguido.desafioeteg.exception.ServicoSobrecarregadoException;
 import com.rafaguido.desafioeteg.model.entity.Usuario;
 import com.rafaguido.desafioeteg.service.LocacaoService;
+import com.rafaguido.desafioeteg.service.JwtService;
+import com.rafaguido.desafioeteg.service.TentativaLoginService;
+import com.rafaguido.desafioeteg.service.TokenRenovacaoService;
 import com.rafaguido.desafioeteg.service.UsuarioService;
+import com.rafaguido.desafioeteg.service.impl.SecurityUserDetailsService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 @WebMvcTest( controllers = UsuarioResource.class )
-@AutoConfigureMockMvc
+@AutoConfigureMockMvc(addFilters = false)
 public class UsuarioResourceTest {
 	
 	static final String API = "/api/usuarios";
@@ -44,6 +58,18 @@ public class UsuarioResourceTest {
 	@MockBean
 	LocacaoService locacaoService;
 	
+	@MockBean
+	TentativaLoginService tentativaLoginService;
+	
+	@MockBean
+	TokenRenovacaoService tokenRenovacaoService;
+	
+	@MockBean
+	JwtService jwtService;
+	
+	@MockBean
+	SecurityUserDetailsService userDetailsService;
+	
 	@Test
 	public void deveAutenticarUmUsuario() throws Exception {
 		
@@ -51,8 +77,10 @@ public class UsuarioResourceTest {
 		String senha = "123";
 		
 		UsuarioDTO dto = UsuarioDTO.builder().email(email).senha(senha).build();
-		Usuario usuario = Usuario.builder().id(1l).email(email).senha(senha).build();
+		Usuario usuario = Usuario.builder().id(1l).nome("usuario").email(email).senha(senha).build();
 		Mockito.when( service.autenticar(email, senha) ).thenReturn(usuario);
+		Mockito.when( jwtService.gerarToken(usuario) ).thenReturn("jwt");
+		Mockito.when( tokenRenovacaoService.gerar(usuario) ).thenReturn("renovacao");
 		String json = new ObjectMapper().writeValueAsString(dto);
 		
 		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
@@ -65,9 +93,9 @@ public class UsuarioResourceTest {
 		mvc
 			.perform(request)
 			.andExpect( MockMvcResultMatchers.status().isOk()  )
-			.andExpect( MockMvcResultMatchers.jsonPath("id").value(usuario.getId())  )
 			.andExpect( MockMvcResultMatchers.jsonPath("nome").value(usuario.getNome())  )
-			.andExpect( MockMvcResultMatchers.jsonPath("email").value(usuario.getEmail())  )
+			.andExpect( MockMvcResultMatchers.jsonPath("token").value("jwt")  )
+			.andExpect( MockMvcResultMatchers.jsonPath("tokenRenovacao").value("renovacao")  )
 			
 		;
 		
@@ -97,6 +125,101 @@ public class UsuarioResourceTest {
 			
 		;
 		
+		Mockito.verify(tentativaLoginService).registrarFalha(Mockito.eq(email), Mockito.anyString());
+	}
+	
+	@Test
+	public void deveRetornarTooManyRequestsQuandoExcederOLimiteDeTentativas() throws Exception {
+		
+		String email = "usuario@email.com";
+		String senha = "123";
+		
+		UsuarioDTO dto = UsuarioDTO.builder().email(email).senha(senha).build();
+		Mockito.doThrow(new LimiteTentativasException("bloqueado", 30))
+			.when(tentativaLoginService).verificar(Mockito.eq(email), Mockito.anyString());
+		
+		String json = new ObjectMapper().writeValueAsString(dto);
+		
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+													.post( API.concat("/autenticar") )
+													.accept( JSON )
+													.contentType( JSON )
+													.content(json);
+		
+		mvc
+			.perform(request)
+			.andExpect( MockMvcResultMatchers.status().isTooManyRequests() )
+			.andExpect( MockMvcResultMatchers.header().string("Retry-After", "30") );
+		
+		Mockito.verify(service, Mockito.never()).autenticar(Mockito.anyString(), Mockito.anyString());
+	}
+	
+	@Test
+	public void deveRetornarServiceUnavailableQuandoOServicoDeSenhaEstiverSobrecarregado() throws Exception {
+		
+		String email = "usuario@email.com";
+		String senha = "123";
+		
+		UsuarioDTO dto = UsuarioDTO.builder().email(email).senha(senha).build();
+		Mockito.when( service.autenticar(email, senha) ).thenThrow(new ServicoSobrecarregadoException("sobrecarga"));
+		
+		String json = new ObjectMapper().writeValueAsString(dto);
+		
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+													.post( API.concat("/autenticar") )
+													.accept( JSON )
+													.contentType( JSON )
+													.content(json);
+		
+		mvc
+			.perform(request)
+			.andExpect( MockMvcResultMatchers.status().isServiceUnavailable() )
+			.andExpect( MockMvcResultMatchers.header().exists("Retry-After") );
+		
+	}
+	
+	@Test
+	public void deveRenovarOTokenSemSenha() throws Exception {
+		
+		Usuario usuario = Usuario.builder().id(1l).email("usuario@email.com").build();
+		Mockito.when( tokenRenovacaoService.consumir("antigo") ).thenReturn(Optional.of(1l));
+		Mockito.when( service.obterPorId(1l) ).thenReturn(Optional.of(usuario));
+		Mockito.when( jwtService.gerarToken(usuario) ).thenReturn("jwt");
+		Mockito.when( tokenRenovacaoService.gerar(usuario) ).thenReturn("novo");
+		
+		String json = new ObjectMapper().writeValueAsString(new TokenRenovacaoDTO("antigo"));
+		
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+													.post( API.concat("/renovar-token") )
+													.accept( JSON )
+													.contentType( JSON )
+													.content(json);
+		
+		mvc
+			.perform(request)
+			.andExpect( MockMvcResultMatchers.status().isOk() )
+			.andExpect( MockMvcResultMatchers.jsonPath("token").value("jwt") )
+			.andExpect( MockMvcResultMatchers.jsonPath("tokenRenovacao").value("novo") );
+		
+		Mockito.verify(service, Mockito.never()).autenticar(Mockito.anyString(), Mockito.anyString());
+	}
+	
+	@Test
+	public void deveRetornarBadRequestAoRenovarComTokenInvalido() throws Exception {
+		
+		Mockito.when( tokenRenovacaoService.consumir("invalido") ).thenReturn(Optional.empty());
+		
+		String json = new ObjectMapper().writeValueAsString(new TokenRenovacaoDTO("invalido"));
+		
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+													.post( API.concat("/renovar-token") )
+													.accept( JSON )
+													.contentType( JSON )
+													.content(json);
+		
+		mvc
+			.perform(request)
+			.andExpect( MockMvcResultMatchers.status().isBadRequest() );
 	}
 	
 	@Test
@@ -191,4 +314,102 @@ public class UsuarioResourceTest {
 		
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void deveObterOsSaldosDosUsuariosInformados() throws Exception {
+		
+		Map<Long, BigDecimal> saldos = new LinkedHashMap<>();
+		saldos.put(1l, BigDecimal.valueOf(10));
+		saldos.put(2l, BigDecimal.valueOf(-5));
+		Mockito.when(locacaoService.obterSaldosPorUsuarios(Arrays.asList(1l, 2l))).thenReturn(saldos);
+		
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+													.get( API.concat("/saldos?ids=1,2")  )
+													.accept( JSON );
+		mvc
+			.perform(request)
+			.andExpect( MockMvcResultMatchers.status().isOk() )
+			.andExpect( MockMvcResultMatchers.jsonPath("$[0].usuario").value(1) )
+			.andExpect( MockMvcResultMatchers.jsonPath("$[1].saldo").value(-5) );
+		
+	}
+	
+	@Test
+	public void deveObterOsSaldosDeUmaPaginaDeUsuarios() throws Exception {
+		
+		Mockito.when(service.obterIds(null, 2))
+			.thenReturn(new SliceImpl<>(Arrays.asList(1l, 2l), PageRequest.of(0, 2), true));
+		Map<Long, BigDecimal> saldos = new LinkedHashMap<>();
+		saldos.put(1l, BigDecimal.valueOf(10));
+		saldos.put(2l, BigDecimal.ZERO);
+		Mockito.when(locacaoService.obterSaldosPorUsuarios(Arrays.asList(1l, 2l))).thenReturn(saldos);
+		
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+													.get( API.concat("/saldos?tamanho=2")  )
+													.accept( JSON );
+		mvc
+			.perform(request)
+			.andExpect( MockMvcResultMatchers.status().isOk() )
+			.andExpect( MockMvcResultMatchers.jsonPath("$.conteudo.length()").value(2) )
+			.andExpect( MockMvcResultMatchers.jsonPath("$.proximoCursor").value(2) );
+		
+	}
+	
+	@Test
+	public void deveRetornarBadRequestQuandoPedirSaldosDeUsuariosDemais() throws Exception {
+		
+		Mockito.when(locacaoService.obterSaldosPorUsuarios(Mockito.anyCollection()))
+			.thenThrow(new RegraNegocioException("Informe no máximo 1000 usuários por consulta."));
+		
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+													.get( API.concat("/saldos?ids=1,2")  )
+													.accept( JSON );
+		mvc
+			.perform(request)
+			.andExpect( MockMvcResultMatchers.status().isBadRequest() );
+		
+	}
+
+	@Test
+	public void deveRetornarBadRequestQuandoOTamanhoDaPaginaDeSaldosPassarDoMaximo() throws Exception {
+		
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+													.get( API.concat("/saldos?tamanho=" + Integer.MAX_VALUE)  )
+													.accept( JSON );
+		mvc
+			.perform(request)
+			.andExpect( MockMvcResultMatchers.status().isBadRequest() );
+		
+		Mockito.verify(service, Mockito.never()).obterIds(Mockito.any(), Mockito.anyInt());
+	}
+
+	@Test
+	public void deveImportarUsuariosEmNdjson() throws Exception {
+		
+		Mockito.when(service.importar(Mockito.any(), Mockito.any()))
+			.thenAnswer( invocacao -> {
+				Iterator<UsuarioDTO> linhas = invocacao.getArgument(0);
+				ResultadoImportacaoDTO resultado = new ResultadoImportacaoDTO();
+				while(linhas.hasNext()) {
+					linhas.next();
+					resultado.setLidas(resultado.getLidas() + 1);
+				}
+				resultado.setImportadas(resultado.getLidas());
+				return resultado;
+			});
+		
+		String ndjson = "{\"email\":\"um@email.com\",\"senha\":\"1\"}\n{\"email\":\"dois@email.com\",\"senha\":\"2\"}\n";
+		
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+													.post( API.concat("/importar") )
+													.accept( JSON )
+													.contentType( MediaType.parseMediaType("application/x-ndjson") )
+													.content(ndjson);
+		mvc
+			.perform(request)
+			.andExpect( MockMvcResultMatchers.status().isOk() )
+			.andExpect( MockMvcResultMatchers.jsonPath("lidas").value(2) )
+			.andExpect( MockMvcResultMatchers.jsonPath("importadas").value(2) );
+		
+	}
+
+}
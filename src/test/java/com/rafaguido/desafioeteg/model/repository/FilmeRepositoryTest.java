@@ -0,0 +1,63 @@
+package com.rafaguido.desafioeteg.model.repository;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.rafaguido.desafioeteg.model.entity.Filme;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+public class FilmeRepositoryTest {
+	
+	@Autowired
+	FilmeRepository repository;
+	
+	@Autowired
+	TestEntityManager entityManager;
+	
+	@Test
+	public void deveReservarAteEsgotarOEstoqueSemFicarNegativo() {
+		
+		Filme filme = entityManager.persist(criarFilme(2));
+		
+		Assertions.assertThat(repository.reservar("filme", 1)).isEqualTo(1);
+		Assertions.assertThat(repository.reservar("filme", 2)).isEqualTo(0);
+		Assertions.assertThat(repository.reservar("filme", 1)).isEqualTo(1);
+		Assertions.assertThat(repository.reservar("filme", 1)).isEqualTo(0);
+		
+		entityManager.clear();
+		Assertions.assertThat(entityManager.find(Filme.class, filme.getId()).getQuantidade()).isEqualTo(0);
+	}
+	
+	@Test
+	public void deveLiberarCopiasIgnorandoMaiusculas() {
+		
+		Filme filme = entityManager.persist(criarFilme(0));
+		
+		repository.liberar("filme", 3);
+		
+		entityManager.clear();
+		Assertions.assertThat(entityManager.find(Filme.class, filme.getId()).getQuantidade()).isEqualTo(3);
+		Assertions.assertThat(repository.existsByNome("filme")).isTrue();
+	}
+	
+	public static Filme criarFilme(int quantidade) {
+		return Filme.builder()
+				.nome("Filme")
+				.genero("Drama")
+				.diretor("Diretor")
+				.quantidade(quantidade)
+				.build();
+	}
+
+}
@@ -7,15 +7,23 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import com.rafaguido.desafioeteg.model.entity.Locacao;
+import com.rafaguido.desafioeteg.model.entity.LocacoesAtivas;
+import com.rafaguido.desafioeteg.model.entity.Usuario;
 import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
 import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.*;
@@ -80,6 +88,185 @@ public class LocacaoRepositoryTest {
 		assertThat(locacaoEncontrado.isPresent()).isTrue();
 	}
 
+	@Test
+	public void deveBuscarLocacoesPaginandoPorCursor() {
+		Locacao primeira = criarEPersistirUmaLocacao();
+		Locacao segunda = criarEPersistirUmaLocacao();
+		Locacao terceira = criarEPersistirUmaLocacao();
+		
+		Locacao filtro = new Locacao();
+		filtro.setFilme("QUALQUER");
+		PageRequest pageable = PageRequest.of(0, 2, Sort.by("id"));
+		
+		Slice<LocacaoListada> pagina = repository.buscarPagina(filtro, null, pageable);
+		
+		assertThat(pagina.getContent()).extracting(LocacaoListada::getId).containsExactly(primeira.getId(), segunda.getId());
+		assertThat(pagina.hasNext()).isTrue();
+		
+		Slice<LocacaoListada> proxima = repository.buscarPagina(filtro, segunda.getId(), pageable);
+		
+		assertThat(proxima.getContent()).extracting(LocacaoListada::getId).containsExactly(terceira.getId());
+		assertThat(proxima.hasNext()).isFalse();
+	}
+	
+	@Test
+	public void deveTratarCaracteresCuringaDoFiltroDeFilmeComoTexto() {
+		criarEPersistirUmaLocacao();
+		
+		Locacao filtro = new Locacao();
+		filtro.setFilme("%");
+		
+		Slice<LocacaoListada> pagina = repository.buscarPagina(filtro, null, PageRequest.of(0, 10, Sort.by("id")));
+		
+		assertThat(pagina.getContent()).isEmpty();
+	}
+
+	@Test
+	public void devePercorrerAsLocacoesDoUsuarioEmOrdem() {
+		Usuario usuario = entityManager.persist(UsuarioRepositoryTest.criarUsuario());
+		Usuario outroUsuario = entityManager.persist(Usuario.builder().nome("outro").email("outro@email.com").senha("senha").build());
+		
+		Locacao primeira = criarLocacao();
+		primeira.setUsuario(usuario);
+		entityManager.persist(primeira);
+		Locacao deOutroUsuario = criarLocacao();
+		deOutroUsuario.setUsuario(outroUsuario);
+		entityManager.persist(deOutroUsuario);
+		Locacao segunda = criarLocacao();
+		segunda.setUsuario(usuario);
+		entityManager.persist(segunda);
+		
+		List<LocacaoListada> locacoes = new ArrayList<>();
+		repository.percorrerPorUsuario(usuario.getId(), 1, locacoes::add);
+		
+		assertThat(locacoes).extracting(LocacaoListada::getId).containsExactly(primeira.getId(), segunda.getId());
+		assertThat(locacoes).extracting(LocacaoListada::getIdUsuario).containsOnly(usuario.getId());
+		assertThat(locacoes.get(0).getTipo()).isEqualTo(TipoLocacao.ALUGUEL);
+	}
+
+	@Test
+	public void deveCalcularOSaldoDeVariosUsuariosNumaUnicaConsulta() {
+		Usuario usuario = entityManager.persist(UsuarioRepositoryTest.criarUsuario());
+		
+		Locacao aluguel = criarLocacao();
+		aluguel.setUsuario(usuario);
+		aluguel.setStatus(StatusLocacao.EFETIVADO);
+		entityManager.persist(aluguel);
+		Locacao devolucao = criarLocacao();
+		devolucao.setUsuario(usuario);
+		devolucao.setTipo(TipoLocacao.DEVOLUÇÃO);
+		devolucao.setValor(BigDecimal.valueOf(25));
+		devolucao.setStatus(StatusLocacao.EFETIVADO);
+		entityManager.persist(devolucao);
+		Locacao pendente = criarLocacao();
+		pendente.setUsuario(usuario);
+		entityManager.persist(pendente);
+		
+		List<SaldoPorUsuario> saldos = repository.obterSaldosPorUsuarios(
+				Arrays.asList(usuario.getId()), TipoLocacao.DEVOLUÇÃO, TipoLocacao.ALUGUEL, StatusLocacao.EFETIVADO);
+		
+		assertThat(saldos).hasSize(1);
+		assertThat(saldos.get(0).getIdUsuario()).isEqualTo(usuario.getId());
+		assertThat(saldos.get(0).getSaldo()).isEqualByComparingTo(BigDecimal.valueOf(15));
+	}
+
+	@Test
+	public void deveAtualizarOStatusEmLoteSemCarregarAsEntidades() {
+		Locacao primeira = criarEPersistirUmaLocacao();
+		Locacao segunda = criarEPersistirUmaLocacao();
+		entityManager.flush();
+		entityManager.clear();
+		
+		List<SituacaoLocacao> situacoes = repository.travarSituacoes(Arrays.asList(primeira.getId(), segunda.getId(), -1l));
+		int atualizadas = repository.atualizarStatus(Arrays.asList(primeira.getId(), segunda.getId()), StatusLocacao.EFETIVADO);
+		
+		assertThat(situacoes).extracting(SituacaoLocacao::getStatus).containsOnly(StatusLocacao.PENDENTE);
+		assertThat(situacoes).extracting(SituacaoLocacao::getId).containsExactlyInAnyOrder(primeira.getId(), segunda.getId());
+		assertThat(atualizadas).isEqualTo(2);
+		assertThat(entityManager.find(Locacao.class, primeira.getId()).getStatus()).isEqualTo(StatusLocacao.EFETIVADO);
+	}
+
+	@Test
+	public void deveTrocarOStatusApenasUmaVezQuandoCondicional() {
+		Locacao locacao = criarEPersistirUmaLocacao();
+		Long versao = locacao.getVersao();
+		entityManager.flush();
+		entityManager.clear();
+		
+		int primeira = repository.transicionarStatus(locacao.getId(), StatusLocacao.PENDENTE, StatusLocacao.EFETIVADO);
+		int segunda = repository.transicionarStatus(locacao.getId(), StatusLocacao.PENDENTE, StatusLocacao.CANCELADO);
+		
+		assertThat(primeira).isEqualTo(1);
+		assertThat(segunda).isEqualTo(0);
+		Locacao atualizada = entityManager.find(Locacao.class, locacao.getId());
+		assertThat(atualizada.getStatus()).isEqualTo(StatusLocacao.EFETIVADO);
+		assertThat(atualizada.getVersao()).isEqualTo(versao + 1);
+	}
+
+	@Test
+	public void deveRenovarNoMaximoDuasVezesEstendendoOPrazo() {
+		Locacao locacao = criarLocacao();
+		locacao.setRenovacoes(0);
+		locacao.setDataPrevistaDevolucao(LocalDate.of(2020, 1, 10));
+		entityManager.persist(locacao);
+		entityManager.flush();
+		entityManager.clear();
+		
+		int primeira = repository.renovar(locacao.getId(), 0, LocalDate.of(2020, 1, 15), 2, TipoLocacao.ALUGUEL, StatusLocacao.CANCELADO);
+		int concorrente = repository.renovar(locacao.getId(), 0, LocalDate.of(2020, 1, 15), 2, TipoLocacao.ALUGUEL, StatusLocacao.CANCELADO);
+		PrazoLocacao prazo = repository.obterPrazo(locacao.getId()).get();
+		int segunda = repository.renovar(locacao.getId(), prazo.getRenovacoes(), prazo.getDataPrevistaDevolucao().plusDays(5), 2, TipoLocacao.ALUGUEL, StatusLocacao.CANCELADO);
+		int terceira = repository.renovar(locacao.getId(), 2, LocalDate.of(2020, 1, 25), 2, TipoLocacao.ALUGUEL, StatusLocacao.CANCELADO);
+		
+		assertThat(primeira + segunda).isEqualTo(2);
+		assertThat(concorrente).isEqualTo(0);
+		assertThat(terceira).isEqualTo(0);
+		Locacao renovada = entityManager.find(Locacao.class, locacao.getId());
+		assertThat(renovada.getRenovacoes()).isEqualTo(2);
+		assertThat(renovada.getDataPrevistaDevolucao()).isEqualTo(LocalDate.of(2020, 1, 20));
+	}
+
+	@Test
+	public void deveMarcarApenasOsAlugueisVencidosPercorrendoPorPrazo() {
+		LocalDate hoje = LocalDate.of(2020, 3, 1);
+		Usuario usuario = entityManager.persist(UsuarioRepositoryTest.criarUsuario());
+		entityManager.persist(new LocacoesAtivas(usuario.getId(), 2));
+		Usuario devolveuTudo = entityManager.persist(Usuario.builder().nome("outro").email("outro@email.com").senha("senha").build());
+		entityManager.persist(new LocacoesAtivas(devolveuTudo.getId(), 0));
+		Locacao devolvida = criarAluguelComPrazo(devolveuTudo, LocalDate.of(2020, 1, 1), StatusLocacao.EFETIVADO);
+		Locacao vencida = criarAluguelComPrazo(usuario, LocalDate.of(2020, 2, 1), StatusLocacao.EFETIVADO);
+		Locacao vencidaAntes = criarAluguelComPrazo(usuario, LocalDate.of(2020, 1, 1), StatusLocacao.PENDENTE);
+		criarAluguelComPrazo(usuario, LocalDate.of(2020, 1, 1), StatusLocacao.CANCELADO);
+		criarAluguelComPrazo(usuario, LocalDate.of(2020, 3, 1), StatusLocacao.PENDENTE);
+		
+		List<LocacaoVencida> primeiroLote = repository.obterVencidasAPartirDe(
+				TipoLocacao.ALUGUEL, StatusLocacao.CANCELADO, hoje, LocalDate.of(1900, 1, 1), 0l, PageRequest.of(0, 2));
+		LocacaoVencida cursor = primeiroLote.get(1);
+		List<LocacaoVencida> segundoLote = repository.obterVencidasAPartirDe(
+				TipoLocacao.ALUGUEL, StatusLocacao.CANCELADO, hoje, cursor.getDataPrevistaDevolucao(), cursor.getId(), PageRequest.of(0, 2));
+		
+		assertThat(primeiroLote).extracting(LocacaoVencida::getId).containsExactly(devolvida.getId(), vencidaAntes.getId());
+		assertThat(segundoLote).extracting(LocacaoVencida::getId).containsExactly(vencida.getId());
+		
+		List<Long> ids = Arrays.asList(devolvida.getId(), vencidaAntes.getId(), vencida.getId());
+		int devolvidas = repository.marcarDevolvidas(ids, StatusLocacao.CANCELADO, hoje);
+		int marcadas = repository.marcarAtrasadas(ids, StatusLocacao.CANCELADO, hoje);
+		
+		assertThat(devolvidas).isEqualTo(1);
+		assertThat(marcadas).isEqualTo(2);
+		assertThat(repository.obterVencidasAPartirDe(
+				TipoLocacao.ALUGUEL, StatusLocacao.CANCELADO, hoje, LocalDate.of(1900, 1, 1), 0l, PageRequest.of(0, 10))).isEmpty();
+	}
+	
+	private Locacao criarAluguelComPrazo(Usuario usuario, LocalDate prazo, StatusLocacao status) {
+		Locacao locacao = criarLocacao();
+		locacao.setUsuario(usuario);
+		locacao.setStatus(status);
+		locacao.setDataPrevistaDevolucao(prazo);
+		locacao.setAtrasada(false);
+		return entityManager.persist(locacao);
+	}
+
 	private Locacao criarEPersistirUmaLocacao() {
 		Locacao locacao = criarLocacao();
 		entityManager.persist(locacao);
@@ -1,5 +1,7 @@
 package com.rafaguido.desafioeteg.model.repository;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import org.assertj.core.api.Assertions;
@@ -10,6 +12,7 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
@@ -78,6 +81,26 @@ public class UsuarioRepositoryTest {
 		
 	}
 	
+	@Test
+	public void naoDevePermitirDoisUsuariosComOMesmoEmail() {
+		
+		entityManager.persist(criarUsuario());
+		
+		Throwable erro = Assertions.catchThrowable( () -> repository.saveAndFlush(criarUsuario()) );
+		
+		Assertions.assertThat(erro).isInstanceOf(DataIntegrityViolationException.class);
+	}
+	
+	@Test
+	public void deveObterApenasOsEmailsJaCadastrados() {
+		
+		entityManager.persist(criarUsuario());
+		
+		List<String> result = repository.obterEmailsCadastrados(Arrays.asList("usuario@email.com", "novo@email.com"));
+		
+		Assertions.assertThat(result).containsExactly("usuario@email.com");
+	}
+	
 	public static Usuario criarUsuario() {
 		return Usuario
 				.builder()
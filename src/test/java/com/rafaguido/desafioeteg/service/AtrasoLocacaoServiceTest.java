@@ -0,0 +1,82 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+import com.rafaguido.desafioeteg.model.repository.LocacaoRepository;
+import com.rafaguido.desafioeteg.model.repository.LocacaoVencida;
+import com.rafaguido.desafioeteg.service.impl.AtrasoLocacaoServiceImpl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AtrasoLocacaoServiceTest {
+
+	LocacaoRepository repository;
+	SimpleMeterRegistry registry;
+	AtrasoLocacaoServiceImpl service;
+
+	@BeforeEach
+	public void setUp() {
+		repository = Mockito.mock(LocacaoRepository.class);
+		registry = new SimpleMeterRegistry();
+		service = new AtrasoLocacaoServiceImpl(repository, Mockito.mock(PlatformTransactionManager.class), registry, 2, 2);
+	}
+
+	@Test
+	public void deveMarcarOsVencidosEmLotesAvancandoOCursor() {
+
+		LocalDate prazo = LocalDate.of(2020, 1, 1);
+		Mockito.when(repository.obterVencidasAPartirDe(ArgumentMatchers.eq(TipoLocacao.ALUGUEL), ArgumentMatchers.eq(StatusLocacao.CANCELADO), 
+				ArgumentMatchers.any(), ArgumentMatchers.eq(LocalDate.of(1900, 1, 1)), ArgumentMatchers.eq(0l), ArgumentMatchers.any(Pageable.class)))
+			.thenReturn(Arrays.asList(vencida(1l, prazo), vencida(2l, prazo)));
+		Mockito.when(repository.obterVencidasAPartirDe(ArgumentMatchers.eq(TipoLocacao.ALUGUEL), ArgumentMatchers.eq(StatusLocacao.CANCELADO), 
+				ArgumentMatchers.any(), ArgumentMatchers.eq(prazo), ArgumentMatchers.eq(2l), ArgumentMatchers.any(Pageable.class)))
+			.thenReturn(Collections.singletonList(vencida(3l, prazo)));
+		Mockito.when(repository.marcarAtrasadas(ArgumentMatchers.anyCollection(), ArgumentMatchers.eq(StatusLocacao.CANCELADO), ArgumentMatchers.any()))
+			.thenAnswer( invocacao -> ((List<?>) invocacao.getArgument(0)).size() );
+
+		int marcadas = service.marcarAtrasadas();
+
+		Assertions.assertThat(marcadas).isEqualTo(3);
+		Assertions.assertThat(registry.get("locacao.atraso.verificadas").counter().count()).isEqualTo(3);
+		Assertions.assertThat(registry.get("locacao.atraso.marcadas").counter().count()).isEqualTo(3);
+		Assertions.assertThat(registry.get("locacao.atraso.varredura").timer().count()).isEqualTo(1);
+		Mockito.verify(repository, Mockito.times(2)).marcarAtrasadas(ArgumentMatchers.anyCollection(), ArgumentMatchers.any(), ArgumentMatchers.any());		Mockito.verify(repository, Mockito.times(2)).marcarDevolvidas(ArgumentMatchers.anyCollection(), ArgumentMatchers.any(), ArgumentMatchers.any());
+	}
+
+	@Test
+	public void naoDeveMarcarNadaSemAlugueisVencidos() {
+
+		Mockito.when(repository.obterVencidasAPartirDe(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), 
+				ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(Pageable.class)))
+			.thenReturn(Collections.emptyList());
+
+		Assertions.assertThat(service.marcarAtrasadas()).isEqualTo(0);
+		Mockito.verify(repository, Mockito.never()).marcarAtrasadas(ArgumentMatchers.anyCollection(), ArgumentMatchers.any(), ArgumentMatchers.any());
+	}
+	
+	private static LocacaoVencida vencida(Long id, LocalDate prazo) {
+		return new LocacaoVencida() {
+			@Override
+			public Long getId() {
+				return id;
+			}
+			@Override
+			public LocalDate getDataPrevistaDevolucao() {
+				return prazo;
+			}
+		};
+	}
+}
@@ -0,0 +1,141 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Pageable;
+
+import com.rafaguido.desafioeteg.api.dto.ResultadoLoteDTO;
+import com.rafaguido.desafioeteg.exception.RegraNegocioException;
+import com.rafaguido.desafioeteg.model.enums.ResultadoOperacaoLote;
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.repository.LocacaoPendente;
+import com.rafaguido.desafioeteg.model.repository.LocacaoRepository;
+import com.rafaguido.desafioeteg.service.impl.AgendaExpiracaoLocacao;
+import com.rafaguido.desafioeteg.service.impl.ExpiracaoLocacaoServiceImpl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ExpiracaoLocacaoServiceTest {
+
+	AgendaExpiracaoLocacao agenda;
+	LocacaoRepository repository;
+	LocacaoService locacaoService;
+	SimpleMeterRegistry registry;
+	ExpiracaoLocacaoServiceImpl service;
+
+	@BeforeEach
+	public void setUp() {
+		agenda = Mockito.mock(AgendaExpiracaoLocacao.class);
+		repository = Mockito.mock(LocacaoRepository.class);
+		locacaoService = Mockito.mock(LocacaoService.class);
+		registry = new SimpleMeterRegistry();
+		service = new ExpiracaoLocacaoServiceImpl(agenda, repository, locacaoService, registry, 2, 1000);
+	}
+
+	@Test
+	public void deveCancelarAsVencidasEmBlocosApenasSeAindaPendentes() {
+
+		Mockito.when(agenda.vencidas()).thenReturn(Arrays.asList(1l, 2l, 3l));
+		Mockito.when(locacaoService.atualizarStatusEmLote(Arrays.asList(1l, 2l), null, StatusLocacao.PENDENTE, StatusLocacao.CANCELADO))
+			.thenReturn(resultado(ResultadoOperacaoLote.ATUALIZADA, ResultadoOperacaoLote.STATUS_DIVERGENTE));
+		Mockito.when(locacaoService.atualizarStatusEmLote(Collections.singletonList(3l), null, StatusLocacao.PENDENTE, StatusLocacao.CANCELADO))
+			.thenReturn(resultado(ResultadoOperacaoLote.ATUALIZADA));
+
+		int canceladas = service.expirar();
+
+		Assertions.assertThat(canceladas).isEqualTo(2);
+		Assertions.assertThat(registry.get("locacao.expiracao.canceladas").counter().count()).isEqualTo(2);
+	}
+
+	@Test
+	public void deveReagendarOBlocoQueFalhar() {
+
+		Mockito.when(agenda.vencidas()).thenReturn(Arrays.asList(1l, 2l));
+		Mockito.when(locacaoService.atualizarStatusEmLote(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+			.thenThrow(new QueryTimeoutException("timeout"));
+
+		service.expirar();
+
+		Mockito.verify(agenda).reagendar(Arrays.asList(1l, 2l), 1000);
+	}
+
+	@Test
+	public void deveTentarUmaAUmaAsLocacoesDoBlocoRecusadoPelaRegra() {
+
+		Mockito.when(agenda.vencidas()).thenReturn(Arrays.asList(1l, 2l));
+		Mockito.when(locacaoService.atualizarStatusEmLote(Arrays.asList(1l, 2l), null, StatusLocacao.PENDENTE, StatusLocacao.CANCELADO))
+			.thenThrow(new RegraNegocioException("O usuário já possui 5 filmes locados."));
+		Mockito.when(locacaoService.transicionarStatus(1l, StatusLocacao.PENDENTE, StatusLocacao.CANCELADO))
+			.thenReturn(ResultadoOperacaoLote.ATUALIZADA);
+		Mockito.when(locacaoService.transicionarStatus(2l, StatusLocacao.PENDENTE, StatusLocacao.CANCELADO))
+			.thenThrow(new RegraNegocioException("O usuário já possui 5 filmes locados."));
+
+		int canceladas = service.expirar();
+
+		Assertions.assertThat(canceladas).isEqualTo(1);
+		Mockito.verify(agenda, Mockito.never()).reagendar(ArgumentMatchers.any(), ArgumentMatchers.anyLong());
+	}
+
+	@Test
+	public void deveTentarDeNovoSoAsRejeitadasEReagendarAsQueFalharemNaBase() {
+
+		Mockito.when(agenda.vencidas()).thenReturn(Arrays.asList(1l, 2l));
+		Mockito.when(locacaoService.atualizarStatusEmLote(Arrays.asList(1l, 2l), null, StatusLocacao.PENDENTE, StatusLocacao.CANCELADO))
+			.thenReturn(resultado(ResultadoOperacaoLote.ATUALIZADA, ResultadoOperacaoLote.REJEITADA));
+		Mockito.when(locacaoService.transicionarStatus(2l, StatusLocacao.PENDENTE, StatusLocacao.CANCELADO))
+			.thenThrow(new QueryTimeoutException("timeout"));
+
+		int canceladas = service.expirar();
+
+		Assertions.assertThat(canceladas).isEqualTo(1);
+		Mockito.verify(locacaoService, Mockito.never()).transicionarStatus(ArgumentMatchers.eq(1l), ArgumentMatchers.any(), ArgumentMatchers.any());
+		Mockito.verify(agenda).reagendar(Collections.singletonList(2l), 1000);
+	}
+
+	@Test
+	public void deveAgendarAsPendentesDaBasePercorrendoPorCursor() {
+
+		LocalDateTime criacao = LocalDateTime.now();
+		Mockito.when(repository.obterPendentesAPartirDe(ArgumentMatchers.eq(StatusLocacao.PENDENTE), ArgumentMatchers.eq(0l), ArgumentMatchers.any(Pageable.class)))
+			.thenReturn(Arrays.asList(pendente(1l, criacao), pendente(5l, criacao)));
+		Mockito.when(repository.obterPendentesAPartirDe(ArgumentMatchers.eq(StatusLocacao.PENDENTE), ArgumentMatchers.eq(5l), ArgumentMatchers.any(Pageable.class)))
+			.thenReturn(Collections.singletonList(pendente(7l, null)));
+
+		service.carregarPendentes();
+
+		Mockito.verify(agenda).agendar(1l, criacao);
+		Mockito.verify(agenda).agendar(5l, criacao);
+		Mockito.verify(agenda).agendar(7l, (LocalDateTime) null);
+	}
+	
+	private static ResultadoLoteDTO resultado(ResultadoOperacaoLote... resultados) {
+		ResultadoLoteDTO resultado = new ResultadoLoteDTO();
+		long id = 1;
+		for(ResultadoOperacaoLote item : resultados) {
+			resultado.adicionar(id++, item);
+		}
+		return resultado;
+	}
+	
+	private static LocacaoPendente pendente(Long id, LocalDateTime criadoEm) {
+		return new LocacaoPendente() {
+			@Override
+			public Long getId() {
+				return id;
+			}
+			@Override
+			public LocalDateTime getCriadoEm() {
+				return criadoEm;
+			}
+		};
+	}
+}
@@ -0,0 +1,87 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import com.rafaguido.desafioeteg.exception.RegraNegocioException;
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+import com.rafaguido.desafioeteg.model.repository.FilmeRepository;
+import com.rafaguido.desafioeteg.model.repository.SituacaoLocacao;
+import com.rafaguido.desafioeteg.service.impl.FilmeServiceImpl;
+
+public class FilmeServiceTest {
+
+	FilmeRepository repository;
+	FilmeServiceImpl service;
+
+	@BeforeEach
+	public void setUp() {
+		repository = Mockito.mock(FilmeRepository.class);
+		service = new FilmeServiceImpl(repository);
+	}
+
+	@Test
+	public void deveReservarUmaCopiaAoIncluirUmAluguel() {
+
+		Mockito.when(repository.reservar("matrix", 1)).thenReturn(1);
+		
+		service.registrar(Collections.singletonList(
+				new AlteracaoLocacao(null, situacao(" Matrix", TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE))));
+
+		Mockito.verify(repository).reservar("matrix", 1);
+	}
+
+	@Test
+	public void deveRecusarOAluguelQuandoNaoHouverEstoque() {
+
+		Mockito.when(repository.reservar(ArgumentMatchers.anyString(), ArgumentMatchers.anyInt())).thenReturn(0);
+		
+		Throwable erro = Assertions.catchThrowable( () -> service.registrar(Collections.singletonList(
+				new AlteracaoLocacao(null, situacao("Matrix", TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE)))) );
+
+		Assertions.assertThat(erro).isInstanceOf(RegraNegocioException.class);
+	}
+
+	@Test
+	public void deveLiberarACopiaAoCancelarOuDevolver() {
+
+		SituacaoLocacao pendente = situacao("Matrix", TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE);
+		SituacaoLocacao devolucao = situacao("Alien", TipoLocacao.DEVOLUÇÃO, StatusLocacao.PENDENTE);
+		
+		service.registrar(Arrays.asList(
+				new AlteracaoLocacao(pendente, pendente.comStatus(StatusLocacao.CANCELADO)),
+				new AlteracaoLocacao(null, devolucao)));
+
+		Mockito.verify(repository).liberar("matrix", 1);
+		Mockito.verify(repository).liberar("alien", 1);
+		Mockito.verify(repository, Mockito.never()).reservar(ArgumentMatchers.anyString(), ArgumentMatchers.anyInt());
+	}
+
+	@Test
+	public void deveSomarAsVariacoesEAplicarEmOrdemDeNome() {
+
+		Mockito.when(repository.reservar(ArgumentMatchers.anyString(), ArgumentMatchers.anyInt())).thenReturn(1);
+		
+		service.registrar(Arrays.asList(
+				new AlteracaoLocacao(null, situacao("Matrix", TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE)),
+				new AlteracaoLocacao(null, situacao("Alien", TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE)),
+				new AlteracaoLocacao(null, situacao("Matrix", TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE))));
+
+		InOrder ordem = Mockito.inOrder(repository);
+		ordem.verify(repository).reservar("alien", 1);
+		ordem.verify(repository).reservar("matrix", 2);
+	}
+	
+	private static SituacaoLocacao situacao(String filme, TipoLocacao tipo, StatusLocacao status) {
+		return new SituacaoLocacao(1l, 1l, filme, 1, 2020, tipo, status, BigDecimal.TEN);
+	}
+}
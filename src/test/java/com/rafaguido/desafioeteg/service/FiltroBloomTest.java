@@ -0,0 +1,40 @@
+package com.rafaguido.desafioeteg.service;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.rafaguido.desafioeteg.service.impl.FiltroBloom;
+
+public class FiltroBloomTest {
+
+	@Test
+	public void deveReconhecerTodosOsValoresAdicionados() {
+
+		FiltroBloom filtro = new FiltroBloom(1000, 0.01);
+		for(int i = 0; i < 1000; i++) {
+			filtro.adicionar("usuario" + i + "@email.com");
+		}
+
+		for(int i = 0; i < 1000; i++) {
+			Assertions.assertThat(filtro.podeConter("usuario" + i + "@email.com")).isTrue();
+		}
+	}
+
+	@Test
+	public void deveManterOsFalsosPositivosPertoDaTaxaPedida() {
+
+		FiltroBloom filtro = new FiltroBloom(1000, 0.01);
+		for(int i = 0; i < 1000; i++) {
+			filtro.adicionar("usuario" + i + "@email.com");
+		}
+
+		int falsosPositivos = 0;
+		for(int i = 0; i < 10000; i++) {
+			if(filtro.podeConter("outro" + i + "@email.com")) {
+				falsosPositivos++;
+			}
+		}
+		
+		Assertions.assertThat(falsosPositivos).isLessThan(300);
+	}
+}
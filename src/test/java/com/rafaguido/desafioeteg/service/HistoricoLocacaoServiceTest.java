@@ -0,0 +1,112 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.rafaguido.desafioeteg.model.entity.HistoricoLocacao;
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+import com.rafaguido.desafioeteg.model.repository.HistoricoLocacaoRepository;
+import com.rafaguido.desafioeteg.model.repository.SituacaoLocacao;
+import com.rafaguido.desafioeteg.service.impl.HistoricoLocacaoServiceImpl;
+
+public class HistoricoLocacaoServiceTest {
+
+	HistoricoLocacaoRepository repository;
+	HistoricoLocacaoServiceImpl service;
+
+	@BeforeEach
+	public void setUp() {
+		repository = Mockito.mock(HistoricoLocacaoRepository.class);
+		service = new HistoricoLocacaoServiceImpl(repository);
+		ReflectionTestUtils.setField(service, "tamanhoPaginaPadrao", 20);
+		ReflectionTestUtils.setField(service, "tamanhoPaginaMaximo", 100);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void deveRegistrarApenasAsMudancasDeStatus() {
+
+		SituacaoLocacao pendente = situacao(StatusLocacao.PENDENTE);
+		SituacaoLocacao efetivada = situacao(StatusLocacao.EFETIVADO);
+		
+		service.registrar(Arrays.asList(
+				new AlteracaoLocacao(null, pendente),
+				new AlteracaoLocacao(pendente, pendente),
+				new AlteracaoLocacao(pendente, efetivada),
+				new AlteracaoLocacao(efetivada, null)));
+
+		ArgumentCaptor<List<HistoricoLocacao>> captor = ArgumentCaptor.forClass(List.class);
+		Mockito.verify(repository).saveAll(captor.capture());
+		List<HistoricoLocacao> eventos = captor.getValue();
+		
+		Assertions.assertThat(eventos).hasSize(3);
+		Assertions.assertThat(eventos.get(0).getStatusAnterior()).isNull();
+		Assertions.assertThat(eventos.get(0).getStatusNovo()).isEqualTo(StatusLocacao.PENDENTE);
+		Assertions.assertThat(eventos.get(1).getStatusAnterior()).isEqualTo(StatusLocacao.PENDENTE);
+		Assertions.assertThat(eventos.get(1).getStatusNovo()).isEqualTo(StatusLocacao.EFETIVADO);
+		Assertions.assertThat(eventos.get(2).getStatusNovo()).isNull();
+		Assertions.assertThat(eventos).allMatch( e -> e.getIdUsuario().equals(1l) && e.getDataHora() != null );
+	}
+
+	@Test
+	public void naoDeveGravarNadaQuandoOStatusNaoMudar() {
+
+		SituacaoLocacao pendente = situacao(StatusLocacao.PENDENTE);
+		
+		service.registrar(Collections.singletonList(new AlteracaoLocacao(pendente, pendente)));
+
+		Mockito.verify(repository, Mockito.never()).saveAll(ArgumentMatchers.anyIterable());
+	}
+
+	@Test
+	public void deveLimitarOTamanhoDaPaginaEPartirDoFimSemCursor() {
+
+		service.obterPorUsuario(1l, null, 1000);
+
+		ArgumentCaptor<Pageable> captor = ArgumentCaptor.forClass(Pageable.class);
+		Mockito.verify(repository).obterPorUsuario(ArgumentMatchers.eq(1l), ArgumentMatchers.any(), ArgumentMatchers.eq(Long.MAX_VALUE), captor.capture());
+		Mockito.verify(repository, Mockito.never()).obterDataHora(ArgumentMatchers.any());
+		Assertions.assertThat(captor.getValue().getPageSize()).isEqualTo(100);
+	}
+
+	@Test
+	public void deveContinuarAPartirDaDataHoraDoCursor() {
+
+		LocalDateTime dataHora = LocalDateTime.of(2020, 5, 1, 10, 0);
+		Mockito.when(repository.obterDataHora(50l)).thenReturn(Optional.of(dataHora));
+		
+		service.obterPorLocacao(1l, 50l, null);
+
+		Mockito.verify(repository).obterPorLocacao(ArgumentMatchers.eq(1l), ArgumentMatchers.eq(dataHora), ArgumentMatchers.eq(50l), ArgumentMatchers.any());
+	}
+
+	@Test
+	public void deveRetornarUmaPaginaVaziaParaUmCursorDesconhecido() {
+
+		Mockito.when(repository.obterDataHora(50l)).thenReturn(Optional.empty());
+		
+		Slice<HistoricoLocacao> pagina = service.obterPorUsuario(1l, 50l, null);
+
+		Assertions.assertThat(pagina.getContent()).isEmpty();
+		Assertions.assertThat(pagina.hasNext()).isFalse();
+	}
+	
+	private static SituacaoLocacao situacao(StatusLocacao status) {
+		return new SituacaoLocacao(1l, 1l, "filme", 1, 2020, TipoLocacao.ALUGUEL, status, BigDecimal.TEN);
+	}
+}
@@ -0,0 +1,109 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.rafaguido.desafioeteg.exception.ConflitoIdempotenciaException;
+import com.rafaguido.desafioeteg.exception.RegraNegocioException;
+import com.rafaguido.desafioeteg.service.impl.IdempotenciaServiceImpl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class IdempotenciaServiceTest {
+
+	IdempotenciaServiceImpl service;
+
+	@BeforeEach
+	public void setUp() {
+		service = new IdempotenciaServiceImpl(new SimpleMeterRegistry(), 100, 10, 5000);
+	}
+
+	@Test
+	public void deveDevolverOResultadoGuardadoNaRepeticao() {
+
+		AtomicInteger execucoes = new AtomicInteger();
+
+		Integer primeira = service.executar("usuario:chave", "{}", execucoes::incrementAndGet);
+		Integer repeticao = service.executar("usuario:chave", "{}", execucoes::incrementAndGet);
+
+		Assertions.assertThat(primeira).isEqualTo(1);
+		Assertions.assertThat(repeticao).isEqualTo(1);
+		Assertions.assertThat(execucoes.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void deveRejeitarAMesmaChaveComOutroConteudo() {
+
+		service.executar("usuario:chave", "{\"valor\":1}", () -> 1);
+
+		Throwable erro = Assertions.catchThrowable( () -> service.executar("usuario:chave", "{\"valor\":2}", () -> 2) );
+
+		Assertions.assertThat(erro).isInstanceOf(ConflitoIdempotenciaException.class);
+	}
+
+	@Test
+	public void deveLiberarAChaveQuandoAOperacaoFalhar() {
+
+		Assertions.catchThrowable( () -> service.executar("usuario:chave", "{}", () -> {
+			throw new RegraNegocioException("erro");
+		}) );
+
+		Integer resultado = service.executar("usuario:chave", "{}", () -> 2);
+
+		Assertions.assertThat(resultado).isEqualTo(2);
+	}
+
+	@Test
+	public void naoDeveGuardarOResultadoRecusadoPeloFiltro() {
+
+		Integer recusado = service.executar("usuario:chave", "{}", () -> 400, resultado -> resultado < 300);
+		Integer novaTentativa = service.executar("usuario:chave", "{}", () -> 201, resultado -> resultado < 300);
+		Integer repeticao = service.executar("usuario:chave", "{}", () -> 500, resultado -> resultado < 300);
+
+		Assertions.assertThat(recusado).isEqualTo(400);
+		Assertions.assertThat(novaTentativa).isEqualTo(201);
+		Assertions.assertThat(repeticao).isEqualTo(201);
+	}
+
+	@Test
+	public void deveJuntarRequisicoesSimultaneasNaPrimeiraExecucao() throws Exception {
+
+		AtomicInteger execucoes = new AtomicInteger();
+		CountDownLatch emExecucao = new CountDownLatch(1);
+		CountDownLatch liberar = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try {
+			Future<Integer> primeira = executor.submit( () -> service.executar("usuario:chave", "{}", () -> {
+				emExecucao.countDown();
+				aguardar(liberar);
+				return execucoes.incrementAndGet();
+			}) );
+			emExecucao.await(5, TimeUnit.SECONDS);
+			Future<Integer> repeticao = executor.submit( () -> service.executar("usuario:chave", "{}", execucoes::incrementAndGet) );
+			liberar.countDown();
+
+			Assertions.assertThat(primeira.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+			Assertions.assertThat(repeticao.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+			Assertions.assertThat(execucoes.get()).isEqualTo(1);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void aguardar(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.rafaguido.desafioeteg.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.rafaguido.desafioeteg.model.entity.Usuario;
+import com.rafaguido.desafioeteg.service.impl.JwtServiceImpl;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class JwtServiceTest {
+
+	SimpleMeterRegistry registry;
+	JwtServiceImpl service;
+
+	@BeforeEach
+	public void setUp() {
+		registry = new SimpleMeterRegistry();
+		service = new JwtServiceImpl(registry);
+		ReflectionTestUtils.setField(service, "expiracao", "30");
+		ReflectionTestUtils.setField(service, "chaveAssinatura", "Zml6IG8gZGVzYWZpbw==");
+		ReflectionTestUtils.setField(service, "tamanhoMaximoCache", 100L);
+		service.iniciarCache();
+	}
+
+	@Test
+	public void deveObterAsClaimsDeUmTokenValido() {
+
+		Usuario usuario = Usuario.builder().id(1l).nome("usuario").email("usuario@email.com").build();
+		String token = service.gerarToken(usuario);
+
+		Optional<Claims> claims = service.obterClaimsValidas(token);
+
+		assertThat(claims.isPresent()).isTrue();
+		assertThat(claims.get().getSubject()).isEqualTo("usuario@email.com");
+		assertThat(((Number) claims.get().get(JwtServiceImpl.CLAIM_USERID)).longValue()).isEqualTo(1l);
+	}
+
+	@Test
+	public void deveReaproveitarAsClaimsVerificadasNoCache() {
+
+		Usuario usuario = Usuario.builder().id(1l).email("usuario@email.com").build();
+		String token = service.gerarToken(usuario);
+
+		service.obterClaimsValidas(token);
+		service.obterClaimsValidas(token);
+
+		double acertos = registry.get("cache.gets").tag("result", "hit").functionCounter().count();
+		assertThat(acertos).isEqualTo(1);
+	}
+
+	@Test
+	public void deveRejeitarUmTokenAdulterado() {
+
+		Usuario usuario = Usuario.builder().id(1l).email("usuario@email.com").build();
+		String token = service.gerarToken(usuario);
+
+		Optional<Claims> claims = service.obterClaimsValidas(token.substring(0, token.length() - 2) + "xx");
+
+		assertThat(claims.isPresent()).isFalse();
+		assertThat(service.isTokenValido("token-invalido")).isFalse();
+	}
+}
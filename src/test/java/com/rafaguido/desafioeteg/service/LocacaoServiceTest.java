@@ -3,38 +3,74 @@ package com.rafaguido.desafioeteg.service;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
-import org.springframework.data.domain.Example;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import com.rafaguido.desafioeteg.api.dto.LocacaoDTO;
+import com.rafaguido.desafioeteg.api.dto.ResultadoImportacaoDTO;
+import com.rafaguido.desafioeteg.api.dto.ResultadoLoteDTO;
+import com.rafaguido.desafioeteg.api.dto.ResultadoLoteDTO.ItemLoteDTO;
 import com.rafaguido.desafioeteg.exception.RegraNegocioException;
 import com.rafaguido.desafioeteg.model.entity.Locacao;
 import com.rafaguido.desafioeteg.model.entity.Usuario;
+import com.rafaguido.desafioeteg.model.enums.ResultadoOperacaoLote;
 import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
 import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+import com.rafaguido.desafioeteg.model.repository.LocacaoListada;
 import com.rafaguido.desafioeteg.model.repository.LocacaoRepository;
 import com.rafaguido.desafioeteg.model.repository.LocacaoRepositoryTest;
+import com.rafaguido.desafioeteg.model.repository.PrazoLocacao;
+import com.rafaguido.desafioeteg.model.repository.SaldoPorUsuario;
+import com.rafaguido.desafioeteg.model.repository.SituacaoLocacao;
+import com.rafaguido.desafioeteg.service.impl.AgendaExpiracaoLocacao;
 import com.rafaguido.desafioeteg.service.impl.LocacaoServiceImpl;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 public class LocacaoServiceTest {
@@ -43,6 +79,22 @@ public class LocacaoServiceTest {
 	LocacaoServiceImpl service;
 	@MockBean
 	LocacaoRepository repository;
+	@MockBean
+	SaldoUsuarioService saldoUsuarioService;
+	@MockBean
+	ResumoMensalService resumoMensalService;
+	@MockBean
+	HistoricoLocacaoService historicoLocacaoService;
+	@MockBean
+	FilmeService filmeService;
+	@MockBean
+	LocacoesAtivasService locacoesAtivasService;
+	@MockBean
+	AgendaExpiracaoLocacao agendaExpiracao;
+	@MockBean
+	PlatformTransactionManager transactionManager;
+	@MockBean
+	EntityManagerFactory entityManagerFactory;
 	
 	@Test
 	public void deveSalvarUmaLocacao() {
@@ -71,6 +123,130 @@ public class LocacaoServiceTest {
 		verify(repository, never()).save(locacaoASalvar);
 	}
 	
+	@Test
+	public void deveImportarMantendoOStatusEOPrazoDeOrigem() {
+		
+		when(entityManagerFactory.createEntityManager()).thenReturn(mock(EntityManager.class));
+		List<Locacao> gravadas = new ArrayList<>();
+		when(repository.saveAll(anyIterable())).thenAnswer( invocacao -> {
+			Iterable<Locacao> lote = invocacao.getArgument(0);
+			lote.forEach(gravadas::add);
+			return invocacao.getArgument(0);
+		});
+		
+		Iterator<LocacaoDTO> linhas = Arrays.asList(
+				LocacaoDTO.builder().status("EFETIVADO").dataPrevistaDevolucao(LocalDate.of(2019, 1, 8)).build(),
+				LocacaoDTO.builder().build()).iterator();
+		
+		ResultadoImportacaoDTO resultado = service.importar(linhas, dto -> {
+			Locacao locacao = LocacaoRepositoryTest.criarLocacao();
+			locacao.setStatus(dto.getStatus() == null ? null : StatusLocacao.valueOf(dto.getStatus()));
+			locacao.setDataPrevistaDevolucao(dto.getDataPrevistaDevolucao());
+			locacao.setUsuario(Usuario.builder().id(1l).build());
+			return locacao;
+		});
+		
+		assertThat(resultado.getImportadas()).isEqualTo(2);
+		assertThat(gravadas).extracting(Locacao::getStatus).containsExactly(StatusLocacao.EFETIVADO, StatusLocacao.PENDENTE);
+		assertThat(gravadas).extracting(Locacao::getDataPrevistaDevolucao).containsExactly(LocalDate.of(2019, 1, 8), null);
+		assertThat(gravadas).extracting(Locacao::getCriadoEm).containsOnlyNulls();
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void deveRegravarLinhaALinhaOLoteRecusadoPelaRegra() {
+		
+		ReflectionTestUtils.setField(service, "tamanhoLoteImportacao", 3);
+		when(entityManagerFactory.createEntityManager()).thenReturn(mock(EntityManager.class));
+		when(repository.saveAll(anyIterable())).thenAnswer( invocacao -> invocacao.getArgument(0) );
+		when(repository.saveAndFlush(any())).thenAnswer( invocacao -> invocacao.getArgument(0) );
+		doAnswer( invocacao -> {
+			List<AlteracaoLocacao> alteracoes = invocacao.getArgument(0);
+			if(alteracoes.stream().anyMatch( alteracao -> alteracao.getAtual().getFilme().equals("sem estoque") )) {
+				throw new RegraNegocioException("Filme sem estoque.");
+			}
+			return null;
+		}).when(filmeService).registrar(any());
+		
+		Iterator<LocacaoDTO> linhas = Arrays.asList(
+				LocacaoDTO.builder().filme("filme").build(),
+				LocacaoDTO.builder().filme("sem estoque").build(),
+				LocacaoDTO.builder().filme("filme").build()).iterator();
+		
+		ResultadoImportacaoDTO resultado = service.importar(linhas, dto -> {
+			Locacao locacao = LocacaoRepositoryTest.criarLocacao();
+			locacao.setFilme(dto.getFilme());
+			locacao.setUsuario(Usuario.builder().id(1l).build());
+			return locacao;
+		});
+		
+		assertThat(resultado.getImportadas()).isEqualTo(2);
+		assertThat(resultado.getRejeitadas()).isEqualTo(1);
+		assertThat(resultado.getErros().get(0).getLinha()).isEqualTo(2);
+		assertThat(resultado.getErros().get(0).getMensagem()).isEqualTo("Filme sem estoque.");
+		verify(repository, times(3)).saveAndFlush(any());
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void naoDeveAgendarAExpiracaoDasLocacoesImportadas() throws InterruptedException {
+		
+		AgendaExpiracaoLocacao agenda = new AgendaExpiracaoLocacao(new SimpleMeterRegistry(), 0, 1, 8);
+		doAnswer( invocacao -> {
+			agenda.agendar((Collection<AlteracaoLocacao>) invocacao.getArgument(0));
+			return null;
+		}).when(agendaExpiracao).agendar(anyCollection());
+		when(entityManagerFactory.createEntityManager()).thenReturn(mock(EntityManager.class));
+		long[] ids = { 10 };
+		when(repository.saveAll(anyIterable())).thenAnswer( invocacao -> {
+			Iterable<Locacao> lote = invocacao.getArgument(0);
+			lote.forEach( locacao -> locacao.setId(ids[0]++) );
+			return invocacao.getArgument(0);
+		});
+		Locacao salva = LocacaoRepositoryTest.criarLocacao();
+		salva.setId(1l);
+		salva.setUsuario(Usuario.builder().id(1l).build());
+		when(repository.save(any(Locacao.class))).thenReturn(salva);
+		
+		service.importar(Arrays.asList(LocacaoDTO.builder().build(), LocacaoDTO.builder().build()).iterator(), dto -> {
+			Locacao locacao = LocacaoRepositoryTest.criarLocacao();
+			locacao.setUsuario(Usuario.builder().id(1l).build());
+			return locacao;
+		});
+		service.salvar(salva);
+		Thread.sleep(5);
+		
+		assertThat(agenda.vencidas()).containsExactly(1l);
+	}
+	
+	@Test
+	public void deveImportarEmLotesRejeitandoAsLinhasInvalidas() {
+		
+		ReflectionTestUtils.setField(service, "tamanhoLoteImportacao", 2);
+		when(entityManagerFactory.createEntityManager()).thenReturn(mock(EntityManager.class));
+		when(repository.saveAll(anyIterable())).thenAnswer( invocacao -> invocacao.getArgument(0) );
+		
+		Iterator<LocacaoDTO> linhas = Arrays.asList(
+				LocacaoDTO.builder().mes(1).build(),
+				LocacaoDTO.builder().mes(13).build(),
+				LocacaoDTO.builder().mes(2).build(),
+				LocacaoDTO.builder().mes(3).build()).iterator();
+		
+		ResultadoImportacaoDTO resultado = service.importar(linhas, dto -> {
+			Locacao locacao = LocacaoRepositoryTest.criarLocacao();
+			locacao.setMes(dto.getMes());
+			locacao.setUsuario(Usuario.builder().id(1l).build());
+			return locacao;
+		});
+		
+		assertThat(resultado.getLidas()).isEqualTo(4);
+		assertThat(resultado.getImportadas()).isEqualTo(3);
+		assertThat(resultado.getRejeitadas()).isEqualTo(1);
+		assertThat(resultado.getErros().get(0).getLinha()).isEqualTo(2);
+		assertThat(resultado.getErros().get(0).getMensagem()).isEqualTo("Informe um Mês válido.");
+		verify(repository, times(2)).saveAll(anyIterable());
+	}
+	
 	@Test
 	public void deveAtualizarUmaLocacao() {
 		
@@ -88,6 +264,28 @@ public class LocacaoServiceTest {
 		
 	}
 	
+	@Test
+	public void deveRegistrarNoSaldoASituacaoAnteriorEAtualDaLocacao() {
+		
+		SituacaoLocacao naBase = new SituacaoLocacao(1l, 1l, "filme", 1, 2019, TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE, BigDecimal.TEN);
+		when(repository.obterSituacao(1l)).thenReturn(Optional.of(naBase));
+		
+		Locacao efetivada = LocacaoRepositoryTest.criarLocacao();
+		efetivada.setId(1l);
+		efetivada.setUsuario(Usuario.builder().id(1l).build());
+		efetivada.setStatus(StatusLocacao.EFETIVADO);
+		doNothing().when(service).validar(efetivada);
+		when(repository.save(efetivada)).thenReturn(efetivada);
+		
+		service.atualizar(efetivada);
+		
+		ArgumentCaptor<List<AlteracaoLocacao>> captor = ArgumentCaptor.forClass(List.class);
+		verify(saldoUsuarioService).registrar(captor.capture());
+		AlteracaoLocacao alteracao = captor.getValue().get(0);
+		assertThat(alteracao.getAnterior().getStatus()).isEqualTo(StatusLocacao.PENDENTE);
+		assertThat(alteracao.getAtual().getStatus()).isEqualTo(StatusLocacao.EFETIVADO);
+	}
+	
 	@Test
 	public void deveLancarErroAoTentarAtualizarUmaLocacaoQueAindaNaoFoiSalva() {
 		
@@ -120,21 +318,139 @@ public class LocacaoServiceTest {
 	
 	
 	@Test
-	public void deveFiltrarLocacoes() {
+	public void deveAtualizarOStatusEmLoteInformandoODesfechoDeCadaId() {
+		
+		SituacaoLocacao pendente = new SituacaoLocacao(1l, 1l, "filme", 1, 2020, TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE, BigDecimal.TEN);
+		SituacaoLocacao efetivada = new SituacaoLocacao(2l, 1l, "filme", 1, 2020, TipoLocacao.ALUGUEL, StatusLocacao.EFETIVADO, BigDecimal.TEN);
+		when(repository.travarSituacoes(Arrays.asList(1l, 2l, 3l))).thenReturn(Arrays.asList(pendente, efetivada));
+		
+		ResultadoLoteDTO resultado = service.atualizarStatusEmLote(
+				Arrays.asList(1l, 2l, 3l), null, StatusLocacao.PENDENTE, StatusLocacao.EFETIVADO);
+		
+		assertThat(resultado.getItens()).extracting(ItemLoteDTO::getResultado).containsExactly(
+				ResultadoOperacaoLote.ATUALIZADA, 
+				ResultadoOperacaoLote.STATUS_DIVERGENTE, 
+				ResultadoOperacaoLote.NAO_ENCONTRADA);
+		assertThat(resultado.getSucesso()).isEqualTo(1);
+		verify(repository).atualizarStatus(Collections.singletonList(1l), StatusLocacao.EFETIVADO);
+		verify(repository, never()).save(any(Locacao.class));
+	}
+	
+	@Test
+	public void deveRejeitarOBlocoRecusadoPelaRegraEContinuarComOsSeguintes() {
+		
+		ReflectionTestUtils.setField(service, "tamanhoBlocoLote", 2);
+		SituacaoLocacao primeira = new SituacaoLocacao(1l, 1l, "filme", 1, 2020, TipoLocacao.ALUGUEL, StatusLocacao.CANCELADO, BigDecimal.TEN);
+		SituacaoLocacao segunda = new SituacaoLocacao(2l, 1l, "filme", 1, 2020, TipoLocacao.ALUGUEL, StatusLocacao.CANCELADO, BigDecimal.TEN);
+		SituacaoLocacao terceira = new SituacaoLocacao(3l, 2l, "filme", 1, 2020, TipoLocacao.ALUGUEL, StatusLocacao.CANCELADO, BigDecimal.TEN);
+		when(repository.travarSituacoes(Arrays.asList(1l, 2l))).thenReturn(Arrays.asList(primeira, segunda));
+		when(repository.travarSituacoes(Collections.singletonList(3l))).thenReturn(Collections.singletonList(terceira));
+		doThrow(new RegraNegocioException("O usuário já possui 5 filmes locados."))
+			.doNothing()
+			.when(locacoesAtivasService).registrar(any());
+		
+		ResultadoLoteDTO resultado = service.atualizarStatusEmLote(
+				Arrays.asList(1l, 2l, 3l), null, StatusLocacao.CANCELADO, StatusLocacao.PENDENTE);
+		
+		assertThat(resultado.getItens()).extracting(ItemLoteDTO::getResultado).containsExactly(
+				ResultadoOperacaoLote.REJEITADA, 
+				ResultadoOperacaoLote.REJEITADA, 
+				ResultadoOperacaoLote.ATUALIZADA);
+		assertThat(resultado.getSucesso()).isEqualTo(1);
+		assertThat(resultado.getFalhas()).isEqualTo(2);
+		ReflectionTestUtils.setField(service, "tamanhoBlocoLote", 500);
+	}
+	
+	@Test
+	public void deveTransicionarOStatusQuandoAindaEstiverNoStatusEsperado() {
 		
-		Locacao locacao = LocacaoRepositoryTest.criarLocacao();
-		locacao.setId(1l);
+		when(repository.transicionarStatus(1l, StatusLocacao.PENDENTE, StatusLocacao.EFETIVADO)).thenReturn(1);
+		SituacaoLocacao efetivada = new SituacaoLocacao(1l, 1l, "filme", 1, 2020, TipoLocacao.ALUGUEL, StatusLocacao.EFETIVADO, BigDecimal.TEN);
+		when(repository.obterSituacao(1l)).thenReturn(Optional.of(efetivada));
+		
+		ResultadoOperacaoLote resultado = service.transicionarStatus(1l, StatusLocacao.PENDENTE, StatusLocacao.EFETIVADO);
+		
+		assertThat(resultado).isEqualTo(ResultadoOperacaoLote.ATUALIZADA);
+		ArgumentCaptor<List<AlteracaoLocacao>> captor = ArgumentCaptor.forClass(List.class);
+		verify(saldoUsuarioService).registrar(captor.capture());
+		assertThat(captor.getValue().get(0).getAnterior().getStatus()).isEqualTo(StatusLocacao.PENDENTE);
+		assertThat(captor.getValue().get(0).getAtual().getStatus()).isEqualTo(StatusLocacao.EFETIVADO);
+	}
+	
+	@Test
+	public void deveInformarConflitoQuandoOStatusJaTiverMudado() {
+		
+		when(repository.transicionarStatus(1l, StatusLocacao.PENDENTE, StatusLocacao.EFETIVADO)).thenReturn(0);
+		when(repository.existsById(1l)).thenReturn(true);
+		
+		ResultadoOperacaoLote resultado = service.transicionarStatus(1l, StatusLocacao.PENDENTE, StatusLocacao.EFETIVADO);
+		
+		assertThat(resultado).isEqualTo(ResultadoOperacaoLote.STATUS_DIVERGENTE);
+		verify(saldoUsuarioService, never()).registrar(any());
+	}
+	
+	@Test
+	public void deveExcluirEmLotePercorrendoOFiltroEmBlocos() {
+		
+		ReflectionTestUtils.setField(service, "tamanhoBlocoLote", 2);
+		Locacao filtro = new Locacao();
+		filtro.setUsuario(Usuario.builder().id(1l).build());
+		when(repository.obterIds(filtro, null, 2)).thenReturn(Arrays.asList(1l, 2l));
+		when(repository.obterIds(filtro, 2l, 2)).thenReturn(Collections.singletonList(3l));
+		when(repository.travarSituacoes(any())).thenAnswer( invocacao -> {
+			List<Long> ids = invocacao.getArgument(0);
+			List<SituacaoLocacao> situacoes = new ArrayList<>();
+			ids.forEach( id -> situacoes.add(
+					new SituacaoLocacao(id, 1l, "filme", 1, 2020, TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE, BigDecimal.TEN)) );
+			return situacoes;
+		});
+		
+		ResultadoLoteDTO resultado = service.deletarEmLote(null, filtro);
+		
+		assertThat(resultado.getSucesso()).isEqualTo(3);
+		verify(repository).excluirPorIds(Arrays.asList(1l, 2l));
+		verify(repository).excluirPorIds(Collections.singletonList(3l));
+	}
+	
+	@Test
+	public void naoDeveOperarEmLoteSemIdsNemUsuario() {
+		
+		Throwable erro = catchThrowable( () -> service.deletarEmLote(Collections.emptyList(), new Locacao()) );
+		
+		assertThat(erro).isInstanceOf(RegraNegocioException.class).hasMessage("Informe os ids ou o usuário das locações.");
+	}
+	
+	@Test
+	public void deveLimitarOTamanhoDaPaginaAoBuscarLocacoes() {
+		
+		Locacao filtro = new Locacao();
+		Slice<LocacaoListada> vazia = new SliceImpl<>(Collections.<LocacaoListada>emptyList());
+		when( repository.buscarPagina(eq(filtro), isNull(), any(Pageable.class)) ).thenReturn(vazia);
+		
+		service.buscar(filtro, null, 2, 100000);
 		
-		List<Locacao> lista = Arrays.asList(locacao);
-		when( repository.findAll(any(Example.class)) ).thenReturn(lista);
+		verify(repository).buscarPagina(filtro, null, PageRequest.of(2, 100, Sort.by("id")));
+	}
+	
+	@Test
+	public void naoDeveBuscarUmaPaginaCujoDeslocamentoNaoCabeNumInteiro() {
+		
+		Throwable erro = catchThrowable( () -> service.buscar(new Locacao(), null, 30000000, 100) );
+		
+		assertThat(erro).isInstanceOf(RegraNegocioException.class);
+		verify(repository, never()).buscarPagina(any(), any(), any());
+	}
+	
+	@Test
+	public void deveIgnorarAPaginaQuandoHouverCursor() {
 		
-		List<Locacao> resultado = service.buscar(locacao);
+		Locacao filtro = new Locacao();
+		Slice<LocacaoListada> vazia = new SliceImpl<>(Collections.<LocacaoListada>emptyList());
+		when( repository.buscarPagina(eq(filtro), eq(10l), any(Pageable.class)) ).thenReturn(vazia);
 		
-		assertThat(resultado)
-			.isNotEmpty()
-			.hasSize(1)
-			.contains(locacao);
+		service.buscar(filtro, 10l, 5, null);
 		
+		verify(repository).buscarPagina(filtro, 10l, PageRequest.of(0, 20, Sort.by("id")));
 	}
 	
 	@Test
@@ -248,18 +564,97 @@ public class LocacaoServiceTest {
 		
 	}
 	
+	@Test
+	public void deveRenovarComUmUnicoUpdateCondicional() {
+		
+		Locacao renovada = LocacaoRepositoryTest.criarLocacao();
+		renovada.setRenovacoes(1);
+		when(repository.obterPrazo(1l)).thenReturn(Optional.of(prazo(0, LocalDate.of(2020, 1, 10))));
+		when(repository.renovar(1l, 0, LocalDate.of(2020, 1, 17), 2, TipoLocacao.ALUGUEL, StatusLocacao.CANCELADO)).thenReturn(1);
+		when(repository.findById(1l)).thenReturn(Optional.of(renovada));
+		
+		Optional<Locacao> resultado = service.renovar(1l, 7);
+		
+		assertThat(resultado.get().getRenovacoes()).isEqualTo(1);
+		verify(repository, never()).save(any());
+	}
+	
+	@Test
+	public void deveTentarDeNovoQuandoOutraRenovacaoPassarNaFrente() {
+		
+		when(repository.obterPrazo(1l)).thenReturn(
+				Optional.of(prazo(0, LocalDate.of(2020, 1, 10))), 
+				Optional.of(prazo(1, LocalDate.of(2020, 1, 15))));
+		when(repository.renovar(1l, 0, LocalDate.of(2020, 1, 17), 2, TipoLocacao.ALUGUEL, StatusLocacao.CANCELADO)).thenReturn(0);
+		when(repository.renovar(1l, 1, LocalDate.of(2020, 1, 22), 2, TipoLocacao.ALUGUEL, StatusLocacao.CANCELADO)).thenReturn(1);
+		when(repository.findById(1l)).thenReturn(Optional.of(LocacaoRepositoryTest.criarLocacao()));
+		
+		assertThat(service.renovar(1l, 7).isPresent()).isTrue();
+		verify(repository).renovar(1l, 1, LocalDate.of(2020, 1, 22), 2, TipoLocacao.ALUGUEL, StatusLocacao.CANCELADO);
+	}
+	
+	@Test
+	public void naoDeveRenovarAlemDoLimite() {
+		
+		when(repository.obterPrazo(1l)).thenReturn(Optional.of(prazo(2, LocalDate.of(2020, 1, 10))));
+		when(repository.renovar(eq(1l), eq(2), any(), eq(2), any(), any())).thenReturn(0);
+		
+		Throwable erro = catchThrowable( () -> service.renovar(1l, 7) );
+		
+		assertThat(erro).isInstanceOf(RegraNegocioException.class);
+	}
+	
+	@Test
+	public void deveInformarQuandoALocacaoARenovarNaoExistir() {
+		
+		when(repository.obterPrazo(1l)).thenReturn(Optional.empty());
+		
+		assertThat(service.renovar(1l, 7).isPresent()).isFalse();
+		verify(repository, never()).renovar(any(), any(), any(), anyInt(), any(), any());
+	}
+	
+	@Test
+	public void naoDeveRenovarPorUmNumeroDeDiasInvalido() {
+		
+		Throwable erro = catchThrowable( () -> service.renovar(1l, 0) );
+		
+		assertThat(erro).isInstanceOf(RegraNegocioException.class);
+		verify(repository, never()).renovar(any(), any(), any(), anyInt(), any(), any());
+	}
+	
+	private static PrazoLocacao prazo(int renovacoes, LocalDate dataPrevistaDevolucao) {
+		return new PrazoLocacao() {
+			@Override
+			public Integer getRenovacoes() {
+				return renovacoes;
+			}
+			@Override
+			public LocalDate getDataPrevistaDevolucao() {
+				return dataPrevistaDevolucao;
+			}
+		};
+	}
+	
+	@Test
+	public void deveObterOSaldoMaterializadoDoUsuario() {
+		
+		when(saldoUsuarioService.obterSaldos(Collections.singletonList(1l)))
+			.thenReturn(Collections.singletonMap(1l, BigDecimal.valueOf(70)));
+		
+		BigDecimal saldo = service.obterSaldoPorUsuario(1l);
+		
+		assertThat(saldo).isEqualTo(BigDecimal.valueOf(70));
+		verify(repository, never()).obterSaldosPorUsuarios(any(), any(), any(), any());
+	}
+	
 	@Test
 	public void deveObterSaldoPorUsuario() {
 		
 		Long idUsuario = 1l;
 
-		when( repository
-				.obterSaldoPorTipoLocacaoEUsuarioEStatus(idUsuario, TipoLocacao.DEVOLUÇÃO, StatusLocacao.EFETIVADO)) 
-				.thenReturn(BigDecimal.valueOf(100));
-		
-		when( repository
-				.obterSaldoPorTipoLocacaoEUsuarioEStatus(idUsuario, TipoLocacao.ALUGUEL, StatusLocacao.EFETIVADO)) 
-				.thenReturn(BigDecimal.valueOf(50));
+		when( repository.obterSaldosPorUsuarios(
+				Collections.singletonList(idUsuario), TipoLocacao.DEVOLUÇÃO, TipoLocacao.ALUGUEL, StatusLocacao.EFETIVADO) ) 
+				.thenReturn(Collections.singletonList(saldo(idUsuario, 50)));
 		
 		BigDecimal saldo = service.obterSaldoPorUsuario(idUsuario);
 		
@@ -267,4 +662,48 @@ public class LocacaoServiceTest {
 		
 	}
 	
+	@Test
+	public void deveCalcularApenasOsSaldosQueNaoEstaoMaterializados() {
+		
+		when(saldoUsuarioService.obterSaldos(Arrays.asList(1l, 2l, 3l)))
+			.thenReturn(Collections.singletonMap(1l, BigDecimal.valueOf(70)));
+		when( repository.obterSaldosPorUsuarios(
+				Arrays.asList(2l, 3l), TipoLocacao.DEVOLUÇÃO, TipoLocacao.ALUGUEL, StatusLocacao.EFETIVADO) ) 
+				.thenReturn(Collections.singletonList(saldo(2l, 20)));
+		
+		Map<Long, BigDecimal> saldos = service.obterSaldosPorUsuarios(Arrays.asList(1l, 2l, 3l, 2l));
+		
+		assertThat(saldos).containsExactly(
+				entry(1l, BigDecimal.valueOf(70)), 
+				entry(2l, BigDecimal.valueOf(20)), 
+				entry(3l, BigDecimal.ZERO));
+	}
+	
+	@Test
+	public void naoDeveCalcularSaldosDeMaisUsuariosQueOLimite() {
+		
+		List<Long> ids = new ArrayList<>();
+		for(long id = 1; id <= 1001; id++) {
+			ids.add(id);
+		}
+		
+		Throwable erro = catchThrowable( () -> service.obterSaldosPorUsuarios(ids) );
+		
+		assertThat(erro).isInstanceOf(RegraNegocioException.class);
+		verify(repository, never()).obterSaldosPorUsuarios(any(), any(), any(), any());
+	}
+	
+	private static SaldoPorUsuario saldo(Long idUsuario, int saldo) {
+		return new SaldoPorUsuario() {
+			@Override
+			public Long getIdUsuario() {
+				return idUsuario;
+			}
+			@Override
+			public BigDecimal getSaldo() {
+				return BigDecimal.valueOf(saldo);
+			}
+		};
+	}
+	
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import com.rafaguido.desafioeteg.exception.RegraNegocioException;
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+import com.rafaguido.desafioeteg.model.repository.LocacaoRepository;
+import com.rafaguido.desafioeteg.model.repository.LocacoesAtivasRepository;
+import com.rafaguido.desafioeteg.model.repository.SituacaoLocacao;
+import com.rafaguido.desafioeteg.service.impl.LocacoesAtivasServiceImpl;
+
+public class LocacoesAtivasServiceTest {
+
+	LocacoesAtivasRepository repository;
+	LocacaoRepository locacaoRepository;
+	LocacoesAtivasServiceImpl service;
+
+	@BeforeEach
+	public void setUp() {
+		repository = Mockito.mock(LocacoesAtivasRepository.class);
+		locacaoRepository = Mockito.mock(LocacaoRepository.class);
+		service = new LocacoesAtivasServiceImpl(repository, locacaoRepository, 5);
+	}
+
+	@Test
+	public void deveAbrirUmaLocacaoComUmUnicoIncrementoCondicional() {
+
+		Mockito.when(repository.abrir(1l, 1, 5)).thenReturn(1);
+		
+		service.registrar(Collections.singletonList(new AlteracaoLocacao(null, situacao(TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE))));
+
+		Mockito.verify(repository).abrir(1l, 1, 5);
+		Mockito.verifyNoInteractions(locacaoRepository);
+	}
+
+	@Test
+	public void deveRecusarQuandoOUsuarioJaTiverOLimiteDeLocacoes() {
+
+		Mockito.when(repository.abrir(ArgumentMatchers.anyLong(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt())).thenReturn(0);
+		Mockito.when(repository.existsById(1l)).thenReturn(true);
+		
+		Throwable erro = Assertions.catchThrowable( () -> service.registrar(Collections.singletonList(
+				new AlteracaoLocacao(null, situacao(TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE)))) );
+
+		Assertions.assertThat(erro).isInstanceOf(RegraNegocioException.class);
+		Mockito.verify(repository, Mockito.never()).criar(ArgumentMatchers.anyLong(), ArgumentMatchers.anyInt());
+		Mockito.verifyNoInteractions(locacaoRepository);
+	}
+
+	@Test
+	public void deveContarAsLocacoesImportadasSemAplicarOLimite() {
+
+		Mockito.when(repository.abrir(1l, 6, Integer.MAX_VALUE)).thenReturn(1);
+		SituacaoLocacao aluguel = situacao(TipoLocacao.ALUGUEL, StatusLocacao.EFETIVADO);
+		
+		service.registrarImportacao(Collections.nCopies(6, new AlteracaoLocacao(null, aluguel)));
+
+		Mockito.verify(repository).abrir(1l, 6, Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void deveCriarORegistroNaPropriaTransacaoJaContandoAAlteracao() {
+
+		Mockito.when(repository.abrir(1l, 1, 5)).thenReturn(0);
+		Mockito.when(locacaoRepository.contarAtivas(1l, TipoLocacao.ALUGUEL, TipoLocacao.DEVOLUÇÃO, StatusLocacao.CANCELADO)).thenReturn(4l);
+		Mockito.when(repository.criar(1l, 4)).thenReturn(1);
+		
+		service.registrar(Collections.singletonList(new AlteracaoLocacao(null, situacao(TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE))));
+
+		Mockito.verify(locacaoRepository).flush();
+		Mockito.verify(repository).criar(1l, 4);
+		Mockito.verify(repository, Mockito.times(1)).abrir(1l, 1, 5);
+	}
+
+	@Test
+	public void deveAplicarAVariacaoQuandoOutraTransacaoCriouORegistroAntes() {
+
+		Mockito.when(repository.abrir(1l, 1, 5)).thenReturn(0, 1);
+		Mockito.when(locacaoRepository.contarAtivas(1l, TipoLocacao.ALUGUEL, TipoLocacao.DEVOLUÇÃO, StatusLocacao.CANCELADO)).thenReturn(1l);
+		Mockito.when(repository.criar(1l, 1)).thenReturn(0);
+		
+		service.registrar(Collections.singletonList(new AlteracaoLocacao(null, situacao(TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE))));
+
+		Mockito.verify(repository, Mockito.times(2)).abrir(1l, 1, 5);
+	}
+
+	@Test
+	public void deveRecusarSemCriarORegistroQuandoAContagemPassarDoLimite() {
+
+		Mockito.when(locacaoRepository.contarAtivas(1l, TipoLocacao.ALUGUEL, TipoLocacao.DEVOLUÇÃO, StatusLocacao.CANCELADO)).thenReturn(6l);
+		
+		Throwable erro = Assertions.catchThrowable( () -> service.registrar(Collections.singletonList(
+				new AlteracaoLocacao(null, situacao(TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE)))) );
+
+		Assertions.assertThat(erro).isInstanceOf(RegraNegocioException.class);
+		Mockito.verify(repository, Mockito.never()).criar(ArgumentMatchers.anyLong(), ArgumentMatchers.anyInt());
+	}
+
+	@Test
+	public void deveEncerrarAoCancelarOuDevolver() {
+
+		Mockito.when(repository.encerrar(1l, 2)).thenReturn(1);
+		SituacaoLocacao aluguel = situacao(TipoLocacao.ALUGUEL, StatusLocacao.EFETIVADO);
+		
+		service.registrar(Arrays.asList(
+				new AlteracaoLocacao(aluguel, aluguel.comStatus(StatusLocacao.CANCELADO)),
+				new AlteracaoLocacao(null, situacao(TipoLocacao.DEVOLUÇÃO, StatusLocacao.PENDENTE)),
+				new AlteracaoLocacao(aluguel, aluguel)));
+
+		Mockito.verify(repository).encerrar(1l, 2);
+		Mockito.verify(repository, Mockito.never()).abrir(ArgumentMatchers.anyLong(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt());
+	}
+	
+	private static SituacaoLocacao situacao(TipoLocacao tipo, StatusLocacao status) {
+		return new SituacaoLocacao(1l, 1l, "filme", 1, 2020, tipo, status, BigDecimal.TEN);
+	}
+}
@@ -0,0 +1,95 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import com.rafaguido.desafioeteg.model.entity.ResumoMensal;
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+import com.rafaguido.desafioeteg.model.repository.ResumoMensalRepository;
+import com.rafaguido.desafioeteg.model.repository.SituacaoLocacao;
+import com.rafaguido.desafioeteg.service.impl.ResumoMensalServiceImpl;
+
+public class ResumoMensalServiceTest {
+
+	ResumoMensalRepository repository;
+	ResumoMensalServiceImpl service;
+
+	@BeforeEach
+	public void setUp() {
+		repository = Mockito.mock(ResumoMensalRepository.class);
+		service = new ResumoMensalServiceImpl(repository, 4);
+		Mockito.when(repository.somar(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), 
+				ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), 
+				ArgumentMatchers.any())).thenReturn(1);
+	}
+
+	@Test
+	public void deveMoverALocacaoEntreOsResumosDoUsuarioEGeral() {
+
+		SituacaoLocacao pendente = situacao(StatusLocacao.PENDENTE);
+		SituacaoLocacao efetivada = situacao(StatusLocacao.EFETIVADO);
+		
+		service.registrar(Collections.singletonList(new AlteracaoLocacao(pendente, efetivada)));
+
+		BigDecimal valor = BigDecimal.valueOf(10);
+		Mockito.verify(repository).somar(1l, 0, 2020, 3, TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE, valor.negate(), -1l);
+		Mockito.verify(repository).somar(1l, 0, 2020, 3, TipoLocacao.ALUGUEL, StatusLocacao.EFETIVADO, valor, 1l);
+		Mockito.verify(repository).somar(ResumoMensal.GERAL, 2, 2020, 3, TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE, valor.negate(), -1l);
+		Mockito.verify(repository).somar(ResumoMensal.GERAL, 2, 2020, 3, TipoLocacao.ALUGUEL, StatusLocacao.EFETIVADO, valor, 1l);
+	}
+
+	@Test
+	public void naoDeveAtualizarResumoQuandoASituacaoNaoMudar() {
+
+		service.registrar(Collections.singletonList(
+				new AlteracaoLocacao(situacao(StatusLocacao.PENDENTE), situacao(StatusLocacao.PENDENTE))));
+
+		Mockito.verify(repository, Mockito.never()).somar(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), 
+				ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), 
+				ArgumentMatchers.any());
+	}
+
+	@Test
+	public void deveCriarOResumoJaComAVariacaoQuandoAindaNaoExistir() {
+
+		Mockito.when(repository.somar(1l, 0, 2020, 3, TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE, BigDecimal.valueOf(10), 1l))
+			.thenReturn(0);
+		Mockito.when(repository.criar(1l, 0, 2020, 3, "ALUGUEL", "PENDENTE", BigDecimal.valueOf(10), 1l)).thenReturn(1);
+		
+		service.registrar(Collections.singletonList(new AlteracaoLocacao(null, situacao(StatusLocacao.PENDENTE))));
+
+		Mockito.verify(repository).criar(1l, 0, 2020, 3, "ALUGUEL", "PENDENTE", BigDecimal.valueOf(10), 1l);
+		Mockito.verify(repository, Mockito.times(1))
+			.somar(1l, 0, 2020, 3, TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE, BigDecimal.valueOf(10), 1l);
+	}
+	
+	@Test
+	public void deveSomarQuandoOutraTransacaoCriouOResumoAntes() {
+
+		Mockito.when(repository.somar(1l, 0, 2020, 3, TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE, BigDecimal.valueOf(10), 1l))
+			.thenReturn(0, 1);
+		
+		service.registrar(Collections.singletonList(new AlteracaoLocacao(null, situacao(StatusLocacao.PENDENTE))));
+
+		Mockito.verify(repository, Mockito.times(2))
+			.somar(1l, 0, 2020, 3, TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE, BigDecimal.valueOf(10), 1l);
+	}
+	
+	@Test
+	public void deveLerOResumoGeralQuandoNaoInformarUsuario() {
+		
+		service.obterResumoMensal(null, 2020, 3);
+		
+		Mockito.verify(repository).obterResumoMensal(ResumoMensal.GERAL, 2020, 3);
+	}
+	
+	private static SituacaoLocacao situacao(StatusLocacao status) {
+		return new SituacaoLocacao(6l, 1l, "filme", 3, 2020, TipoLocacao.ALUGUEL, status, BigDecimal.valueOf(10));
+	}
+}
@@ -0,0 +1,47 @@
+package com.rafaguido.desafioeteg.service;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.rafaguido.desafioeteg.service.impl.RodaTemporizacao;
+
+public class RodaTemporizacaoTest {
+
+	@Test
+	public void deveVencerOsItensNoTickDoPrazo() {
+
+		RodaTemporizacao<Long> roda = new RodaTemporizacao<>(8, 10, 0);
+		roda.agendar(1l, 25);
+		roda.agendar(2l, 50);
+
+		Assertions.assertThat(roda.avancar(29)).isEmpty();
+		Assertions.assertThat(roda.avancar(30)).containsExactly(1l);
+		Assertions.assertThat(roda.avancar(49)).isEmpty();
+		Assertions.assertThat(roda.avancar(50)).containsExactly(2l);
+		Assertions.assertThat(roda.getAgendados()).isEqualTo(0);
+	}
+
+	@Test
+	public void deveContarAsVoltasDePrazosAlemDeUmaVoltaDaRoda() {
+
+		RodaTemporizacao<Long> roda = new RodaTemporizacao<>(4, 10, 0);
+		roda.agendar(1l, 10);
+		roda.agendar(2l, 90);
+
+		Assertions.assertThat(roda.avancar(10)).containsExactly(1l);
+		Assertions.assertThat(roda.avancar(80)).isEmpty();
+		Assertions.assertThat(roda.avancar(90)).containsExactly(2l);
+	}
+
+	@Test
+	public void deveVencerNoProximoTickUmPrazoJaPassado() {
+
+		RodaTemporizacao<Long> roda = new RodaTemporizacao<>(4, 10, 0);
+		roda.avancar(100);
+		roda.agendar(1l, 5);
+
+		Assertions.assertThat(roda.avancar(100)).isEmpty();
+		Assertions.assertThat(roda.avancar(110)).containsExactly(1l);
+		Assertions.assertThat(roda.getAgendados()).isEqualTo(0);
+	}
+}
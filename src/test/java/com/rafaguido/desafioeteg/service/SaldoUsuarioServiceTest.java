@@ -0,0 +1,156 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.rafaguido.desafioeteg.model.entity.SaldoUsuario;
+import com.rafaguido.desafioeteg.model.enums.StatusLocacao;
+import com.rafaguido.desafioeteg.model.enums.TipoLocacao;
+import com.rafaguido.desafioeteg.model.repository.LocacaoRepository;
+import com.rafaguido.desafioeteg.model.repository.SaldoPorUsuario;
+import com.rafaguido.desafioeteg.model.repository.SaldoUsuarioRepository;
+import com.rafaguido.desafioeteg.model.repository.SituacaoLocacao;
+import com.rafaguido.desafioeteg.model.repository.UsuarioRepository;
+import com.rafaguido.desafioeteg.service.impl.SaldoUsuarioServiceImpl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class SaldoUsuarioServiceTest {
+
+	SaldoUsuarioRepository repository;
+	LocacaoRepository locacaoRepository;
+	UsuarioRepository usuarioRepository;
+	SimpleMeterRegistry registry;
+	SaldoUsuarioServiceImpl service;
+
+	@BeforeEach
+	public void setUp() {
+		repository = Mockito.mock(SaldoUsuarioRepository.class);
+		locacaoRepository = Mockito.mock(LocacaoRepository.class);
+		usuarioRepository = Mockito.mock(UsuarioRepository.class);
+		registry = new SimpleMeterRegistry();
+		service = new SaldoUsuarioServiceImpl(repository, locacaoRepository, usuarioRepository, 
+				Mockito.mock(PlatformTransactionManager.class), registry, 2, 2);
+	}
+
+	@Test
+	public void deveSomarOValorQuandoADevolucaoForEfetivada() {
+
+		Mockito.when(repository.somar(ArgumentMatchers.anyLong(), ArgumentMatchers.any())).thenReturn(1);
+		
+		SituacaoLocacao pendente = situacao(TipoLocacao.DEVOLUÇÃO, StatusLocacao.PENDENTE, 30);
+		SituacaoLocacao efetivada = situacao(TipoLocacao.DEVOLUÇÃO, StatusLocacao.EFETIVADO, 30);
+		service.registrar(Collections.singletonList(new AlteracaoLocacao(pendente, efetivada)));
+
+		Mockito.verify(repository).somar(1l, BigDecimal.valueOf(30));
+	}
+
+	@Test
+	public void deveEstornarOAluguelQuandoSairDeEfetivado() {
+
+		Mockito.when(repository.somar(ArgumentMatchers.anyLong(), ArgumentMatchers.any())).thenReturn(1);
+		
+		SituacaoLocacao efetivado = situacao(TipoLocacao.ALUGUEL, StatusLocacao.EFETIVADO, 10);
+		SituacaoLocacao cancelado = situacao(TipoLocacao.ALUGUEL, StatusLocacao.CANCELADO, 10);
+		service.registrar(Collections.singletonList(new AlteracaoLocacao(efetivado, cancelado)));
+
+		Mockito.verify(repository).somar(1l, BigDecimal.valueOf(10));
+	}
+
+	@Test
+	public void naoDeveTocarNoSaldoQuandoNadaEfetivadoMudar() {
+
+		SituacaoLocacao pendente = situacao(TipoLocacao.ALUGUEL, StatusLocacao.PENDENTE, 10);
+		service.registrar(Collections.singletonList(AlteracaoLocacao.exclusao(pendente)));
+
+		Mockito.verify(repository, Mockito.never()).somar(ArgumentMatchers.anyLong(), ArgumentMatchers.any());
+	}
+
+	@Test
+	public void deveCriarOSaldoNaPropriaTransacaoJaComAAlteracao() {
+
+		Mockito.when(repository.somar(ArgumentMatchers.anyLong(), ArgumentMatchers.any())).thenReturn(0);
+		Mockito.when(repository.criar(1l, BigDecimal.valueOf(80))).thenReturn(1);
+		Mockito.when(locacaoRepository.obterSaldosPorUsuarios(
+				ArgumentMatchers.anyCollection(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+			.thenReturn(Collections.singletonList(saldo(1l, 80)));
+		
+		SituacaoLocacao efetivada = situacao(TipoLocacao.DEVOLUÇÃO, StatusLocacao.EFETIVADO, 30);
+		service.registrar(Collections.singletonList(new AlteracaoLocacao(null, efetivada)));
+
+		Mockito.verify(locacaoRepository).flush();
+		Mockito.verify(repository).criar(1l, BigDecimal.valueOf(80));
+		Mockito.verify(repository, Mockito.times(1)).somar(1l, BigDecimal.valueOf(30));
+	}
+	
+	@Test
+	public void deveSomarAVariacaoQuandoOutraTransacaoCriouOSaldoAntes() {
+
+		Mockito.when(repository.somar(ArgumentMatchers.anyLong(), ArgumentMatchers.any())).thenReturn(0, 1);
+		Mockito.when(repository.criar(ArgumentMatchers.anyLong(), ArgumentMatchers.any())).thenReturn(0);
+		
+		SituacaoLocacao efetivada = situacao(TipoLocacao.DEVOLUÇÃO, StatusLocacao.EFETIVADO, 30);
+		service.registrar(Collections.singletonList(new AlteracaoLocacao(null, efetivada)));
+
+		Mockito.verify(repository, Mockito.times(2)).somar(1l, BigDecimal.valueOf(30));
+	}
+	
+	@Test
+	public void deveCorrigirESinalizarSaldosDivergentesNaReconciliacao() {
+		
+		Mockito.when(usuarioRepository.obterIdsAPartirDe(ArgumentMatchers.eq(0l), ArgumentMatchers.any(Pageable.class)))
+			.thenReturn(Arrays.asList(1l, 2l));
+		Mockito.when(usuarioRepository.obterIdsAPartirDe(ArgumentMatchers.eq(2l), ArgumentMatchers.any(Pageable.class)))
+			.thenReturn(Collections.singletonList(3l));
+		Mockito.when(repository.findAllById(Arrays.asList(1l, 2l))).thenReturn(Arrays.asList(
+				new SaldoUsuario(1l, BigDecimal.valueOf(10)), 
+				new SaldoUsuario(2l, BigDecimal.valueOf(20))));
+		List<SaldoPorUsuario> calculados = Arrays.asList(saldo(1l, 10), saldo(2l, 25));
+		Mockito.when(locacaoRepository.obterSaldosPorUsuarios(
+				ArgumentMatchers.anyCollection(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+			.thenReturn(calculados);
+		
+		service.reconciliar();
+		
+		Mockito.verify(repository).corrigir(2l, BigDecimal.valueOf(20), BigDecimal.valueOf(25));
+		Mockito.verify(repository, Mockito.never()).corrigir(ArgumentMatchers.eq(1l), ArgumentMatchers.any(), ArgumentMatchers.any());
+		Mockito.verify(repository).criar(3l, BigDecimal.ZERO);
+		Assertions.assertThat(registry.get("saldo.reconciliacao.divergencias").counter().count()).isEqualTo(1);
+	}
+	
+	@Test
+	public void deveLerOsSaldosPelaChavePrimaria() {
+		
+		Mockito.when(repository.findAllById(Arrays.asList(1l, 2l)))
+			.thenReturn(Collections.singletonList(new SaldoUsuario(1l, BigDecimal.TEN)));
+		
+		Assertions.assertThat(service.obterSaldos(Arrays.asList(1l, 2l))).containsOnlyKeys(1l);
+	}
+	
+	private static SituacaoLocacao situacao(TipoLocacao tipo, StatusLocacao status, int valor) {
+		return new SituacaoLocacao(1l, 1l, "filme", 1, 2020, tipo, status, BigDecimal.valueOf(valor));
+	}
+	
+	private static SaldoPorUsuario saldo(Long idUsuario, int saldo) {
+		return new SaldoPorUsuario() {
+			@Override
+			public Long getIdUsuario() {
+				return idUsuario;
+			}
+			@Override
+			public BigDecimal getSaldo() {
+				return BigDecimal.valueOf(saldo);
+			}
+		};
+	}
+}
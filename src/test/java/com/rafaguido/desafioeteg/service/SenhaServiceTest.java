@@ -0,0 +1,79 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import com.rafaguido.desafioeteg.service.impl.SenhaServiceImpl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class SenhaServiceTest {
+
+	SimpleMeterRegistry registry;
+	SenhaServiceImpl service;
+
+	@BeforeEach
+	public void setUp() {
+		registry = new SimpleMeterRegistry();
+		service = new SenhaServiceImpl(new BCryptPasswordEncoder(4), registry, 4, 2, 10, 5000, 2);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		service.encerrar();
+	}
+
+	@Test
+	public void deveCriptografarEConferirASenha() {
+
+		String senhaCriptografada = service.criptografar("senha");
+
+		Assertions.assertThat(service.confere("senha", senhaCriptografada)).isTrue();
+		Assertions.assertThat(service.confere("outra", senhaCriptografada)).isFalse();
+		Assertions.assertThat(registry.get("senha.bcrypt").tag("operacao", "criptografar").timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	public void deveCriptografarEmLoteMantendoAOrdemDasSenhas() {
+
+		List<String> senhas = Arrays.asList("um", "dois", "tres", "quatro", "cinco", "seis", "sete", "oito", "nove");
+
+		List<String> criptografadas = service.criptografarEmLote(senhas);
+
+		Assertions.assertThat(criptografadas).hasSize(senhas.size());
+		for(int i = 0; i < senhas.size(); i++) {
+			Assertions.assertThat(service.confere(senhas.get(i), criptografadas.get(i))).isTrue();
+		}
+	}
+
+	@Test
+	public void deveIdentificarSenhaCriptografadaComCustoMaiorQueOAtual() {
+
+		String senhaComCustoMaior = new BCryptPasswordEncoder(5).encode("senha");
+
+		Assertions.assertThat(service.precisaCriptografarNovamente(senhaComCustoMaior)).isTrue();
+		Assertions.assertThat(service.precisaCriptografarNovamente(service.criptografar("senha"))).isFalse();
+	}
+
+	@Test
+	public void deveIdentificarSenhaCriptografadaComCustoMenorQueOAtual() {
+
+		SenhaServiceImpl servicoCusto5 = new SenhaServiceImpl(new BCryptPasswordEncoder(5), registry, 5, 1, 10, 5000, 1);
+		String senhaAtual = new BCryptPasswordEncoder(5).encode("senha");
+		String senhaAntiga = new BCryptPasswordEncoder(4).encode("senha");
+
+		try {
+			Assertions.assertThat(servicoCusto5.precisaCriptografarNovamente(senhaAtual)).isFalse();
+			Assertions.assertThat(servicoCusto5.precisaCriptografarNovamente(senhaAntiga)).isTrue();
+			Assertions.assertThat(servicoCusto5.precisaCriptografarNovamente("texto-puro")).isFalse();
+		}finally {
+			servicoCusto5.encerrar();
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package com.rafaguido.desafioeteg.service;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.rafaguido.desafioeteg.exception.LimiteTentativasException;
+import com.rafaguido.desafioeteg.service.impl.TentativaLoginServiceImpl;
+
+public class TentativaLoginServiceTest {
+
+	private TentativaLoginServiceImpl criarServico(int tentativasEmail, int falhasParaBloqueio) {
+		return new TentativaLoginServiceImpl(tentativasEmail, 1000, 60, falhasParaBloqueio, 60000, 900000, 1000, 4);
+	}
+
+	@Test
+	public void deveRecusarTentativasAcimaDoLimiteDaJanela() {
+
+		TentativaLoginServiceImpl service = criarServico(3, 100);
+
+		for (int i = 0; i < 3; i++) {
+			service.verificar("usuario@email.com", "10.0.0.1");
+		}
+
+		Throwable erro = Assertions.catchThrowable( () -> service.verificar("USUARIO@email.com", "10.0.0.1") );
+		Assertions.assertThat(erro).isInstanceOf(LimiteTentativasException.class);
+		Assertions.assertThat(((LimiteTentativasException) erro).getSegundosParaNovaTentativa()).isPositive();
+
+		service.verificar("outro@email.com", "10.0.0.1");
+	}
+
+	@Test
+	public void deveBloquearAposFalhasSeguidasELiberarAposSucesso() {
+
+		TentativaLoginServiceImpl service = criarServico(100, 2);
+
+		service.verificar("usuario@email.com", "10.0.0.1");
+		service.registrarFalha("usuario@email.com", "10.0.0.1");
+		service.verificar("usuario@email.com", "10.0.0.1");
+		service.registrarFalha("usuario@email.com", "10.0.0.1");
+
+		Throwable erro = Assertions.catchThrowable( () -> service.verificar("usuario@email.com", "10.0.0.1") );
+		Assertions.assertThat(erro).isInstanceOf(LimiteTentativasException.class);
+
+		service.registrarSucesso("usuario@email.com", "10.0.0.1");
+		service.verificar("usuario@email.com", "10.0.0.1");
+	}
+
+	@Test
+	public void deveDescontarUmaFalhaDoIpAcadaLoginComSucesso() {
+
+		TentativaLoginServiceImpl service = criarServico(100, 1);
+
+		for (int i = 0; i < 9; i++) {
+			service.verificar("usuario" + i + "@email.com", "10.0.0.1");
+			service.registrarFalha("usuario" + i + "@email.com", "10.0.0.1");
+		}
+		service.verificar("certo@email.com", "10.0.0.1");
+		service.registrarSucesso("certo@email.com", "10.0.0.1");
+		service.verificar("usuario9@email.com", "10.0.0.1");
+		service.registrarFalha("usuario9@email.com", "10.0.0.1");
+
+		service.verificar("outro@email.com", "10.0.0.1");
+	}
+}
@@ -0,0 +1,68 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.rafaguido.desafioeteg.model.entity.TokenRenovacao;
+import com.rafaguido.desafioeteg.model.entity.Usuario;
+import com.rafaguido.desafioeteg.model.repository.TokenRenovacaoRepository;
+import com.rafaguido.desafioeteg.service.impl.TokenRenovacaoServiceImpl;
+
+public class TokenRenovacaoServiceTest {
+
+	TokenRenovacaoRepository repository;
+	TokenRenovacaoServiceImpl service;
+
+	@BeforeEach
+	public void setUp() {
+		repository = Mockito.mock(TokenRenovacaoRepository.class);
+		service = new TokenRenovacaoServiceImpl(repository, Mockito.mock(PlatformTransactionManager.class), 60, 100);
+	}
+
+	@Test
+	public void deveGuardarApenasOHashDoToken() {
+
+		Usuario usuario = Usuario.builder().id(1l).build();
+
+		String token = service.gerar(usuario);
+
+		ArgumentCaptor<TokenRenovacao> captor = ArgumentCaptor.forClass(TokenRenovacao.class);
+		Mockito.verify(repository).save(captor.capture());
+		Assertions.assertThat(captor.getValue().getHash()).isNotEqualTo(token);
+		Assertions.assertThat(captor.getValue().getIdUsuario()).isEqualTo(1l);
+		Assertions.assertThat(captor.getValue().getDataExpiracao()).isAfter(LocalDateTime.now());
+	}
+
+	@Test
+	public void deveConsumirOTokenUmaUnicaVez() {
+
+		Usuario usuario = Usuario.builder().id(1l).build();
+		String token = service.gerar(usuario);
+
+		ArgumentCaptor<TokenRenovacao> captor = ArgumentCaptor.forClass(TokenRenovacao.class);
+		Mockito.verify(repository).save(captor.capture());
+		String hash = captor.getValue().getHash();
+
+		Mockito.when(repository.findById(hash)).thenReturn(Optional.of(captor.getValue()));
+		Mockito.when(repository.consumir(Mockito.eq(hash), Mockito.any(LocalDateTime.class))).thenReturn(1, 0);
+
+		Assertions.assertThat(service.consumir(token)).contains(1l);
+		Assertions.assertThat(service.consumir(token).isPresent()).isFalse();
+	}
+
+	@Test
+	public void deveRecusarTokenDesconhecido() {
+
+		Mockito.when(repository.findById(Mockito.anyString())).thenReturn(Optional.empty());
+
+		Assertions.assertThat(service.consumir("desconhecido").isPresent()).isFalse();
+		Mockito.verify(repository, Mockito.never()).consumir(Mockito.anyString(), Mockito.any(LocalDateTime.class));
+	}
+}
@@ -0,0 +1,76 @@
+package com.rafaguido.desafioeteg.service;
+
+import java.util.Optional;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import com.rafaguido.desafioeteg.model.entity.Usuario;
+import com.rafaguido.desafioeteg.model.repository.UsuarioRepository;
+import com.rafaguido.desafioeteg.service.impl.UsuarioCache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class UsuarioCacheTest {
+
+	UsuarioRepository repository;
+	UsuarioCache cache;
+
+	@BeforeEach
+	public void setUp() {
+		repository = Mockito.mock(UsuarioRepository.class);
+		cache = new UsuarioCache(repository, new SimpleMeterRegistry(), 100, 10);
+	}
+
+	@Test
+	public void deveConsultarABaseApenasUmaVezPorUsuario() {
+
+		Usuario usuario = Usuario.builder().id(1l).email("usuario@email.com").build();
+		Mockito.when(repository.findById(1l)).thenReturn(Optional.of(usuario));
+
+		cache.obterPorId(1l);
+		Optional<Usuario> result = cache.obterPorId(1l);
+
+		Assertions.assertThat(result.isPresent()).isTrue();
+		Mockito.verify(repository, Mockito.times(1)).findById(1l);
+	}
+
+	@Test
+	public void deveAproveitarOIndicePorEmailAoBuscarPorId() {
+
+		Usuario usuario = Usuario.builder().id(1l).email("usuario@email.com").build();
+		Mockito.when(repository.findById(1l)).thenReturn(Optional.of(usuario));
+
+		cache.obterPorId(1l);
+		Optional<Usuario> result = cache.obterPorEmail("usuario@email.com");
+
+		Assertions.assertThat(result.get().getId()).isEqualTo(1l);
+		Mockito.verify(repository, Mockito.never()).findByEmail(Mockito.anyString());
+	}
+
+	@Test
+	public void naoDeveGuardarUsuarioInexistente() {
+
+		Mockito.when(repository.findByEmail("usuario@email.com")).thenReturn(Optional.empty());
+
+		cache.obterPorEmail("usuario@email.com");
+		cache.obterPorEmail("usuario@email.com");
+
+		Mockito.verify(repository, Mockito.times(2)).findByEmail("usuario@email.com");
+	}
+
+	@Test
+	public void deveSubstituirOUsuarioAoAtualizar() {
+
+		Usuario usuario = Usuario.builder().id(1l).nome("antigo").email("usuario@email.com").build();
+		Mockito.when(repository.findById(1l)).thenReturn(Optional.of(usuario));
+		cache.obterPorId(1l);
+
+		cache.atualizar(Usuario.builder().id(1l).nome("novo").email("usuario@email.com").build());
+
+		Assertions.assertThat(cache.obterPorId(1l).get().getNome()).isEqualTo("novo");
+		Mockito.verify(repository, Mockito.times(1)).findById(1l);
+	}
+}
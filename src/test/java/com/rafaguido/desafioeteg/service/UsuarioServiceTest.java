@@ -1,20 +1,34 @@
 package com.rafaguido.desafioeteg.service;
 
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import com.rafaguido.desafioeteg.api.dto.ResultadoImportacaoDTO;
+import com.rafaguido.desafioeteg.api.dto.UsuarioDTO;
 import com.rafaguido.desafioeteg.exception.ErroAutenticacao;
 import com.rafaguido.desafioeteg.exception.RegraNegocioException;
 import com.rafaguido.desafioeteg.model.entity.Usuario;
 import com.rafaguido.desafioeteg.model.repository.UsuarioRepository;
+import com.rafaguido.desafioeteg.service.impl.FiltroEmailUsuario;
+import com.rafaguido.desafioeteg.service.impl.UsuarioCache;
 import com.rafaguido.desafioeteg.service.impl.UsuarioServiceImpl;
 
 @ExtendWith(SpringExtension.class)
@@ -27,6 +41,21 @@ public class UsuarioServiceTest {
 	@MockBean
 	UsuarioRepository repository;
 	
+	@MockBean
+	UsuarioCache cache;
+	
+	@MockBean
+	SenhaService senhaService;
+	
+	@MockBean
+	FiltroEmailUsuario filtroEmail;
+	
+	@MockBean
+	PlatformTransactionManager transactionManager;
+	
+	@MockBean
+	EntityManagerFactory entityManagerFactory;
+	
 	@Test
 	public void deveSalvarUmUsuario() {
 		
@@ -37,7 +66,7 @@ public class UsuarioServiceTest {
 					.email("email@email.com")
 					.senha("senha").build();
 		
-		Mockito.when(repository.save(Mockito.any(Usuario.class))).thenReturn(usuario);
+		Mockito.when(repository.saveAndFlush(Mockito.any(Usuario.class))).thenReturn(usuario);
 		
 		Usuario usuarioSalvo = service.salvarUsuario(new Usuario());
 		
@@ -46,6 +75,7 @@ public class UsuarioServiceTest {
 		Assertions.assertThat(usuarioSalvo.getNome()).isEqualTo("nome");
 		Assertions.assertThat(usuarioSalvo.getEmail()).isEqualTo("email@email.com");
 		Assertions.assertThat(usuarioSalvo.getSenha()).isEqualTo("senha");
+		Mockito.verify(cache).atualizar(usuario);
 		
 	}
 	
@@ -54,12 +84,109 @@ public class UsuarioServiceTest {
 		
 		String email = "email@email.com";
 		Usuario usuario = Usuario.builder().email(email).build();
+		Mockito.when(filtroEmail.podeExistir(email)).thenReturn(true);
 		Mockito.doThrow(RegraNegocioException.class).when(service).validarEmail(email);
 		
 		org.junit.jupiter.api.Assertions
 			.assertThrows(RegraNegocioException.class, () -> service.salvarUsuario(usuario) ) ;
 		
-		Mockito.verify( repository, Mockito.never() ).save(usuario);
+		Mockito.verify( repository, Mockito.never() ).saveAndFlush(usuario);
+	}
+	
+	@Test
+	public void naoDeveConsultarOEmailQuandoOFiltroGarantirQueEleENovo() {
+		
+		Usuario usuario = Usuario.builder().email(" Email@Email.com ").senha("senha").build();
+		Mockito.when(filtroEmail.podeExistir("email@email.com")).thenReturn(false);
+		Mockito.when(repository.saveAndFlush(usuario)).thenReturn(usuario);
+		
+		service.salvarUsuario(usuario);
+		
+		Assertions.assertThat(usuario.getEmail()).isEqualTo("email@email.com");
+		Mockito.verify(repository, Mockito.never()).existsByEmail(Mockito.anyString());
+		Mockito.verify(filtroEmail).adicionar("email@email.com");
+	}
+	
+	@Test
+	public void deveTraduzirAViolacaoDoIndiceUnicoDeEmail() {
+		
+		Usuario usuario = Usuario.builder().email("email@email.com").senha("senha").build();
+		Mockito.when(repository.saveAndFlush(usuario))
+			.thenThrow(new DataIntegrityViolationException("duplicate key value violates unique constraint \"uk_usuario_email\""));
+		
+		Throwable exception = Assertions.catchThrowable( () -> service.salvarUsuario(usuario) );
+		
+		Assertions.assertThat(exception)
+			.isInstanceOf(RegraNegocioException.class)
+			.hasMessage("Já existe um usuário cadastrado com este email.");
+		Mockito.verify(cache, Mockito.never()).atualizar(Mockito.any());
+	}
+	
+	@Test
+	public void deveImportarDescartandoEmailsRepetidosEJaCadastrados() {
+		
+		ReflectionTestUtils.setField(service, "tamanhoLoteImportacao", 10);
+		Mockito.when(entityManagerFactory.createEntityManager()).thenReturn(Mockito.mock(EntityManager.class));
+		Mockito.when(filtroEmail.podeExistir("cadastrado@email.com")).thenReturn(true);
+		Mockito.when(repository.obterEmailsCadastrados(Mockito.anyCollection())).thenReturn(Arrays.asList("cadastrado@email.com"));
+		Mockito.when(senhaService.criptografarEmLote(Mockito.anyList())).thenAnswer( invocacao -> {
+			List<String> senhas = invocacao.getArgument(0);
+			return senhas.stream().map( senha -> "cripto-" + senha ).collect(Collectors.toList());
+		});
+		
+		Iterator<UsuarioDTO> linhas = Arrays.asList(
+				UsuarioDTO.builder().email("um@email.com").senha("1").build(),
+				UsuarioDTO.builder().email(" UM@email.com ").senha("2").build(),
+				UsuarioDTO.builder().email("cadastrado@email.com").senha("3").build(),
+				UsuarioDTO.builder().email("sem-senha@email.com").build(),
+				UsuarioDTO.builder().email("dois@email.com").senha("5").build()).iterator();
+		
+		ResultadoImportacaoDTO resultado = service.importar(linhas, dto -> 
+				Usuario.builder().email(dto.getEmail()).senha(dto.getSenha()).build());
+		
+		List<Long> linhasRejeitadas = resultado.getErros().stream()
+				.map(ResultadoImportacaoDTO.ErroImportacaoDTO::getLinha)
+				.collect(Collectors.toList());
+		Assertions.assertThat(resultado.getLidas()).isEqualTo(5);
+		Assertions.assertThat(resultado.getImportadas()).isEqualTo(2);
+		Assertions.assertThat(resultado.getRejeitadas()).isEqualTo(3);
+		Assertions.assertThat(linhasRejeitadas).containsExactlyInAnyOrder(2l, 3l, 4l);
+		Mockito.verify(senhaService).criptografarEmLote(Arrays.asList("1", "5"));
+		Mockito.verify(repository, Mockito.times(1)).saveAll(Mockito.anyIterable());
+		Mockito.verify(filtroEmail).adicionar("um@email.com");
+		Mockito.verify(filtroEmail).adicionar("dois@email.com");
+	}
+	
+	@Test
+	public void deveGravarUmAUmQuandoOLoteViolarOIndiceDeEmail() {
+		
+		ReflectionTestUtils.setField(service, "tamanhoLoteImportacao", 10);
+		Mockito.when(entityManagerFactory.createEntityManager()).thenReturn(Mockito.mock(EntityManager.class));
+		Mockito.when(senhaService.criptografarEmLote(Mockito.anyList())).thenReturn(Arrays.asList("cripto-1", "cripto-2"));
+		DataIntegrityViolationException violacao = 
+				new DataIntegrityViolationException("duplicate key value violates unique constraint \"uk_usuario_email\"");
+		Mockito.when(repository.saveAll(Mockito.anyIterable())).thenThrow(violacao);
+		Mockito.when(repository.saveAndFlush(Mockito.any(Usuario.class))).thenAnswer( invocacao -> {
+			Usuario usuario = invocacao.getArgument(0);
+			if(usuario.getEmail().equals("concorrente@email.com")) {
+				throw violacao;
+			}
+			return usuario;
+		});
+		
+		Iterator<UsuarioDTO> linhas = Arrays.asList(
+				UsuarioDTO.builder().email("um@email.com").senha("1").build(),
+				UsuarioDTO.builder().email("concorrente@email.com").senha("2").build()).iterator();
+		
+		ResultadoImportacaoDTO resultado = service.importar(linhas, dto -> 
+				Usuario.builder().email(dto.getEmail()).senha(dto.getSenha()).build());
+		
+		Assertions.assertThat(resultado.getImportadas()).isEqualTo(1);
+		Assertions.assertThat(resultado.getRejeitadas()).isEqualTo(1);
+		Assertions.assertThat(resultado.getErros().get(0).getLinha()).isEqualTo(2);
+		Assertions.assertThat(resultado.getErros().get(0).getMensagem()).isEqualTo("Já existe um usuário cadastrado com este email.");
+		Mockito.verify(filtroEmail).adicionar("um@email.com");
+		Mockito.verify(filtroEmail, Mockito.never()).adicionar("concorrente@email.com");
 	}
 	
 	@Test
@@ -69,18 +196,40 @@ public class UsuarioServiceTest {
 		String senha = "senha";
 		
 		Usuario usuario = Usuario.builder().email(email).senha(senha).id(1l).build();
-		Mockito.when( repository.findByEmail(email) ).thenReturn(Optional.of(usuario));
+		Mockito.when( cache.obterPorEmail(email) ).thenReturn(Optional.of(usuario));
+		Mockito.when( senhaService.confere(senha, senha) ).thenReturn(true);
 		
 		Usuario result = service.autenticar(email, senha);
 		
 		Assertions.assertThat(result).isNotNull();
+		Mockito.verify( repository, Mockito.never() ).save(Mockito.any(Usuario.class));
 		
 	}
 	
+	@Test
+	public void deveCriptografarNovamenteASenhaQuandoOCustoMudar() {
+		
+		String email = "email@email.com";
+		String senha = "senha";
+		
+		Usuario usuario = Usuario.builder().email(email).senha("$2a$04$hash").id(1l).build();
+		Mockito.when( cache.obterPorEmail(email) ).thenReturn(Optional.of(usuario));
+		Mockito.when( senhaService.confere(senha, "$2a$04$hash") ).thenReturn(true);
+		Mockito.when( senhaService.precisaCriptografarNovamente("$2a$04$hash") ).thenReturn(true);
+		Mockito.when( senhaService.criptografar(senha) ).thenReturn("$2a$10$novo");
+		Mockito.when( repository.save(usuario) ).thenReturn(usuario);
+		
+		Usuario result = service.autenticar(email, senha);
+		
+		Assertions.assertThat(result.getSenha()).isEqualTo("$2a$10$novo");
+		Mockito.verify( repository ).save(usuario);
+		Mockito.verify( cache ).atualizar(usuario);
+	}
+	
 	@Test
 	public void deveLancarErroQUandoNaoEncontrarUsuarioCadastradoComOEmailInformado() {
 		
-		Mockito.when(repository.findByEmail(Mockito.anyString())).thenReturn(Optional.empty());
+		Mockito.when(cache.obterPorEmail(Mockito.anyString())).thenReturn(Optional.empty());
 		
 		Throwable exception = Assertions.catchThrowable( () -> service.autenticar("email@email.com", "senha") );
 		
@@ -94,13 +243,25 @@ public class UsuarioServiceTest {
 		
 		String senha = "senha";
 		Usuario usuario = Usuario.builder().email("email@email.com").senha(senha).build();
-		Mockito.when(repository.findByEmail(Mockito.anyString())).thenReturn(Optional.of(usuario));
+		Mockito.when(cache.obterPorEmail(Mockito.anyString())).thenReturn(Optional.of(usuario));
 		
 		Throwable exception = Assertions.catchThrowable( () ->  service.autenticar("email@email.com", "123") );
 		Assertions.assertThat(exception).isInstanceOf(ErroAutenticacao.class).hasMessage("Senha inválida.");
 		
 	}
 	
+	@Test
+	public void deveObterUsuarioPorIdPeloCache() {
+		
+		Usuario usuario = Usuario.builder().id(1l).email("email@email.com").build();
+		Mockito.when(cache.obterPorId(1l)).thenReturn(Optional.of(usuario));
+		
+		Optional<Usuario> result = service.obterPorId(1l);
+		
+		Assertions.assertThat(result.isPresent()).isTrue();
+		Mockito.verify(repository, Mockito.never()).findById(Mockito.anyLong());
+	}
+	
 	@Test
 	public void deveValidarEmail() {
 		